@@ -2,6 +2,9 @@
 -- Full schema: create từ đầu
 -- ================================
 
+-- Index trigram cho tìm kiếm chuỗi con (ILIKE '%...%')
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
 -- Khách hàng
 CREATE TABLE IF NOT EXISTS customers (
   id BIGSERIAL PRIMARY KEY,
@@ -17,6 +20,13 @@ CREATE TABLE IF NOT EXISTS customers (
 );
 CREATE INDEX IF NOT EXISTS idx_customers_name ON customers (name);
 CREATE INDEX IF NOT EXISTS idx_customers_email ON customers (email);
+-- So khớp email không phân biệt hoa thường khi nhập khách hàng hàng loạt
+CREATE INDEX IF NOT EXISTS idx_customers_email_lower ON customers (lower(email));
+CREATE INDEX IF NOT EXISTS idx_customers_name_id ON customers (name, id);
+CREATE INDEX IF NOT EXISTS idx_customers_name_trgm ON customers USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_customers_code_trgm ON customers USING gin (code gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_customers_email_trgm ON customers USING gin (email gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_customers_phone_trgm ON customers USING gin (phone gin_trgm_ops);
 
 -- Nhà cung cấp
 CREATE TABLE IF NOT EXISTS suppliers (
@@ -30,6 +40,10 @@ CREATE TABLE IF NOT EXISTS suppliers (
   created_at TIMESTAMPTZ DEFAULT now(),
   updated_at TIMESTAMPTZ DEFAULT now()
 );
+CREATE INDEX IF NOT EXISTS idx_suppliers_name_trgm ON suppliers USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_suppliers_contact_name_trgm ON suppliers USING gin (contact_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_suppliers_email_trgm ON suppliers USING gin (email gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_suppliers_phone_trgm ON suppliers USING gin (phone gin_trgm_ops);
 
 -- Danh mục sản phẩm (tree)
 CREATE TABLE IF NOT EXISTS categories (
@@ -41,6 +55,30 @@ CREATE TABLE IF NOT EXISTS categories (
   updated_at TIMESTAMPTZ DEFAULT now()
 );
 CREATE INDEX IF NOT EXISTS idx_categories_name ON categories (name);
+CREATE INDEX IF NOT EXISTS idx_categories_name_trgm ON categories USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_categories_description_trgm ON categories USING gin (description gin_trgm_ops);
+
+-- Bảng bao đóng của cây danh mục: một dòng cho mỗi cặp (tổ tiên, hậu duệ), kể cả chính nó với depth = 0.
+-- Được CategoryService cập nhật khi thêm/sửa danh mục; xóa danh mục thì các dòng tự xóa theo khóa ngoại.
+CREATE TABLE IF NOT EXISTS category_closure (
+  ancestor_id BIGINT NOT NULL REFERENCES categories(id) ON DELETE CASCADE,
+  descendant_id BIGINT NOT NULL REFERENCES categories(id) ON DELETE CASCADE,
+  depth INTEGER NOT NULL CHECK (depth >= 0),
+  PRIMARY KEY (ancestor_id, descendant_id)
+);
+CREATE INDEX IF NOT EXISTS idx_category_closure_descendant ON category_closure (descendant_id, ancestor_id);
+
+-- Dựng bảng bao đóng cho các danh mục đã có trước khi có bảng này (giới hạn độ sâu phòng dữ liệu cũ bị vòng)
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE tree AS (
+  SELECT id AS ancestor_id, id AS descendant_id, 0 AS depth FROM categories
+  UNION ALL
+  SELECT c.parent_id, t.descendant_id, t.depth + 1
+  FROM tree t JOIN categories c ON c.id = t.ancestor_id
+  WHERE c.parent_id IS NOT NULL AND t.depth < 100
+)
+SELECT ancestor_id, descendant_id, depth FROM tree
+ON CONFLICT (ancestor_id, descendant_id) DO NOTHING;
 
 -- Sản phẩm
 CREATE TABLE IF NOT EXISTS products (
@@ -53,13 +91,34 @@ CREATE TABLE IF NOT EXISTS products (
   price NUMERIC(12,2) NOT NULL DEFAULT 0.00,
   cost NUMERIC(12,2) DEFAULT 0.00,
   stock_quantity INTEGER NOT NULL DEFAULT 0,
+  -- Số lượng đang được giữ cho các đơn chưa xuất kho; khả dụng = stock_quantity - reserved_quantity
+  reserved_quantity INTEGER NOT NULL DEFAULT 0 CHECK (reserved_quantity >= 0),
+  -- Số dải tồn kho cho sản phẩm bán chạy; > 0 thì tồn kho = stock_quantity + tổng product_stock_stripes
+  stock_stripes INTEGER NOT NULL DEFAULT 0 CHECK (stock_stripes >= 0),
   reorder_level INTEGER DEFAULT 0,
   is_active BOOLEAN DEFAULT TRUE,
   created_at TIMESTAMPTZ DEFAULT now(),
   updated_at TIMESTAMPTZ DEFAULT now()
 );
+-- Cột thêm sau khi bảng đã có dữ liệu; CREATE TABLE IF NOT EXISTS không thêm cột cho database cũ
+ALTER TABLE products ADD COLUMN IF NOT EXISTS reserved_quantity INTEGER NOT NULL DEFAULT 0 CHECK (reserved_quantity >= 0);
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stock_stripes INTEGER NOT NULL DEFAULT 0 CHECK (stock_stripes >= 0);
 CREATE INDEX IF NOT EXISTS idx_products_sku ON products (sku);
 CREATE INDEX IF NOT EXISTS idx_products_name ON products (name);
+CREATE INDEX IF NOT EXISTS idx_products_name_id ON products (name, id);
+CREATE INDEX IF NOT EXISTS idx_products_updated_at ON products (updated_at);
+CREATE INDEX IF NOT EXISTS idx_products_category_id ON products (category_id);
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_sku_trgm ON products USING gin (sku gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_products_description_trgm ON products USING gin (description gin_trgm_ops);
+
+-- Các dải tồn kho của sản phẩm bán chạy, mỗi phiếu xuất nhập chỉ khóa một dải
+CREATE TABLE IF NOT EXISTS product_stock_stripes (
+  product_id BIGINT NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+  stripe INTEGER NOT NULL,
+  quantity INTEGER NOT NULL DEFAULT 0 CHECK (quantity >= 0),
+  PRIMARY KEY (product_id, stripe)
+);
 
 -- Users (note: BIGSERIAL to align với BIGINT refs)
 CREATE TABLE IF NOT EXISTS users (
@@ -88,7 +147,7 @@ CREATE TABLE IF NOT EXISTS orders (
   user_id BIGINT REFERENCES users(id) ON DELETE SET NULL, -- người tạo/điều hành đơn (mới)
   status VARCHAR(20) NOT NULL DEFAULT 'pending'
     CHECK (status IN ('draft','pending','paid','shipped','completed','cancelled','refunded')),
-  placed_at TIMESTAMPTZ DEFAULT now(),
+  placed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
   delivery_date TIMESTAMPTZ,
   subtotal NUMERIC(12,2) DEFAULT 0.00,
   tax NUMERIC(12,2) DEFAULT 0.00,
@@ -99,10 +158,21 @@ CREATE TABLE IF NOT EXISTS orders (
   created_at TIMESTAMPTZ DEFAULT now(),
   updated_at TIMESTAMPTZ DEFAULT now()
 );
+-- Phân trang keyset theo (placed_at, id) bỏ sót các dòng NULL; điền giá trị cho dữ liệu cũ
+UPDATE orders SET placed_at = COALESCE(created_at, now()) WHERE placed_at IS NULL;
+ALTER TABLE orders ALTER COLUMN placed_at SET NOT NULL;
 CREATE INDEX IF NOT EXISTS idx_orders_order_number ON orders (order_number);
 CREATE INDEX IF NOT EXISTS idx_orders_placed_at ON orders (placed_at);
+CREATE INDEX IF NOT EXISTS idx_orders_placed_at_id ON orders (placed_at, id);
 CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders (customer_id);
 CREATE INDEX IF NOT EXISTS idx_orders_user_id ON orders (user_id);
+CREATE INDEX IF NOT EXISTS idx_orders_updated_at ON orders (updated_at);
+CREATE INDEX IF NOT EXISTS idx_orders_status ON orders (status);
+CREATE INDEX IF NOT EXISTS idx_orders_order_number_trgm ON orders USING gin (order_number gin_trgm_ops);
+
+-- Số thứ tự của mã đơn hàng; mỗi lần nextval cấp cho ứng dụng một khối 100 số
+-- (phải khớp OrderNumberGenerator.BLOCK_SIZE)
+CREATE SEQUENCE IF NOT EXISTS order_number_seq INCREMENT BY 100;
 
 -- Order items
 CREATE TABLE IF NOT EXISTS order_items (
@@ -149,6 +219,31 @@ CREATE TABLE IF NOT EXISTS shipments (
 CREATE INDEX IF NOT EXISTS idx_shipments_order_id ON shipments (order_id);
 CREATE INDEX IF NOT EXISTS idx_shipments_tracking ON shipments (tracking_number);
 
+-- Giữ hàng cho đơn hàng: mỗi dòng là số lượng một sản phẩm đang được giữ cho một đơn
+CREATE TABLE IF NOT EXISTS stock_reservations (
+  order_id BIGINT NOT NULL REFERENCES orders(id) ON DELETE CASCADE,
+  product_id BIGINT NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+  quantity INTEGER NOT NULL CHECK (quantity > 0),
+  created_at TIMESTAMPTZ DEFAULT now(),
+  PRIMARY KEY (order_id, product_id)
+);
+CREATE INDEX IF NOT EXISTS idx_stock_reservations_product_id ON stock_reservations (product_id);
+-- Giữ hàng cho các đơn còn mở từ trước khi có bảng này; đơn đã có dòng giữ hàng được bỏ qua
+-- nên câu lệnh chỉ có tác dụng một lần cho mỗi đơn
+WITH held AS (
+  INSERT INTO stock_reservations (order_id, product_id, quantity)
+  SELECT oi.order_id, oi.product_id, sum(oi.quantity)
+  FROM order_items oi
+  JOIN orders o ON o.id = oi.order_id
+  WHERE o.status IN ('draft', 'pending', 'paid') AND oi.product_id IS NOT NULL
+    AND NOT EXISTS (SELECT 1 FROM stock_reservations r WHERE r.order_id = o.id)
+  GROUP BY oi.order_id, oi.product_id
+  RETURNING product_id, quantity
+)
+UPDATE products p SET reserved_quantity = p.reserved_quantity + h.quantity
+FROM (SELECT product_id, sum(quantity) AS quantity FROM held GROUP BY product_id) h
+WHERE p.id = h.product_id;
+
 -- Inventory movements (thêm user_id, và created_by chuyển sang BIGINT cho consistency)
 CREATE TABLE IF NOT EXISTS inventory_movements (
   id BIGSERIAL PRIMARY KEY,
@@ -161,11 +256,166 @@ CREATE TABLE IF NOT EXISTS inventory_movements (
   note TEXT,
   created_by BIGINT,                 -- có thể FK tới users.id nếu muốn
   user_id BIGINT REFERENCES users(id) ON DELETE SET NULL, -- <-- thêm
-  created_at TIMESTAMPTZ DEFAULT now()
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+-- Phân trang keyset theo (created_at, id) bỏ sót các dòng NULL; điền giá trị cho dữ liệu cũ
+UPDATE inventory_movements SET created_at = now() WHERE created_at IS NULL;
+ALTER TABLE inventory_movements ALTER COLUMN created_at SET NOT NULL;
 CREATE INDEX IF NOT EXISTS idx_inventory_product_id ON inventory_movements (product_id);
 CREATE INDEX IF NOT EXISTS idx_inventory_created_at ON inventory_movements (created_at);
+CREATE INDEX IF NOT EXISTS idx_inventory_created_at_id ON inventory_movements (created_at, id);
 CREATE INDEX IF NOT EXISTS idx_inventory_user_id ON inventory_movements (user_id);
+CREATE INDEX IF NOT EXISTS idx_inventory_product_created_at ON inventory_movements (product_id, created_at);
+
+-- Bản chụp tồn kho theo sổ xuất nhập kho; tồn kho tại thời điểm T = bản chụp gần nhất trước T
+-- cộng các phiếu xuất nhập sau bản chụp đến T
+CREATE TABLE IF NOT EXISTS stock_snapshots (
+  product_id BIGINT NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+  taken_at TIMESTAMPTZ NOT NULL,
+  stock_quantity INTEGER NOT NULL,
+  PRIMARY KEY (product_id, taken_at)
+);
+
+-- Phiếu tồn kho đầu kỳ cho các sản phẩm có từ trước khi có sổ xuất nhập kho: số lượng bằng tồn kho
+-- hiện tại trừ tổng các phiếu đã có, ghi trước mọi phiếu của sản phẩm. Sản phẩm tạo từ ứng dụng đã có
+-- phiếu này nên câu lệnh chỉ có tác dụng một lần. Bản chụp cũ không tính phiếu này nên bị xóa.
+WITH opening AS (
+  INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, note, created_at)
+  SELECT p.id,
+         p.stock_quantity
+           + COALESCE((SELECT SUM(pss.quantity) FROM product_stock_stripes pss WHERE pss.product_id = p.id), 0)
+           - COALESCE((SELECT SUM(im.change_qty) FROM inventory_movements im WHERE im.product_id = p.id), 0),
+         'adjustment', 'opening', 'Tồn kho ban đầu',
+         COALESCE(LEAST(p.created_at,
+                        (SELECT MIN(im.created_at) - interval '1 microsecond' FROM inventory_movements im
+                         WHERE im.product_id = p.id)), now())
+  FROM products p
+  WHERE NOT EXISTS (SELECT 1 FROM inventory_movements o WHERE o.product_id = p.id AND o.reference_type = 'opening')
+  RETURNING product_id
+)
+DELETE FROM stock_snapshots WHERE product_id IN (SELECT product_id FROM opening);
+
+-- Tiến độ của các lần nhập dữ liệu hàng loạt theo lô; lần chạy lại cùng file tiếp tục sau
+-- dòng cuối cùng của lô đã commit
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+  job_key TEXT PRIMARY KEY,
+  file_name TEXT NOT NULL,
+  last_line BIGINT NOT NULL DEFAULT 0,
+  total_rows BIGINT NOT NULL DEFAULT 0,
+  inserted_rows BIGINT NOT NULL DEFAULT 0,
+  updated_rows BIGINT NOT NULL DEFAULT 0,
+  error_rows BIGINT NOT NULL DEFAULT 0,
+  completed_at TIMESTAMPTZ,
+  updated_at TIMESTAMPTZ DEFAULT now()
+);
+
+-- Thay đổi của các số đếm trên dashboard, do trigger ghi một dòng cho mỗi câu lệnh làm đổi số đếm.
+-- DashboardStatsCache cộng các dòng của những giao dịch đã commit sau snapshot lần đọc trước thay vì
+-- đếm lại cả bảng. Sắp hết hàng chỉ tính sản phẩm không chia dải, vì ghi vào dải không đi qua bảng
+-- products; sản phẩm chia dải được đếm lại mỗi lần qua idx_products_striped.
+CREATE TABLE IF NOT EXISTS dashboard_count_changes (
+  id BIGSERIAL PRIMARY KEY,
+  counter TEXT NOT NULL,
+  delta INTEGER NOT NULL,
+  xact_id XID8 NOT NULL DEFAULT pg_current_xact_id(),
+  changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS idx_dashboard_count_changes_xact_id ON dashboard_count_changes (xact_id);
+CREATE INDEX IF NOT EXISTS idx_products_striped ON products (id) WHERE stock_stripes > 0;
+
+-- Số dòng của bảng, dùng cho users, customers, suppliers, categories
+CREATE OR REPLACE FUNCTION dashboard_count_rows() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT TG_TABLE_NAME, count(*) FROM new_rows HAVING count(*) > 0;
+  ELSE
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT TG_TABLE_NAME, -count(*) FROM old_rows HAVING count(*) > 0;
+  END IF;
+  RETURN NULL;
+END $$;
+
+CREATE OR REPLACE FUNCTION dashboard_count_orders() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT * FROM (VALUES
+      ('orders', (SELECT count(*) FROM new_rows)::int),
+      ('pending_orders', (SELECT count(*) FROM new_rows WHERE status = 'pending')::int)) v (counter, delta)
+    WHERE delta <> 0;
+  ELSIF TG_OP = 'DELETE' THEN
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT * FROM (VALUES
+      ('orders', -(SELECT count(*) FROM old_rows)::int),
+      ('pending_orders', -(SELECT count(*) FROM old_rows WHERE status = 'pending')::int)) v (counter, delta)
+    WHERE delta <> 0;
+  ELSE
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT 'pending_orders', d FROM (SELECT ((SELECT count(*) FROM new_rows WHERE status = 'pending')
+                                             - (SELECT count(*) FROM old_rows WHERE status = 'pending'))::int AS d) x
+    WHERE d <> 0;
+  END IF;
+  RETURN NULL;
+END $$;
+
+-- Điều kiện sắp hết hàng phải khớp DashboardStatsService cho sản phẩm không chia dải
+CREATE OR REPLACE FUNCTION dashboard_count_products() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT * FROM (VALUES
+      ('products', (SELECT count(*) FROM new_rows)::int),
+      ('low_stock_unstriped', (SELECT count(*) FROM new_rows WHERE stock_stripes = 0
+                               AND COALESCE(stock_quantity, 0) <= COALESCE(reorder_level, 0))::int)) v (counter, delta)
+    WHERE delta <> 0;
+  ELSIF TG_OP = 'DELETE' THEN
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT * FROM (VALUES
+      ('products', -(SELECT count(*) FROM old_rows)::int),
+      ('low_stock_unstriped', -(SELECT count(*) FROM old_rows WHERE stock_stripes = 0
+                                AND COALESCE(stock_quantity, 0) <= COALESCE(reorder_level, 0))::int)) v (counter, delta)
+    WHERE delta <> 0;
+  ELSE
+    INSERT INTO dashboard_count_changes (counter, delta)
+    SELECT 'low_stock_unstriped', d FROM (SELECT ((SELECT count(*) FROM new_rows WHERE stock_stripes = 0
+                                                   AND COALESCE(stock_quantity, 0) <= COALESCE(reorder_level, 0))
+                                                  - (SELECT count(*) FROM old_rows WHERE stock_stripes = 0
+                                                   AND COALESCE(stock_quantity, 0) <= COALESCE(reorder_level, 0)))::int AS d) x
+    WHERE d <> 0;
+  END IF;
+  RETURN NULL;
+END $$;
+
+-- Bảng chuyển tiếp chỉ dùng được với trigger một sự kiện, nên mỗi sự kiện một trigger
+CREATE OR REPLACE TRIGGER users_count_insert AFTER INSERT ON users
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER users_count_delete AFTER DELETE ON users
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER customers_count_insert AFTER INSERT ON customers
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER customers_count_delete AFTER DELETE ON customers
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER suppliers_count_insert AFTER INSERT ON suppliers
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER suppliers_count_delete AFTER DELETE ON suppliers
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER categories_count_insert AFTER INSERT ON categories
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER categories_count_delete AFTER DELETE ON categories
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_rows();
+CREATE OR REPLACE TRIGGER orders_count_insert AFTER INSERT ON orders
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_orders();
+CREATE OR REPLACE TRIGGER orders_count_update AFTER UPDATE ON orders
+  REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_orders();
+CREATE OR REPLACE TRIGGER orders_count_delete AFTER DELETE ON orders
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_orders();
+CREATE OR REPLACE TRIGGER products_count_insert AFTER INSERT ON products
+  REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_products();
+CREATE OR REPLACE TRIGGER products_count_update AFTER UPDATE ON products
+  REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_products();
+CREATE OR REPLACE TRIGGER products_count_delete AFTER DELETE ON products
+  REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION dashboard_count_products();
 
 -- ================================
 -- Sample seed của users (demo)
@@ -4,6 +4,7 @@
  */
 package app.swing;
 
+import app.swing.service.StockSnapshotJob;
 import app.swing.view.LoadingView;
 import app.swing.view.LoginView;
 import javax.swing.SwingUtilities;
@@ -26,6 +27,9 @@ public class AppSwing {
 //            e.printStackTrace();
 //        }
 
+        // Chụp tồn kho theo sổ xuất nhập kho định kỳ ở nền
+        StockSnapshotJob.getInstance().start();
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
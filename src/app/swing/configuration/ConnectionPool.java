@@ -0,0 +1,505 @@
+package app.swing.configuration;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool kết nối cơ sở dữ liệu có giới hạn kích thước
+ * <p>
+ * Connection trả về là proxy: gọi close() sẽ trả kết nối vật lý về pool thay vì đóng nó.
+ * Các Statement chưa đóng, transaction dang dở, chế độ chỉ đọc và mức cô lập transaction đã
+ * đổi được dọn khi trả về. Khi bật phát hiện rò rỉ, vị trí mượn kết nối được ghi lại để in kèm
+ * cảnh báo; tác vụ chạy lâu có chủ đích (xuất/nhập file) gọi {@link #markLongRunning} để không
+ * bị báo nhầm.
+ */
+public class ConnectionPool {
+
+    // Kết nối vừa được dùng trong khoảng này thì không cần kiểm tra lại khi mượn
+    private static final long VALIDATION_BYPASS_MS = 500;
+
+    // Chu kỳ chạy tác vụ dọn dẹp (loại kết nối rảnh, phát hiện rò rỉ)
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final long leakThresholdMs;
+    private final int validationTimeoutSeconds;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    // Thống kê
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMs, long borrowTimeoutMs, long leakThresholdMs,
+                          int validationTimeoutSeconds) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool max size must be positive: " + maxSize);
+        }
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minSize = Math.max(0, Math.min(minSize, maxSize));
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_INTERVAL_MS,
+                HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        this.housekeeper.execute(this::fillToMinimum);
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if allowed
+     * @return Pooled connection; closing it returns it to the pool
+     * @throws SQLException if the pool is exhausted past the borrow timeout or the database is unreachable
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool đã bị đóng");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Không lấy được kết nối sau " + borrowTimeoutMs + " ms: " + getStats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bị gián đoạn khi chờ kết nối", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = leakThresholdMs > 0 ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            pooled.longRunning = false;
+            activeConnections.add(pooled);
+
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(System.nanoTime() - waitStart);
+
+            return pooled.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Exclude a borrowed connection from leak warnings until it is returned, for work that is
+     * expected to hold it longer than the leak threshold
+     * @param conn Connection obtained from {@link #getConnection()}; other connections are ignored
+     */
+    public void markLongRunning(Connection conn) {
+        if (conn != null && Proxy.isProxyClass(conn.getClass())
+                && Proxy.getInvocationHandler(conn) instanceof ProxyHandler) {
+            ((ProxyHandler) Proxy.getInvocationHandler(conn)).pooled.longRunning = true;
+        }
+    }
+
+    /**
+     * Close every connection and stop the housekeeping thread
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        for (PooledConnection active : activeConnections) {
+            destroy(active);
+        }
+        activeConnections.clear();
+    }
+
+    /**
+     * Get a snapshot of pool statistics
+     * @return Current pool statistics
+     */
+    public Stats getStats() {
+        long borrows = borrowCount.get();
+        return new Stats(totalConnections.get(), activeConnections.size(), idleConnections.size(),
+                permits.getQueueLength(), borrows, createdCount.get(), destroyedCount.get(),
+                timeoutCount.get(), validationFailureCount.get(), leakCount.get(),
+                borrows == 0 ? 0 : totalWaitNanos.get() / borrows / 1_000);
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            validationFailureCount.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturnedAt < VALIDATION_BYPASS_MS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        PooledConnection pooled;
+        try {
+            pooled = new PooledConnection(physical, physical.getTransactionIsolation());
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return pooled;
+    }
+
+    private void release(PooledConnection pooled) {
+        activeConnections.remove(pooled);
+        boolean reusable = !shutdown;
+
+        pooled.closeTrackedStatements();
+
+        try {
+            if (pooled.physical.isClosed()) {
+                reusable = false;
+            } else {
+                if (!pooled.physical.getAutoCommit()) {
+                    // Transaction chưa được commit/rollback: hủy bỏ để không rò sang lần mượn sau
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                // Khôi phục các thiết lập người mượn đã đổi, chỉ khi có đổi để không tốn thêm truy vấn
+                if (pooled.readOnlyChanged) {
+                    pooled.physical.setReadOnly(false);
+                    pooled.readOnlyChanged = false;
+                }
+                if (pooled.isolationChanged) {
+                    pooled.physical.setTransactionIsolation(pooled.defaultIsolation);
+                    pooled.isolationChanged = false;
+                }
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idleConnections.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Kết nối đã hỏng, bỏ qua
+        }
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            detectLeaks();
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdleConnections() {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        // Duyệt từ cuối hàng đợi: kết nối ít được dùng nhất nằm ở cuối
+        PooledConnection pooled;
+        while (totalConnections.get() > minSize && (pooled = idleConnections.peekLast()) != null
+                && now - pooled.lastReturnedAt > idleTimeoutMs) {
+            if (idleConnections.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMs <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : activeConnections) {
+            if (!pooled.leakReported && !pooled.longRunning && now - pooled.borrowedAt > leakThresholdMs) {
+                pooled.leakReported = true;
+                leakCount.incrementAndGet();
+                System.err.println("⚠️ Possible connection leak: held for " + (now - pooled.borrowedAt) + " ms");
+                if (pooled.borrowTrace != null) {
+                    pooled.borrowTrace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && totalConnections.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idleConnections.offerLast(pooled);
+            } catch (SQLException e) {
+                System.err.println("⚠️ Could not pre-open pooled connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Kết nối vật lý cùng trạng thái theo dõi của pool
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+        private volatile boolean longRunning;
+        // Mức cô lập lúc mở kết nối, và các thiết lập người mượn đã đổi cần khôi phục khi trả về
+        private final int defaultIsolation;
+        private volatile boolean readOnlyChanged;
+        private volatile boolean isolationChanged;
+
+        PooledConnection(Connection physical, int defaultIsolation) {
+            this.physical = physical;
+            this.defaultIsolation = defaultIsolation;
+        }
+
+        Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ProxyHandler(this));
+        }
+
+        synchronized void track(Statement statement) {
+            openStatements.add(statement);
+        }
+
+        synchronized void closeTrackedStatements() {
+            for (Statement statement : openStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Statement đã đóng hoặc kết nối hỏng
+                }
+            }
+            openStatements.clear();
+        }
+    }
+
+    /**
+     * Chặn close() để trả kết nối về pool và ghi nhận các Statement được tạo
+     */
+    private class ProxyHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        ProxyHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    synchronized (this) {
+                        if (!returned) {
+                            returned = true;
+                            release(pooled);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "setReadOnly":
+                    pooled.readOnlyChanged = true;
+                    break;
+                case "setTransactionIsolation":
+                    pooled.isolationChanged = true;
+                    break;
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Connection đã được trả về pool");
+            }
+
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    pooled.track((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Ảnh chụp thống kê của pool tại một thời điểm
+     */
+    public static class Stats {
+        private final int total;
+        private final int active;
+        private final int idle;
+        private final int waiting;
+        private final long borrowCount;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long timeoutCount;
+        private final long validationFailureCount;
+        private final long leakCount;
+        private final long averageWaitMicros;
+
+        public Stats(int total, int active, int idle, int waiting, long borrowCount, long createdCount,
+                     long destroyedCount, long timeoutCount, long validationFailureCount, long leakCount,
+                     long averageWaitMicros) {
+            this.total = total;
+            this.active = active;
+            this.idle = idle;
+            this.waiting = waiting;
+            this.borrowCount = borrowCount;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.timeoutCount = timeoutCount;
+            this.validationFailureCount = validationFailureCount;
+            this.leakCount = leakCount;
+            this.averageWaitMicros = averageWaitMicros;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        public long getCreatedCount() {
+            return createdCount;
+        }
+
+        public long getDestroyedCount() {
+            return destroyedCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public long getValidationFailureCount() {
+            return validationFailureCount;
+        }
+
+        public long getLeakCount() {
+            return leakCount;
+        }
+
+        public long getAverageWaitMicros() {
+            return averageWaitMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "total=" + total + ", active=" + active + ", idle=" + idle + ", waiting=" + waiting +
+                   ", borrows=" + borrowCount + ", created=" + createdCount + ", destroyed=" + destroyedCount +
+                   ", timeouts=" + timeoutCount + ", validationFailures=" + validationFailureCount +
+                   ", leaks=" + leakCount + ", avgWait=" + averageWaitMicros + "us";
+        }
+    }
+}
@@ -7,15 +7,54 @@ import app.swing.contants.DbConst;
 import java.sql.*;
 /**
  * Lớp quản lý kết nối cơ sở dữ liệu
+ * <p>
+ * Mọi kết nối được mượn từ một {@link ConnectionPool} dùng chung, đóng kết nối sẽ trả nó về pool.
  * @author HieuNM
  */
 public class DbConnection {
+
+    // Khởi tạo pool lười khi có yêu cầu kết nối đầu tiên
+    private static class PoolHolder {
+        private static final ConnectionPool POOL = createPool();
+
+        private static ConnectionPool createPool() {
+            try {
+                Class.forName("org.postgresql.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Không tìm thấy PostgreSQL driver", e);
+            }
+
+            ConnectionPool pool = new ConnectionPool(DbConst.DB_URL, DbConst.USER, DbConst.PASS,
+                    DbConst.POOL_MIN_SIZE, DbConst.POOL_MAX_SIZE, DbConst.POOL_IDLE_TIMEOUT_MS,
+                    DbConst.POOL_BORROW_TIMEOUT_MS, DbConst.POOL_LEAK_THRESHOLD_MS,
+                    DbConst.POOL_VALIDATION_TIMEOUT_S);
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown, "db-pool-shutdown"));
+            return pool;
+        }
+    }
+
     public static Connection getConnection() throws SQLException{
         try{
-            Class.forName("org.postgresql.Driver");
-        }catch(ClassNotFoundException e){
+            return PoolHolder.POOL.getConnection();
+        }catch(ExceptionInInitializerError | IllegalStateException e){
             throw new SQLException("Không thể kết nối DB", e);
         }
-        return DriverManager.getConnection(DbConst.DB_URL, DbConst.USER, DbConst.PASS);
+    }
+
+    /**
+     * Đánh dấu kết nối đang mượn sẽ được giữ lâu có chủ đích (xuất/nhập file), để pool không
+     * cảnh báo rò rỉ cho nó
+     * @param conn Kết nối lấy từ {@link #getConnection()}
+     */
+    public static void markLongRunning(Connection conn) {
+        PoolHolder.POOL.markLongRunning(conn);
+    }
+
+    /**
+     * Lấy thống kê hiện tại của connection pool
+     * @return Thống kê pool
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        return PoolHolder.POOL.getStats();
     }
 }
@@ -10,13 +10,77 @@ public class DbConst {
     // Lấy URL cơ sở dữ liệu từ biến môi trường hoặc dùng mặc định
     private static final String BASE_URL = EnvLoader.getEnv("DB_URL", "jdbc:postgresql://localhost:5432/app_swing_db");
 
-    // Thêm tham số ApplicationName nếu chưa có trong URL
-    public static final String DB_URL = BASE_URL.contains("?") ?
-        BASE_URL : BASE_URL + "?ApplicationName=OrderManagementApp";
+    // Thêm tham số ApplicationName nếu chưa có trong URL, và bật reWriteBatchedInserts để
+    // driver gộp các lệnh INSERT trong một batch thành INSERT nhiều dòng
+    public static final String DB_URL = withDefaultParam(
+        withDefaultParam(BASE_URL, "ApplicationName", "OrderManagementApp"),
+        "reWriteBatchedInserts", "true");
 
     // Lấy tên người dùng từ biến môi trường hoặc dùng mặc định
     public static final String USER = EnvLoader.getEnv("DB_USER", "postgres");
 
     // Lấy mật khẩu từ biến môi trường hoặc dùng mặc định
     public static final String PASS = EnvLoader.getEnv("DB_PASS", "123456");
+
+    // Số kết nối tối thiểu luôn được giữ sẵn trong pool
+    public static final int POOL_MIN_SIZE = EnvLoader.getIntEnv("DB_POOL_MIN_SIZE", 2);
+
+    // Số kết nối tối đa được mở đồng thời
+    public static final int POOL_MAX_SIZE = EnvLoader.getIntEnv("DB_POOL_MAX_SIZE", 10);
+
+    // Thời gian (ms) một kết nối rảnh được giữ trước khi bị đóng (khi vượt quá min size)
+    public static final long POOL_IDLE_TIMEOUT_MS = EnvLoader.getLongEnv("DB_POOL_IDLE_TIMEOUT_MS", 300_000L);
+
+    // Thời gian (ms) tối đa chờ mượn kết nối khi pool đã hết
+    public static final long POOL_BORROW_TIMEOUT_MS = EnvLoader.getLongEnv("DB_POOL_BORROW_TIMEOUT_MS", 10_000L);
+
+    // Kết nối bị giữ lâu hơn ngưỡng này (ms) sẽ bị báo rò rỉ kèm vị trí mượn, 0 để tắt (mặc định).
+    // Bật khi dò lỗi: mỗi lần mượn kết nối sẽ phải ghi lại stack trace
+    public static final long POOL_LEAK_THRESHOLD_MS = EnvLoader.getLongEnv("DB_POOL_LEAK_THRESHOLD_MS", 0L);
+
+    // Thời gian (giây) chờ kiểm tra kết nối còn sống khi mượn
+    public static final int POOL_VALIDATION_TIMEOUT_S = EnvLoader.getIntEnv("DB_POOL_VALIDATION_TIMEOUT_S", 2);
+
+    // Chu kỳ (ms) làm mới số liệu dashboard ở nền
+    public static final long DASHBOARD_REFRESH_INTERVAL_MS = EnvLoader.getLongEnv("DASHBOARD_REFRESH_INTERVAL_MS", 30_000L);
+
+    // Số phiếu xuất nhập kho tối đa chờ ghi trong hàng đợi
+    public static final int LEDGER_QUEUE_CAPACITY = EnvLoader.getIntEnv("LEDGER_QUEUE_CAPACITY", 10_000);
+
+    // Số phiếu xuất nhập kho tối đa ghi trong một giao dịch
+    public static final int LEDGER_BATCH_SIZE = EnvLoader.getIntEnv("LEDGER_BATCH_SIZE", 500);
+
+    // Thời gian (ms) tối đa chờ chỗ trống khi hàng đợi phiếu xuất nhập kho đã đầy
+    public static final long LEDGER_OFFER_TIMEOUT_MS = EnvLoader.getLongEnv("LEDGER_OFFER_TIMEOUT_MS", 5_000L);
+
+    // Thời gian (ms) tối đa chờ sổ kho nền xác nhận đã ghi các phiếu đã gửi
+    public static final long LEDGER_ACK_TIMEOUT_MS = EnvLoader.getLongEnv("LEDGER_ACK_TIMEOUT_MS", 60_000L);
+
+    // Số kết quả tối đa trả về cho một lần tìm kiếm
+    public static final int SEARCH_RESULT_LIMIT = EnvLoader.getIntEnv("SEARCH_RESULT_LIMIT", 200);
+
+    // Chu kỳ (ms) chụp tồn kho theo sổ xuất nhập kho ở nền
+    public static final long STOCK_SNAPSHOT_INTERVAL_MS = EnvLoader.getLongEnv("STOCK_SNAPSHOT_INTERVAL_MS", 3_600_000L);
+
+    // Số bản ghi tối đa trong mỗi bộ đệm khách hàng, nhà cung cấp, danh mục, người dùng
+    public static final int ENTITY_CACHE_MAX_SIZE = EnvLoader.getIntEnv("ENTITY_CACHE_MAX_SIZE", 5_000);
+
+    // Thời gian (ms) một bản ghi được giữ trong bộ đệm kể từ lúc đọc từ database
+    public static final long ENTITY_CACHE_TTL_MS = EnvLoader.getLongEnv("ENTITY_CACHE_TTL_MS", 300_000L);
+
+    // Số dòng đọc mỗi lần từ con trỏ phía server khi xuất file
+    public static final int EXPORT_FETCH_SIZE = EnvLoader.getIntEnv("EXPORT_FETCH_SIZE", 5_000);
+
+    // Số dòng mỗi lô (mỗi giao dịch) khi nhập khách hàng hàng loạt từ file
+    public static final int IMPORT_CHUNK_SIZE = EnvLoader.getIntEnv("IMPORT_CHUNK_SIZE", 5_000);
+
+    /**
+     * Thêm tham số vào JDBC URL nếu URL chưa khai báo tham số đó
+     */
+    private static String withDefaultParam(String url, String name, String value) {
+        if (url.contains("?" + name + "=") || url.contains("&" + name + "=")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + name + "=" + value;
+    }
 }
@@ -29,6 +29,16 @@ public class Category {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Tạo bản sao của một danh mục, sao chép cả chuỗi danh mục cha
+     */
+    public Category(Category other) {
+        this(other.id, other.name, other.parentId, other.description, other.createdAt, other.updatedAt);
+        if (other.parent != null) {
+            this.parent = new Category(other.parent);
+        }
+    }
+
     // Các phương thức Getter và Setter
     public long getId() {
         return id;
@@ -35,6 +35,14 @@ public class Customer {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Tạo bản sao của một khách hàng
+     */
+    public Customer(Customer other) {
+        this(other.id, other.code, other.name, other.email, other.phone,
+             other.address, other.note, other.active, other.createdAt, other.updatedAt);
+    }
+
     // Các phương thức Getter và Setter
     public long getId() {
         return id;
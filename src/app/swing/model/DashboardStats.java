@@ -0,0 +1,105 @@
+package app.swing.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lớp model cho các số liệu thống kê hiển thị trên dashboard
+ */
+public class DashboardStats {
+    private int userCount;
+    private int orderCount;
+    private int pendingOrderCount;
+    private int productCount;
+    private int lowStockProductCount;
+    private int customerCount;
+    private int supplierCount;
+    private int categoryCount;
+    // Thời điểm chốt số liệu theo đồng hồ của database
+    private LocalDateTime asOf;
+    // Thời điểm ứng dụng nhận được số liệu, dùng để hiển thị độ cũ của số liệu
+    private LocalDateTime refreshedAt;
+
+    // Các constructor
+    public DashboardStats() {}
+
+    // Các phương thức Getter và Setter
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(int userCount) {
+        this.userCount = userCount;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(int orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public int getPendingOrderCount() {
+        return pendingOrderCount;
+    }
+
+    public void setPendingOrderCount(int pendingOrderCount) {
+        this.pendingOrderCount = pendingOrderCount;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public void setProductCount(int productCount) {
+        this.productCount = productCount;
+    }
+
+    public int getLowStockProductCount() {
+        return lowStockProductCount;
+    }
+
+    public void setLowStockProductCount(int lowStockProductCount) {
+        this.lowStockProductCount = lowStockProductCount;
+    }
+
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    public void setCustomerCount(int customerCount) {
+        this.customerCount = customerCount;
+    }
+
+    public int getSupplierCount() {
+        return supplierCount;
+    }
+
+    public void setSupplierCount(int supplierCount) {
+        this.supplierCount = supplierCount;
+    }
+
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    public void setCategoryCount(int categoryCount) {
+        this.categoryCount = categoryCount;
+    }
+
+    public LocalDateTime getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(LocalDateTime asOf) {
+        this.asOf = asOf;
+    }
+
+    public LocalDateTime getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    public void setRefreshedAt(LocalDateTime refreshedAt) {
+        this.refreshedAt = refreshedAt;
+    }
+}
@@ -0,0 +1,147 @@
+package app.swing.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lớp model cho kết quả một lần nhập dữ liệu hàng loạt từ file
+ * <p>
+ * Chỉ giữ tối đa {@value #MAX_REPORTED_ERRORS} lỗi đầu tiên để file lỗi nặng không làm đầy bộ
+ * nhớ; {@link #getErrorCount()} vẫn đếm đủ số dòng lỗi.
+ */
+public class ImportResult {
+
+    // Số lỗi tối đa được giữ lại để hiển thị
+    public static final int MAX_REPORTED_ERRORS = 1_000;
+
+    /**
+     * Lỗi của một dòng trong file nhập
+     */
+    public static class RowError {
+        private final long line;
+        private final String key;
+        private final String message;
+
+        public RowError(long line, String key, String message) {
+            this.line = line;
+            this.key = key;
+            this.message = message;
+        }
+
+        /**
+         * Line number in the file, starting at 1
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Key of the record (SKU, customer code...), may be null if it could not be read
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Dòng " + line + (key != null && !key.isEmpty() ? " (" + key + ")" : "") + ": " + message;
+        }
+    }
+
+    private long totalRows;
+    private long insertedRows;
+    private long updatedRows;
+    private long errorCount;
+    private long elapsedMs;
+    private long resumedFromLine;
+    private final List<RowError> errors = new ArrayList<>();
+
+    // Các phương thức Getter và Setter
+    /**
+     * Number of data rows read from the file, excluding the header
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getInsertedRows() {
+        return insertedRows;
+    }
+
+    public void setInsertedRows(long insertedRows) {
+        this.insertedRows = insertedRows;
+    }
+
+    public long getUpdatedRows() {
+        return updatedRows;
+    }
+
+    public void setUpdatedRows(long updatedRows) {
+        this.updatedRows = updatedRows;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * Last line imported by an earlier, interrupted run that this run continued after; 0 for a fresh run
+     */
+    public long getResumedFromLine() {
+        return resumedFromLine;
+    }
+
+    public void setResumedFromLine(long resumedFromLine) {
+        this.resumedFromLine = resumedFromLine;
+    }
+
+    /**
+     * Number of rows rejected, including those beyond {@link #MAX_REPORTED_ERRORS}
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * First {@link #MAX_REPORTED_ERRORS} errors, in the order they were found
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public void addError(long line, String key, String message) {
+        errorCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, key, message));
+        }
+    }
+
+    /**
+     * Rows imported per second over the whole run, 0 if nothing was timed
+     */
+    public double getRowsPerSecond() {
+        if (elapsedMs <= 0) {
+            return 0;
+        }
+        return (insertedRows + updatedRows) * 1000.0 / elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Đọc %,d dòng: thêm %,d, cập nhật %,d, lỗi %,d trong %,d ms (%,.0f dòng/giây)",
+                totalRows, insertedRows, updatedRows, errorCount, elapsedMs, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,84 @@
+package app.swing.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lớp model cho một trang kết quả phân trang theo keyset
+ * <p>
+ * Token tiếp theo mã hóa khóa sắp xếp của dòng cuối cùng trong trang; truyền lại token này
+ * để lấy trang kế tiếp. Token là null khi đã hết dữ liệu.
+ */
+public class Page<T> {
+    // Ký tự phân tách các thành phần khóa bên trong token
+    private static final String TOKEN_SEPARATOR = "\u0001";
+
+    private final List<T> items;
+    private final String nextToken;
+    private final boolean failed;
+
+    public Page(List<T> items, String nextToken) {
+        this(items, nextToken, false);
+    }
+
+    private Page(List<T> items, String nextToken, boolean failed) {
+        this.items = items != null ? items : Collections.emptyList();
+        this.nextToken = nextToken;
+        this.failed = failed;
+    }
+
+    public static <T> Page<T> empty() {
+        return new Page<>(Collections.emptyList(), null);
+    }
+
+    /**
+     * Empty page returned when the query failed, so callers can retry instead of caching it
+     */
+    public static <T> Page<T> failed() {
+        return new Page<>(Collections.emptyList(), null, true);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Encode the sort key parts of the last row into an opaque continuation token
+     * @param parts Sort key values, in ORDER BY order
+     * @return URL-safe token
+     */
+    public static String encodeToken(String... parts) {
+        String joined = String.join(TOKEN_SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token produced by {@link #encodeToken(String...)}
+     * @param token Token to decode
+     * @param expectedParts Number of sort key parts the caller expects
+     * @return Sort key values
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static String[] decodeToken(String token, int expectedParts) {
+        String joined = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = joined.split(TOKEN_SEPARATOR, -1);
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return parts;
+    }
+}
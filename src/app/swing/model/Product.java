@@ -16,6 +16,9 @@ public class Product {
     private BigDecimal price;
     private BigDecimal cost;
     private int stockQuantity;
+    // Số lượng đang được giữ cho các đơn hàng chưa xuất kho
+    private int reservedQuantity;
+    private int stockStripes;
     private int reorderLevel;
     private boolean active;
     private LocalDateTime createdAt;
@@ -119,6 +122,29 @@ public class Product {
         this.stockQuantity = stockQuantity;
     }
 
+    public int getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public void setReservedQuantity(int reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+
+    public int getStockStripes() {
+        return stockStripes;
+    }
+
+    public void setStockStripes(int stockStripes) {
+        this.stockStripes = stockStripes;
+    }
+
+    /**
+     * Số lượng còn có thể bán: tồn kho trừ phần đang được giữ cho đơn hàng
+     */
+    public int getAvailableQuantity() {
+        return stockQuantity - reservedQuantity;
+    }
+
     public int getReorderLevel() {
         return reorderLevel;
     }
@@ -0,0 +1,65 @@
+package app.swing.model;
+
+/**
+ * Lớp model cho một sản phẩm có tồn kho lệch so với sổ xuất nhập kho
+ */
+public class StockDiscrepancy {
+    private long productId;
+    private String sku;
+    private String productName;
+    // Tồn kho đang lưu trong products (kể cả các dải)
+    private int stockQuantity;
+    // Tồn kho tính lại từ bản chụp gần nhất và các phiếu xuất nhập sau đó
+    private int ledgerQuantity;
+
+    // Các constructor
+    public StockDiscrepancy() {}
+
+    // Các phương thức Getter và Setter
+    public long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(long productId) {
+        this.productId = productId;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public int getStockQuantity() {
+        return stockQuantity;
+    }
+
+    public void setStockQuantity(int stockQuantity) {
+        this.stockQuantity = stockQuantity;
+    }
+
+    public int getLedgerQuantity() {
+        return ledgerQuantity;
+    }
+
+    public void setLedgerQuantity(int ledgerQuantity) {
+        this.ledgerQuantity = ledgerQuantity;
+    }
+
+    /**
+     * Chênh lệch: tồn kho đang lưu trừ tồn kho theo sổ
+     */
+    public int getDifference() {
+        return stockQuantity - ledgerQuantity;
+    }
+}
@@ -32,6 +32,14 @@ public class Supplier {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Tạo bản sao của một nhà cung cấp
+     */
+    public Supplier(Supplier other) {
+        this(other.id, other.name, other.contactName, other.email, other.phone,
+             other.address, other.note, other.createdAt, other.updatedAt);
+    }
+
     // Các phương thức Getter và Setter
     public long getId() {
         return id;
@@ -26,6 +26,13 @@ public class User {
         this.email = email;
     }
 
+    /**
+     * Tạo bản sao của một người dùng
+     */
+    public User(User other) {
+        this(other.id, other.username, other.password, other.role, other.status, other.fullName, other.email);
+    }
+
     // Các phương thức Getter và Setter
     public int getId() {
         return id;
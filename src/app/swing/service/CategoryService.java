@@ -1,143 +1,313 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.Category;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Lớp service cho thực thể Danh mục
  */
 public class CategoryService {
 
+    // Cây danh mục dùng chung cho mọi instance của service; được thay cả cây sau mỗi lần ghi
+    // và nạp lại sau DbConst.ENTITY_CACHE_TTL_MS để thấy thay đổi từ máy khác
+    private static final Object TREE_LOCK = new Object();
+    private static volatile CategoryTree tree;
+    private static long treeVersion;
+
     /**
-     * Get all categories from database
-     * @return List of all categories
+     * Get the in-memory snapshot of the whole category tree, loading it in one query when it
+     * is missing or older than the cache TTL
+     * @return Current tree; the previous tree (or an empty one) if the database could not be read
      */
-    public List<Category> getAllCategories() {
-        List<Category> categories = new ArrayList<>();
-        Map<Long, Category> categoryMap = new HashMap<>();
+    public CategoryTree getCategoryTree() {
+        CategoryTree current = tree;
+        if (current != null && System.currentTimeMillis() - current.getLoadedAt() < DbConst.ENTITY_CACHE_TTL_MS) {
+            return current;
+        }
+
+        long version;
+        synchronized (TREE_LOCK) {
+            version = treeVersion;
+        }
+
+        CategoryTree loaded = loadTree();
+        if (loaded == null) {
+            return current != null ? current : CategoryTree.EMPTY;
+        }
+
+        synchronized (TREE_LOCK) {
+            // Không ghi đè cây được dựng sau một lần ghi đã xảy ra trong lúc đang đọc
+            if (version == treeVersion) {
+                tree = loaded;
+            }
+        }
+        return loaded;
+    }
 
+    /**
+     * Helper method to rebuild the tree after a category write and swap it in
+     */
+    private void refreshTree() {
+        long version;
+        synchronized (TREE_LOCK) {
+            version = ++treeVersion;
+            tree = null;
+        }
+
+        CategoryTree loaded = loadTree();
+
+        synchronized (TREE_LOCK) {
+            if (version == treeVersion) {
+                tree = loaded;
+            }
+        }
+    }
+
+    /**
+     * Helper method to read every category and build a tree, null on error
+     */
+    private CategoryTree loadTree() {
         try (Connection conn = DbConnection.getConnection()) {
-            String sql = "SELECT id, name, parent_id, description, created_at, updated_at " +
-                         "FROM categories ORDER BY name";
+            String sql = "SELECT id, name, parent_id, description, created_at, updated_at FROM categories";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
 
-            // First pass: create category objects
+            List<Category> categories = new ArrayList<>();
             while (rs.next()) {
-                Category category = mapResultSetToCategory(rs);
-                categories.add(category);
-                categoryMap.put(category.getId(), category);
+                categories.add(mapResultSetToCategory(rs));
             }
 
-            // Second pass: set parent references
-            for (Category category : categories) {
-                if (category.hasParent()) {
-                    Category parent = categoryMap.get(category.getParentId());
-                    if (parent != null) {
-                        category.setParent(parent);
-                    }
-                }
-            }
+            return CategoryTree.build(categories, System.currentTimeMillis());
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return categories;
+        return null;
+    }
+
+    /**
+     * Get all categories, with parent references linked
+     * @return List of all categories ordered by name; the objects are shared and must not be modified
+     */
+    public List<Category> getAllCategories() {
+        return new ArrayList<>(getCategoryTree().getAll());
     }
 
     /**
      * Get root categories (categories with no parent)
-     * @return List of root categories
+     * @return List of root categories ordered by name
      */
     public List<Category> getRootCategories() {
-        List<Category> rootCategories = new ArrayList<>();
+        return getCategoryTree().getRoots();
+    }
+
+    /**
+     * Get subcategories for a parent category
+     * @param parentId Parent category ID
+     * @return List of child categories ordered by name
+     */
+    public List<Category> getSubcategories(long parentId) {
+        return getCategoryTree().getChildren(parentId);
+    }
 
+    /**
+     * Get category by ID
+     * @param id Category ID
+     * @return Copy of the category with its parent chain, null if not found
+     */
+    public Category getCategoryById(long id) {
+        Category node = getCategoryTree().get(id);
+        if (node != null) {
+            return new Category(node);
+        }
+        // Danh mục vừa được máy khác thêm, cây chưa nạp lại
+        return loadCategoryById(id);
+    }
+
+    /**
+     * Helper method to read a category and its ancestors from the database, bypassing the tree
+     */
+    private Category loadCategoryById(long id) {
         try (Connection conn = DbConnection.getConnection()) {
-            String sql = "SELECT id, name, parent_id, description, created_at, updated_at " +
-                         "FROM categories WHERE parent_id IS NULL ORDER BY name";
+            return loadWithAncestors(conn, Set.of(id)).get(id);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get categories for a set of IDs together with all their ancestors, from the category tree.
+     * Parent references are linked, so {@link Category#getFullPath()} works on the results;
+     * the objects are shared and must not be modified.
+     * @param ids Category IDs (duplicates and nulls are ignored)
+     * @return Map from category ID to category, including every ancestor
+     */
+    public Map<Long, Category> getCategoriesWithAncestors(Collection<Long> ids) {
+        Map<Long, Category> categoryMap = new HashMap<>();
+        Set<Long> missingIds = new HashSet<>();
+        CategoryTree current = getCategoryTree();
+
+        for (Long id : ids) {
+            if (id == null || categoryMap.containsKey(id)) {
+                continue;
+            }
+            Category node = current.get(id);
+            if (node == null) {
+                missingIds.add(id);
+                continue;
+            }
+            for (Category category = node; category != null; category = category.getParent()) {
+                categoryMap.put(category.getId(), category);
+            }
+        }
+
+        if (missingIds.isEmpty()) {
+            return categoryMap;
+        }
+
+        // Danh mục chưa có trong cây thì đọc từ database
+        try (Connection conn = DbConnection.getConnection()) {
+            for (Map.Entry<Long, Category> entry : loadWithAncestors(conn, missingIds).entrySet()) {
+                categoryMap.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return categoryMap;
+    }
+
+    /**
+     * Get the ancestors of a category
+     * @param id Category ID
+     * @return Ancestors from the root down to the direct parent; empty for a root category
+     */
+    public List<Category> getAncestors(long id) {
+        List<Category> ancestors = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT c.id, c.name, c.parent_id, c.description, c.created_at, c.updated_at " +
+                         "FROM category_closure cc JOIN categories c ON c.id = cc.ancestor_id " +
+                         "WHERE cc.descendant_id = ? AND cc.depth > 0 ORDER BY cc.depth DESC";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, id);
+
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
                 Category category = mapResultSetToCategory(rs);
-                rootCategories.add(category);
+                if (!ancestors.isEmpty()) {
+                    category.setParent(ancestors.get(ancestors.size() - 1));
+                }
+                ancestors.add(category);
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return rootCategories;
+        return ancestors;
     }
 
     /**
-     * Get subcategories for a parent category
-     * @param parentId Parent category ID
-     * @return List of child categories
+     * Get every category below a category, at any depth
+     * @param id Category ID
+     * @return Descendants ordered by depth, then name; the category itself is not included
      */
-    public List<Category> getSubcategories(long parentId) {
-        List<Category> subcategories = new ArrayList<>();
+    public List<Category> getDescendants(long id) {
+        List<Category> descendants = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
-            String sql = "SELECT id, name, parent_id, description, created_at, updated_at " +
-                         "FROM categories WHERE parent_id = ? ORDER BY name";
+            String sql = "SELECT c.id, c.name, c.parent_id, c.description, c.created_at, c.updated_at " +
+                         "FROM category_closure cc JOIN categories c ON c.id = cc.descendant_id " +
+                         "WHERE cc.ancestor_id = ? AND cc.depth > 0 ORDER BY cc.depth, c.name";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setLong(1, parentId);
+            stmt.setLong(1, id);
 
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Category category = mapResultSetToCategory(rs);
-                subcategories.add(category);
+                descendants.add(mapResultSetToCategory(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return subcategories;
+        return descendants;
     }
 
     /**
-     * Get category by ID
+     * Get the IDs of a category and every category below it
      * @param id Category ID
-     * @return Category object if found, null otherwise
+     * @return IDs of the subtree, including the category itself; empty on error
      */
-    public Category getCategoryById(long id) {
+    public Set<Long> getSubtreeIds(long id) {
+        Set<Long> ids = new HashSet<>();
+
         try (Connection conn = DbConnection.getConnection()) {
-            String sql = "SELECT id, name, parent_id, description, created_at, updated_at " +
-                         "FROM categories WHERE id = ?";
+            String sql = "SELECT descendant_id FROM category_closure WHERE ancestor_id = ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, id);
 
             ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                Category category = mapResultSetToCategory(rs);
-
-                // If category has parent, fetch parent data
-                if (category.hasParent()) {
-                    Category parent = getCategoryById(category.getParentId());
-                    if (parent != null) {
-                        category.setParent(parent);
-                    }
-                }
-
-                return category;
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return null;
+        return ids;
+    }
+
+    /**
+     * Helper method to read categories and all their ancestors through the closure table,
+     * with parent references linked
+     */
+    private Map<Long, Category> loadWithAncestors(Connection conn, Set<Long> ids) throws SQLException {
+        Map<Long, Category> categoryMap = new HashMap<>();
+
+        String sql = "SELECT c.id, c.name, c.parent_id, c.description, c.created_at, c.updated_at " +
+                     "FROM categories c WHERE c.id IN (" +
+                     "  SELECT cc.ancestor_id FROM category_closure cc WHERE cc.descendant_id = ANY(?))";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+
+        ResultSet rs = stmt.executeQuery();
+
+        while (rs.next()) {
+            Category category = mapResultSetToCategory(rs);
+            categoryMap.put(category.getId(), category);
+        }
+
+        for (Category category : categoryMap.values()) {
+            if (category.hasParent()) {
+                Category parent = categoryMap.get(category.getParentId());
+                if (parent != null) {
+                    category.setParent(parent);
+                }
+            }
+        }
+
+        return categoryMap;
     }
 
     /**
@@ -146,7 +316,12 @@ public class CategoryService {
      * @return true if successful, false otherwise
      */
     public boolean createCategory(Category category) {
-        try (Connection conn = DbConnection.getConnection()) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+            lockTree(conn);
+
             String sql = "INSERT INTO categories (name, parent_id, description) VALUES (?, ?, ?)";
 
             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
@@ -162,32 +337,89 @@ public class CategoryService {
 
             int rowsAffected = stmt.executeUpdate();
 
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    category.setId(rs.getLong(1));
-                }
-                return true;
+            ResultSet rs = stmt.getGeneratedKeys();
+            if (rowsAffected == 0 || !rs.next()) {
+                conn.rollback();
+                return false;
             }
+            long id = rs.getLong(1);
 
-            return false;
+            // Dòng của chính nó và một dòng cho mỗi tổ tiên của danh mục cha
+            String closureSql = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                                "SELECT ancestor_id, ?, depth + 1 FROM category_closure WHERE descendant_id = ? " +
+                                "UNION ALL SELECT ?, ?, 0";
+
+            PreparedStatement closureStmt = conn.prepareStatement(closureSql);
+            closureStmt.setLong(1, id);
+            if (category.getParentId() != null) {
+                closureStmt.setLong(2, category.getParentId());
+            } else {
+                closureStmt.setNull(2, java.sql.Types.BIGINT);
+            }
+            closureStmt.setLong(3, id);
+            closureStmt.setLong(4, id);
+            closureStmt.executeUpdate();
+
+            conn.commit();
+            category.setId(id);
+            refreshTree();
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
             return false;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     /**
-     * Update existing category
+     * Update existing category; moving it under another parent moves its whole subtree
      * @param category Category object with updated data
-     * @return true if successful, false otherwise
+     * @return true if successful, false otherwise (including when the new parent is the
+     *         category itself or one of its descendants)
      */
     public boolean updateCategory(Category category) {
-        try (Connection conn = DbConnection.getConnection()) {
-            // Check for circular reference
-            if (category.getParentId() != null && category.getParentId() == category.getId()) {
-                return false; // Can't set itself as parent
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+            lockTree(conn);
+
+            Long newParentId = category.getParentId();
+
+            // Check for circular reference: the new parent can't be inside this subtree
+            if (newParentId != null && isInSubtree(conn, category.getId(), newParentId)) {
+                conn.rollback();
+                return false;
+            }
+
+            String parentSql = "SELECT parent_id FROM categories WHERE id = ?";
+            PreparedStatement parentStmt = conn.prepareStatement(parentSql);
+            parentStmt.setLong(1, category.getId());
+            ResultSet parentRs = parentStmt.executeQuery();
+
+            if (!parentRs.next()) {
+                conn.rollback();
+                return false;
+            }
+            Long oldParentId = parentRs.getLong("parent_id");
+            if (parentRs.wasNull()) {
+                oldParentId = null;
             }
 
             String sql = "UPDATE categories SET name = ?, parent_id = ?, description = ?, " +
@@ -196,8 +428,8 @@ public class CategoryService {
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setString(1, category.getName());
 
-            if (category.getParentId() != null) {
-                stmt.setLong(2, category.getParentId());
+            if (newParentId != null) {
+                stmt.setLong(2, newParentId);
             } else {
                 stmt.setNull(2, java.sql.Types.BIGINT);
             }
@@ -205,22 +437,104 @@ public class CategoryService {
             stmt.setString(3, category.getDescription());
             stmt.setLong(4, category.getId());
 
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (stmt.executeUpdate() == 0) {
+                conn.rollback();
+                return false;
+            }
+
+            if (!Objects.equals(oldParentId, newParentId)) {
+                moveSubtree(conn, category.getId(), newParentId);
+            }
+
+            conn.commit();
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
             return false;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            refreshTree();
         }
     }
 
+    /**
+     * Helper method to serialize changes to the category tree, so two concurrent moves can't
+     * build a cycle; plain reads are not blocked
+     */
+    private void lockTree(Connection conn) throws SQLException {
+        conn.createStatement().execute("LOCK TABLE category_closure IN EXCLUSIVE MODE");
+    }
+
+    /**
+     * Helper method to check whether a category is the given root or one of its descendants
+     */
+    private boolean isInSubtree(Connection conn, long rootId, long categoryId) throws SQLException {
+        String sql = "SELECT 1 FROM category_closure WHERE ancestor_id = ? AND descendant_id = ?";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setLong(1, rootId);
+        stmt.setLong(2, categoryId);
+        return stmt.executeQuery().next();
+    }
+
+    /**
+     * Helper method to re-link the closure rows of a subtree under its new parent
+     */
+    private void moveSubtree(Connection conn, long id, Long newParentId) throws SQLException {
+        // Bỏ liên kết giữa các tổ tiên cũ và mọi danh mục trong cây con
+        String detachSql = "DELETE FROM category_closure " +
+                           "WHERE descendant_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?) " +
+                           "AND ancestor_id IN (SELECT ancestor_id FROM category_closure WHERE descendant_id = ? AND depth > 0)";
+
+        PreparedStatement detachStmt = conn.prepareStatement(detachSql);
+        detachStmt.setLong(1, id);
+        detachStmt.setLong(2, id);
+        detachStmt.executeUpdate();
+
+        if (newParentId == null) {
+            return;
+        }
+
+        // Nối mỗi tổ tiên của danh mục cha mới với mọi danh mục trong cây con
+        String attachSql = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                           "SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1 " +
+                           "FROM category_closure a CROSS JOIN category_closure d " +
+                           "WHERE a.descendant_id = ? AND d.ancestor_id = ?";
+
+        PreparedStatement attachStmt = conn.prepareStatement(attachSql);
+        attachStmt.setLong(1, newParentId);
+        attachStmt.setLong(2, id);
+        attachStmt.executeUpdate();
+    }
+
     /**
      * Delete category by ID
      * @param id Category ID
      * @return true if successful, false otherwise
      */
     public boolean deleteCategory(long id) {
-        try (Connection conn = DbConnection.getConnection()) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+            // Khóa cây trước khi kiểm tra danh mục con, để không có danh mục con nào được thêm
+            // vào giữa lúc kiểm tra và lúc xóa
+            lockTree(conn);
+
             // Check if category has child categories
             String checkChildrenSql = "SELECT COUNT(*) FROM categories WHERE parent_id = ?";
             PreparedStatement checkChildrenStmt = conn.prepareStatement(checkChildrenSql);
@@ -229,6 +543,7 @@ public class CategoryService {
 
             if (checkChildrenRs.next() && checkChildrenRs.getInt(1) > 0) {
                 // Category has children, can't delete
+                conn.rollback();
                 return false;
             }
 
@@ -240,6 +555,7 @@ public class CategoryService {
 
             if (checkProductsRs.next() && checkProductsRs.getInt(1) > 0) {
                 // Category is being used by products, can't delete
+                conn.rollback();
                 return false;
             }
 
@@ -249,32 +565,62 @@ public class CategoryService {
             stmt.setLong(1, id);
 
             int rowsAffected = stmt.executeUpdate();
+            conn.commit();
+            refreshTree();
             return rowsAffected > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            refreshTree();
             return false;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     /**
      * Search categories by name or description
      * @param searchTerm Search term to look for
-     * @return List of matching categories
+     * @return List of matching categories, best matches first
      */
     public List<Category> searchCategories(String searchTerm) {
+        return searchCategories(searchTerm, DbConst.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Search categories by name or description, using the trigram indexes
+     * @param searchTerm Search term to look for
+     * @param limit Maximum number of results
+     * @return List of matching categories, best matches first
+     */
+    public List<Category> searchCategories(String searchTerm, int limit) {
         List<Category> categories = new ArrayList<>();
         Map<Long, Category> categoryMap = new HashMap<>();
 
         try (Connection conn = DbConnection.getConnection()) {
+            String[] columns = {"name", "description"};
             String sql = "SELECT id, name, parent_id, description, created_at, updated_at " +
-                         "FROM categories WHERE name ILIKE ? OR description ILIKE ? " +
-                         "ORDER BY name";
+                         "FROM categories WHERE " + TextSearch.matchSql(columns) + " " +
+                         "ORDER BY " + TextSearch.rankSql(columns) + " DESC, name LIMIT ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
+            int index = TextSearch.bindRepeated(stmt, 1, TextSearch.pattern(searchTerm), columns.length);
+            index = TextSearch.bindRepeated(stmt, index, searchTerm, columns.length);
+            stmt.setInt(index, limit);
 
             ResultSet rs = stmt.executeQuery();
 
@@ -285,19 +631,25 @@ public class CategoryService {
                 categoryMap.put(category.getId(), category);
             }
 
-            // Second pass: set parent references
+            // Second pass: take the ancestors missing from the results from the category tree
+            Set<Long> missingParentIds = new HashSet<>();
+            for (Category category : categories) {
+                if (category.hasParent() && !categoryMap.containsKey(category.getParentId())) {
+                    missingParentIds.add(category.getParentId());
+                }
+            }
+            if (!missingParentIds.isEmpty()) {
+                for (Category ancestor : getCategoriesWithAncestors(missingParentIds).values()) {
+                    categoryMap.putIfAbsent(ancestor.getId(), ancestor);
+                }
+            }
+
+            // Third pass: set parent references
             for (Category category : categories) {
                 if (category.hasParent()) {
-                    // If parent is in our results, use it
                     Category parent = categoryMap.get(category.getParentId());
                     if (parent != null) {
                         category.setParent(parent);
-                    } else {
-                        // Otherwise fetch the parent
-                        parent = getCategoryById(category.getParentId());
-                        if (parent != null) {
-                            category.setParent(parent);
-                        }
                     }
                 }
             }
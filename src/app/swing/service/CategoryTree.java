@@ -0,0 +1,372 @@
+package app.swing.service;
+
+import app.swing.model.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ảnh chụp bất biến của toàn bộ cây danh mục, nằm sẵn trong bộ nhớ
+ * <p>
+ * Mỗi danh mục có một chỉ số trong các mảng song song: nút, chỉ số cha, độ sâu và đường đi từ
+ * gốc xuống chính nó. Tra ID ra chỉ số bằng một mảng theo ID khi các ID liền nhau (trường hợp
+ * thường gặp với BIGSERIAL), nếu không thì tìm nhị phân trên mảng ID đã sắp xếp. Nhờ đường đi
+ * tính sẵn, lấy tổ tiên và kiểm tra quan hệ tổ tiên - hậu duệ không phải đi ngược lên cây.
+ * <p>
+ * Các đối tượng {@link Category} trong cây đã được nối sẵn danh mục cha và dùng chung cho mọi
+ * nơi đọc, nên chỉ được đọc, không được sửa. Cần sửa thì lấy bản sao qua
+ * {@link CategoryService#getCategoryById(long)}. Khi danh mục thay đổi, {@link CategoryService}
+ * dựng một cây mới và thay cả cây một lần, nơi đang đọc cây cũ vẫn thấy một cây nhất quán.
+ */
+public final class CategoryTree {
+
+    // Dùng mảng tra trực tiếp khi khoảng ID không lớn hơn quá nhiều so với số danh mục
+    private static final int DENSE_SPAN_FACTOR = 4;
+    private static final int DENSE_SPAN_SLACK = 1024;
+
+    private static final int[] NO_CHILDREN = new int[0];
+
+    public static final CategoryTree EMPTY = build(Collections.emptyList(), 0L);
+
+    private final long[] ids;
+    private final Category[] nodes;
+    private final int[] parentIndex;
+    private final int[] depth;
+    private final int[][] paths;
+    private final int[][] children;
+    private final int[] roots;
+    private final List<Category> byName;
+
+    // Bảng tra trực tiếp ID - minId -> chỉ số, null khi ID quá thưa
+    private final int[] denseIndex;
+    private final long minId;
+
+    private final long loadedAt;
+
+    private CategoryTree(long[] ids, Category[] nodes, int[] parentIndex, int[] depth, int[][] paths,
+                         int[][] children, int[] roots, List<Category> byName,
+                         int[] denseIndex, long minId, long loadedAt) {
+        this.ids = ids;
+        this.nodes = nodes;
+        this.parentIndex = parentIndex;
+        this.depth = depth;
+        this.paths = paths;
+        this.children = children;
+        this.roots = roots;
+        this.byName = byName;
+        this.denseIndex = denseIndex;
+        this.minId = minId;
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Build a tree from every category row; parent references of the given objects are set
+     * @param categories All categories, in any order
+     * @param loadedAt Time in milliseconds the rows were read
+     * @return New tree; a category whose parent is missing or part of a cycle becomes a root
+     */
+    public static CategoryTree build(List<Category> categories, long loadedAt) {
+        int n = categories.size();
+
+        Category[] nodes = categories.toArray(new Category[0]);
+        Arrays.sort(nodes, Comparator.comparingLong(Category::getId));
+
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = nodes[i].getId();
+        }
+
+        long minId = n == 0 ? 0 : ids[0];
+        int[] denseIndex = null;
+        if (n > 0 && ids[n - 1] - minId < (long) n * DENSE_SPAN_FACTOR + DENSE_SPAN_SLACK) {
+            denseIndex = new int[(int) (ids[n - 1] - minId + 1)];
+            Arrays.fill(denseIndex, -1);
+            for (int i = 0; i < n; i++) {
+                denseIndex[(int) (ids[i] - minId)] = i;
+            }
+        }
+
+        int[] parentIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            Category category = nodes[i];
+            parentIndex[i] = category.hasParent() ? Arrays.binarySearch(ids, category.getParentId()) : -1;
+            if (parentIndex[i] < 0) {
+                parentIndex[i] = -1;
+            }
+        }
+
+        breakCycles(parentIndex);
+
+        int[][] paths = new int[n][];
+        int[] depth = new int[n];
+        for (int i = 0; i < n; i++) {
+            resolvePath(i, parentIndex, paths);
+            depth[i] = paths[i].length - 1;
+        }
+
+        int[] childCount = new int[n];
+        int rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (parentIndex[i] >= 0) {
+                childCount[parentIndex[i]]++;
+            } else {
+                rootCount++;
+            }
+        }
+
+        int[][] children = new int[n][];
+        for (int i = 0; i < n; i++) {
+            children[i] = childCount[i] == 0 ? NO_CHILDREN : new int[childCount[i]];
+            childCount[i] = 0;
+        }
+        int[] roots = new int[rootCount];
+        rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            int parent = parentIndex[i];
+            if (parent >= 0) {
+                children[parent][childCount[parent]++] = i;
+                nodes[i].setParent(nodes[parent]);
+            } else {
+                roots[rootCount++] = i;
+                nodes[i].setParent(null);
+            }
+        }
+
+        Comparator<Integer> nameOrder = (a, b) -> compareNames(nodes[a], nodes[b]);
+        for (int i = 0; i < n; i++) {
+            children[i] = sortIndexes(children[i], nameOrder);
+        }
+        roots = sortIndexes(roots, nameOrder);
+
+        List<Category> byName = new ArrayList<>(Arrays.asList(nodes));
+        byName.sort(CategoryTree::compareNames);
+
+        return new CategoryTree(ids, nodes, parentIndex, depth, paths, children, roots,
+                Collections.unmodifiableList(byName), denseIndex, minId, loadedAt);
+    }
+
+    /**
+     * Helper method to turn a category into a root when following parents from it leads back to it
+     */
+    private static void breakCycles(int[] parentIndex) {
+        // 0: chưa đi qua, i + 1: đang đi lên từ nút i, -1: đã biết không nằm trên vòng
+        int[] state = new int[parentIndex.length];
+        for (int i = 0; i < parentIndex.length; i++) {
+            int current = i;
+            while (current >= 0 && state[current] == 0) {
+                state[current] = i + 1;
+                current = parentIndex[current];
+            }
+            if (current >= 0 && state[current] == i + 1) {
+                parentIndex[current] = -1;
+            }
+
+            current = i;
+            while (current >= 0 && state[current] == i + 1) {
+                state[current] = -1;
+                current = parentIndex[current];
+            }
+        }
+    }
+
+    /**
+     * Helper method to compute the root-to-node index path of a node and its unresolved ancestors
+     */
+    private static void resolvePath(int start, int[] parentIndex, int[][] paths) {
+        List<Integer> chain = new ArrayList<>();
+        int current = start;
+        while (current >= 0 && paths[current] == null) {
+            chain.add(current);
+            current = parentIndex[current];
+        }
+
+        for (int k = chain.size() - 1; k >= 0; k--) {
+            int node = chain.get(k);
+            int parent = parentIndex[node];
+            int[] parentPath = parent >= 0 ? paths[parent] : NO_CHILDREN;
+            int[] path = Arrays.copyOf(parentPath, parentPath.length + 1);
+            path[parentPath.length] = node;
+            paths[node] = path;
+        }
+    }
+
+    private static int compareNames(Category a, Category b) {
+        return Comparator.nullsLast(String::compareTo).compare(a.getName(), b.getName());
+    }
+
+    private static int[] sortIndexes(int[] indexes, Comparator<Integer> order) {
+        if (indexes.length < 2) {
+            return indexes;
+        }
+        Integer[] boxed = Arrays.stream(indexes).boxed().toArray(Integer[]::new);
+        Arrays.sort(boxed, order);
+        return Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Helper method to map a category ID to its array index, -1 if absent
+     */
+    private int indexOf(long id) {
+        if (denseIndex != null) {
+            long offset = id - minId;
+            return offset >= 0 && offset < denseIndex.length ? denseIndex[(int) offset] : -1;
+        }
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Get a category node; the returned object is shared and must not be modified
+     * @param id Category ID
+     * @return Category with its parent chain linked, null if absent
+     */
+    public Category get(long id) {
+        int index = indexOf(id);
+        return index >= 0 ? nodes[index] : null;
+    }
+
+    /**
+     * Check whether a category is in the tree
+     * @param id Category ID
+     * @return true if present
+     */
+    public boolean contains(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Get every category ordered by name
+     * @return Unmodifiable list of shared nodes
+     */
+    public List<Category> getAll() {
+        return byName;
+    }
+
+    /**
+     * Get the categories without a parent, ordered by name
+     * @return List of shared nodes
+     */
+    public List<Category> getRoots() {
+        return toCategories(roots, 0, roots.length);
+    }
+
+    /**
+     * Get the direct children of a category, ordered by name
+     * @param id Category ID
+     * @return List of shared nodes; empty if the category is absent or has no children
+     */
+    public List<Category> getChildren(long id) {
+        int index = indexOf(id);
+        return index >= 0 ? toCategories(children[index], 0, children[index].length) : new ArrayList<>();
+    }
+
+    /**
+     * Get the depth of a category
+     * @param id Category ID
+     * @return 0 for a root category, -1 if absent
+     */
+    public int getDepth(long id) {
+        int index = indexOf(id);
+        return index >= 0 ? depth[index] : -1;
+    }
+
+    /**
+     * Get the ancestors of a category
+     * @param id Category ID
+     * @return Ancestors from the root down to the direct parent; empty for a root or absent category
+     */
+    public List<Category> getAncestors(long id) {
+        int index = indexOf(id);
+        return index >= 0 ? toCategories(paths[index], 0, paths[index].length - 1) : new ArrayList<>();
+    }
+
+    /**
+     * Get the names from the root down to a category, joined with " > "
+     * @param id Category ID
+     * @return Full path, null if absent
+     */
+    public String getFullPath(long id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder();
+        for (int node : paths[index]) {
+            if (path.length() > 0) {
+                path.append(" > ");
+            }
+            path.append(nodes[node].getName());
+        }
+        return path.toString();
+    }
+
+    /**
+     * Check whether a category is the given ancestor or below it
+     * @param ancestorId Possible ancestor ID
+     * @param id Category ID
+     * @return true if id is ancestorId or one of its descendants
+     */
+    public boolean isInSubtree(long ancestorId, long id) {
+        int ancestor = indexOf(ancestorId);
+        int index = indexOf(id);
+        if (ancestor < 0 || index < 0) {
+            return false;
+        }
+        int ancestorDepth = depth[ancestor];
+        return ancestorDepth <= depth[index] && paths[index][ancestorDepth] == ancestor;
+    }
+
+    /**
+     * Get the IDs of a category and every category below it
+     * @param id Category ID
+     * @return IDs of the subtree including the category itself; empty if absent
+     */
+    public Set<Long> getSubtreeIds(long id) {
+        Set<Long> subtree = new HashSet<>();
+        int index = indexOf(id);
+        if (index < 0) {
+            return subtree;
+        }
+
+        int[] stack = new int[nodes.length];
+        int top = 0;
+        stack[top++] = index;
+        while (top > 0) {
+            int node = stack[--top];
+            subtree.add(ids[node]);
+            for (int child : children[node]) {
+                stack[top++] = child;
+            }
+        }
+        return subtree;
+    }
+
+    /**
+     * Get the number of categories
+     * @return Category count
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Get the time the rows of this tree were read
+     * @return Time in milliseconds
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    private List<Category> toCategories(int[] indexes, int from, int to) {
+        List<Category> list = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            list.add(nodes[indexes[i]]);
+        }
+        return list;
+    }
+}
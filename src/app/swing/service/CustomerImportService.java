@@ -0,0 +1,352 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
+import app.swing.model.ImportResult;
+import app.swing.util.CopyBuffer;
+import app.swing.util.CsvReader;
+import app.swing.util.ImportSupport;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Lớp service nhập khách hàng hàng loạt từ file CSV (vd. chuyển dữ liệu từ hệ thống CRM cũ)
+ * <p>
+ * File được đọc từng dòng và chia thành các lô {@link DbConst#IMPORT_CHUNK_SIZE} dòng. Mỗi lô được
+ * đẩy qua lệnh COPY vào một bảng tạm rồi gộp vào bảng customers bằng vài câu lệnh trên cả lô:
+ * dòng trùng mã với khách hàng đã có, hoặc không có mã khớp nhưng trùng email (không phân biệt
+ * hoa thường), sẽ cập nhật khách hàng đó; các dòng còn lại được thêm mới. Ô để trống khi cập
+ * nhật giữ nguyên giá trị cũ. Dòng trùng mã/email với dòng trước trong cùng lô, hoặc có mã và
+ * email thuộc về hai khách hàng khác nhau, bị bỏ qua và báo lỗi.
+ * <p>
+ * Mỗi lô là một giao dịch, commit cùng mốc dòng cuối đã nhập trong bảng import_checkpoints. Nếu
+ * lần nhập bị lỗi hoặc hủy giữa chừng, chạy lại cùng file sẽ tiếp tục sau mốc đó. Vì việc gộp
+ * theo mã/email, nhập lại một dòng đã nhập chỉ cập nhật lại đúng khách hàng đó.
+ * <p>
+ * Dòng đầu tiên là tiêu đề, dùng tên cột của bảng customers (không phân biệt hoa thường): name
+ * là bắt buộc; code, email, phone, address, note, is_active là tùy chọn.
+ */
+public class CustomerImportService {
+
+    private static final String JOB_PREFIX = "customers:";
+
+    private static final String[] REQUIRED_COLUMNS = {"name"};
+
+    // Các cột được nhận trong file
+    private static final String[] COLUMNS = {"code", "name", "email", "phone", "address", "note", "is_active"};
+
+    // Bảng tạm sống theo phiên kết nối, dữ liệu bị xóa sau mỗi lần commit lô
+    private static final String STAGING_DDL =
+            "CREATE TEMP TABLE IF NOT EXISTS customer_import (" +
+            "  line BIGINT NOT NULL, code TEXT, name TEXT NOT NULL, email TEXT, phone TEXT, " +
+            "  address TEXT, note TEXT, is_active BOOLEAN, customer_id BIGINT" +
+            ") ON COMMIT DELETE ROWS";
+
+    private static final String COPY_SQL =
+            "COPY customer_import (line, code, name, email, phone, address, note, is_active) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private final CustomerService customerService = new CustomerService();
+
+    /**
+     * Import customers from a CSV file, resuming after the last committed chunk of an earlier
+     * run over the same file; blocks, so call off the EDT
+     * @param file CSV file, UTF-8 with or without BOM
+     * @param listener Receives the number of rows read after each chunk; returns false to stop. May be null
+     * @return Counts, rejected rows and timing of this run; null on error or if the listener stopped
+     *         the import. Chunks committed before an error or stop are kept and resumed next time
+     */
+    public ImportResult importCustomers(Path file, LongPredicate listener) {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+        Connection conn = null;
+
+        try (CsvReader reader = new CsvReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+
+            String[] header = reader.readRecord();
+            if (header == null) {
+                result.addError(1, null, "File không có dữ liệu");
+                return result;
+            }
+            Map<String, Integer> columns = ImportSupport.mapColumns(header, COLUMNS, REQUIRED_COLUMNS, result);
+            if (columns == null) {
+                return result;
+            }
+
+            String jobKey = jobKey(file);
+            String fileName = file.getFileName().toString();
+
+            conn = DbConnection.getConnection();
+            DbConnection.markLongRunning(conn);
+            conn.setAutoCommit(false);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(STAGING_DDL);
+            }
+
+            // Số liệu của các lần chạy trước: dòng cuối, tổng dòng, thêm, cập nhật, lỗi
+            long[] previous = loadCheckpoint(conn, jobKey);
+            long resumeLine = previous[0];
+            result.setResumedFromLine(resumeLine);
+
+            int chunkSize = Math.max(1, DbConst.IMPORT_CHUNK_SIZE);
+            long lastLine = resumeLine;
+            boolean more = true;
+            while (more) {
+                long chunkRows = 0;
+                CopyBuffer copy = new CopyBuffer(conn.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL));
+                try {
+                    String[] record = null;
+                    while (chunkRows < chunkSize && (record = reader.readRecord()) != null) {
+                        long line = reader.getRecordLine();
+                        if (line <= resumeLine) {
+                            // Đã nhập ở lần chạy trước
+                            continue;
+                        }
+                        chunkRows++;
+                        lastLine = line;
+                        String error = appendRow(copy, line, record, columns);
+                        if (error != null) {
+                            result.addError(line, recordKey(record, columns), error);
+                        }
+                    }
+                    more = record != null;
+                    copy.finish();
+                } finally {
+                    copy.cancel();
+                }
+
+                if (chunkRows == 0) {
+                    break;
+                }
+                result.setTotalRows(result.getTotalRows() + chunkRows);
+
+                mergeChunk(conn, result);
+                saveCheckpoint(conn, jobKey, fileName, lastLine, previous, result, false);
+                conn.commit();
+                customerService.invalidateCache();
+
+                if (listener != null && !listener.test(result.getTotalRows())) {
+                    return null;
+                }
+            }
+
+            saveCheckpoint(conn, jobKey, fileName, lastLine, previous, result, true);
+            conn.commit();
+
+            result.setElapsedMs((System.nanoTime() - startNanos) / 1_000_000);
+            return result;
+
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            return null;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    dropStaging(conn);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method to drop the staging table so it does not stay on the pooled connection
+     */
+    private void dropStaging(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS customer_import");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Identify a file by name, size and modification time, so a changed file starts from the beginning
+     */
+    private String jobKey(Path file) throws IOException {
+        return JOB_PREFIX + file.getFileName() + ":" + Files.size(file) + ":"
+                + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    /**
+     * Helper method to read the unfinished checkpoint of a job
+     * @return Last line, total, inserted, updated and error rows; all zero if there is none
+     */
+    private long[] loadCheckpoint(Connection conn, String jobKey) throws SQLException {
+        String sql = "SELECT last_line, total_rows, inserted_rows, updated_rows, error_rows " +
+                     "FROM import_checkpoints WHERE job_key = ? AND completed_at IS NULL";
+        long[] values = new long[5];
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobKey);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rs.getLong(i + 1);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Helper method to record progress in the current transaction, adding this run to the previous runs
+     */
+    private void saveCheckpoint(Connection conn, String jobKey, String fileName, long lastLine,
+                                long[] previous, ImportResult result, boolean completed) throws SQLException {
+        String sql = "INSERT INTO import_checkpoints (job_key, file_name, last_line, total_rows, " +
+                     "inserted_rows, updated_rows, error_rows, completed_at, updated_at) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, " + (completed ? "now()" : "NULL") + ", now()) " +
+                     "ON CONFLICT (job_key) DO UPDATE SET last_line = EXCLUDED.last_line, " +
+                     "total_rows = EXCLUDED.total_rows, inserted_rows = EXCLUDED.inserted_rows, " +
+                     "updated_rows = EXCLUDED.updated_rows, error_rows = EXCLUDED.error_rows, " +
+                     "completed_at = EXCLUDED.completed_at, updated_at = now()";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobKey);
+            stmt.setString(2, fileName);
+            stmt.setLong(3, lastLine);
+            stmt.setLong(4, previous[1] + result.getTotalRows());
+            stmt.setLong(5, previous[2] + result.getInsertedRows());
+            stmt.setLong(6, previous[3] + result.getUpdatedRows());
+            stmt.setLong(7, previous[4] + result.getErrorCount());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Helper method to merge the staged chunk into customers, recording counts and rejected rows
+     */
+    private void mergeChunk(Connection conn, ImportResult result) throws SQLException {
+        ImportSupport.analyze(conn, "customer_import");
+
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import d " +
+                "USING (SELECT code, min(line) AS first_line FROM customer_import " +
+                "       WHERE code IS NOT NULL GROUP BY code HAVING count(*) > 1) k " +
+                "WHERE d.code = k.code AND d.line > k.first_line " +
+                "RETURNING d.line, d.code, 'Mã khách hàng trùng với dòng ' || k.first_line || ' trong file'");
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import d " +
+                "USING (SELECT lower(email) AS email, min(line) AS first_line FROM customer_import " +
+                "       WHERE email IS NOT NULL GROUP BY lower(email) HAVING count(*) > 1) k " +
+                "WHERE lower(d.email) = k.email AND d.line > k.first_line " +
+                "RETURNING d.line, COALESCE(d.code, d.email), 'Email trùng với dòng ' || k.first_line || ' trong file'");
+
+        // Khớp khách hàng đã có: theo mã trước, sau đó theo email cho các dòng chưa khớp
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE customer_import s SET customer_id = c.id " +
+                               "FROM customers c WHERE s.code IS NOT NULL AND c.code = s.code");
+            stmt.executeUpdate("UPDATE customer_import s SET customer_id = c.id " +
+                               "FROM customers c WHERE s.customer_id IS NULL AND s.email IS NOT NULL " +
+                               "AND lower(c.email) = lower(s.email)");
+        }
+
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import s USING customers c " +
+                "WHERE s.customer_id IS NOT NULL AND s.email IS NOT NULL " +
+                "AND lower(c.email) = lower(s.email) AND c.id <> s.customer_id " +
+                "RETURNING s.line, COALESCE(s.code, s.email), " +
+                "'Email đã thuộc khách hàng khác (' || COALESCE(c.code, 'ID ' || c.id) || ')'");
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import s USING customers c " +
+                "WHERE c.id = s.customer_id AND s.code IS NOT NULL AND c.code IS NOT NULL AND c.code <> s.code " +
+                "RETURNING s.line, s.code, 'Email đã thuộc khách hàng mã ' || c.code");
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import d " +
+                "USING (SELECT customer_id, min(line) AS first_line FROM customer_import " +
+                "       WHERE customer_id IS NOT NULL GROUP BY customer_id HAVING count(*) > 1) k " +
+                "WHERE d.customer_id = k.customer_id AND d.line > k.first_line " +
+                "RETURNING d.line, COALESCE(d.code, d.email), 'Trùng khách hàng với dòng ' || k.first_line || ' trong file'");
+
+        try (Statement stmt = conn.createStatement()) {
+            int updated = stmt.executeUpdate(
+                    "UPDATE customers c SET code = COALESCE(s.code, c.code), name = s.name, " +
+                    "email = COALESCE(s.email, c.email), phone = COALESCE(s.phone, c.phone), " +
+                    "address = COALESCE(s.address, c.address), note = COALESCE(s.note, c.note), " +
+                    "is_active = COALESCE(s.is_active, c.is_active), updated_at = now() " +
+                    "FROM customer_import s WHERE c.id = s.customer_id");
+            result.setUpdatedRows(result.getUpdatedRows() + updated);
+
+            // Mã và email không trùng trong lô, nên dòng đã thêm được tìm lại theo đúng cặp mã/email
+            ResultSet rs = stmt.executeQuery(
+                    "WITH ins AS (" +
+                    "  INSERT INTO customers (code, name, email, phone, address, note, is_active) " +
+                    "  SELECT code, name, email, phone, address, note, COALESCE(is_active, TRUE) " +
+                    "  FROM customer_import WHERE customer_id IS NULL ORDER BY line " +
+                    "  ON CONFLICT DO NOTHING RETURNING id, code, email), " +
+                    "u AS (" +
+                    "  UPDATE customer_import s SET customer_id = ins.id FROM ins " +
+                    "  WHERE s.customer_id IS NULL AND s.code IS NOT DISTINCT FROM ins.code " +
+                    "  AND s.email IS NOT DISTINCT FROM ins.email) " +
+                    "SELECT count(*) FROM ins");
+            if (rs.next()) {
+                result.setInsertedRows(result.getInsertedRows() + rs.getLong(1));
+            }
+        }
+
+        // Dòng bị bỏ qua vì khách hàng thêm cùng lúc từ nơi khác đã chiếm mã/email
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM customer_import WHERE customer_id IS NULL " +
+                "RETURNING line, COALESCE(code, email), 'Mã hoặc email vừa được thêm từ nơi khác trong lúc nhập'");
+    }
+
+    /**
+     * Helper method to validate one record and append it to the COPY data
+     * @return Error message, or null if the row was appended
+     */
+    private String appendRow(CopyBuffer copy, long line, String[] record, Map<String, Integer> columns)
+            throws SQLException {
+        String name = ImportSupport.field(record, columns, "name");
+        if (name.isEmpty()) {
+            return "Thiếu tên khách hàng";
+        }
+
+        String email = ImportSupport.field(record, columns, "email");
+        if (!email.isEmpty() && (email.indexOf('@') <= 0 || email.chars().anyMatch(Character::isWhitespace))) {
+            return "Email không hợp lệ: " + email;
+        }
+
+        Boolean active;
+        try {
+            active = ImportSupport.parseBoolean(ImportSupport.field(record, columns, "is_active"));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        copy.value(line)
+            .text(ImportSupport.field(record, columns, "code"))
+            .text(name)
+            .text(email)
+            .text(ImportSupport.field(record, columns, "phone"))
+            .text(ImportSupport.field(record, columns, "address"))
+            .text(ImportSupport.field(record, columns, "note"))
+            .value(active)
+            .endRow();
+        return null;
+    }
+
+    private String recordKey(String[] record, Map<String, Integer> columns) {
+        String code = ImportSupport.field(record, columns, "code");
+        return code.isEmpty() ? ImportSupport.field(record, columns, "email") : code;
+    }
+
+}
@@ -1,17 +1,28 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.Customer;
+import app.swing.model.Page;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Lớp service cho thực thể Khách hàng
  */
 public class CustomerService {
 
+    // Bộ đệm khách hàng theo ID, dùng chung cho mọi instance của service
+    private static final EntityCache<Customer> CACHE = new EntityCache<>("customers",
+            DbConst.ENTITY_CACHE_MAX_SIZE, DbConst.ENTITY_CACHE_TTL_MS, Customer::new);
+
     /**
      * Lấy tất cả khách hàng từ cơ sở dữ liệu
      * @return Danh sách tất cả khách hàng
@@ -51,6 +62,52 @@ public class CustomerService {
         return customers;
     }
 
+    /**
+     * Lấy một trang khách hàng sắp xếp theo tên, phân trang keyset theo (name, id)
+     * @param pageToken Token của trang trước, hoặc null cho trang đầu tiên
+     * @param pageSize Số khách hàng tối đa trong trang
+     * @return Trang khách hàng
+     */
+    public Page<Customer> getCustomersPage(String pageToken, int pageSize) {
+        List<Customer> customers = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT id, code, name, email, phone, address, note, is_active, " +
+                         "created_at, updated_at FROM customers " +
+                         (pageToken != null ? "WHERE (name, id) > (?, ?) " : "") +
+                         "ORDER BY name, id LIMIT ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            int paramIndex = 1;
+            if (pageToken != null) {
+                String[] key = Page.decodeToken(pageToken, 2);
+                stmt.setString(paramIndex++, key[0]);
+                stmt.setLong(paramIndex++, Long.parseLong(key[1]));
+            }
+            // Fetch one extra row to know whether another page exists
+            stmt.setInt(paramIndex, pageSize + 1);
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                customers.add(mapResultSetToCustomer(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("SQL Error in getCustomersPage: " + e.getMessage());
+            e.printStackTrace();
+            return Page.failed();
+        }
+
+        String nextToken = null;
+        if (customers.size() > pageSize) {
+            customers.remove(pageSize);
+            Customer last = customers.get(pageSize - 1);
+            nextToken = Page.encodeToken(last.getName(), String.valueOf(last.getId()));
+        }
+
+        return new Page<>(customers, nextToken);
+    }
+
     /**
      * Get only active customers
      * @return List of active customers
@@ -97,6 +154,13 @@ public class CustomerService {
      * @return Customer object if found, null otherwise
      */
     public Customer getCustomerById(long id) {
+        return CACHE.get(id, this::loadCustomerById);
+    }
+
+    /**
+     * Helper method to read a customer from the database, bypassing the cache
+     */
+    private Customer loadCustomerById(long id) {
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT id, code, name, email, phone, address, note, is_active, " +
                          "created_at, updated_at FROM customers WHERE id = ?";
@@ -116,6 +180,47 @@ public class CustomerService {
         return null;
     }
 
+    /**
+     * Get customers for a set of IDs in a single query
+     * @param ids Customer IDs (duplicates and nulls are ignored)
+     * @return Map from customer ID to customer; missing IDs are absent
+     */
+    public Map<Long, Customer> getCustomersByIds(Collection<Long> ids) {
+        return CACHE.getAll(ids, this::loadCustomersByIds);
+    }
+
+    /**
+     * Helper method to read customers from the database in a single query, bypassing the cache
+     */
+    private Map<Long, Customer> loadCustomersByIds(Collection<Long> ids) {
+        Map<Long, Customer> customers = new HashMap<>();
+        Set<Long> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+
+        if (distinctIds.isEmpty()) {
+            return customers;
+        }
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT id, code, name, email, phone, address, note, is_active, " +
+                         "created_at, updated_at FROM customers WHERE id = ANY(?)";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setArray(1, conn.createArrayOf("bigint", distinctIds.toArray()));
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                Customer customer = mapResultSetToCustomer(rs);
+                customers.put(customer.getId(), customer);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return customers;
+    }
+
     /**
      * Create new customer
      * @param customer Customer object with data
@@ -180,6 +285,8 @@ public class CustomerService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(customer.getId());
         }
     }
 
@@ -212,29 +319,40 @@ public class CustomerService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(id);
         }
     }
 
     /**
      * Search customers by name, code, email or phone
      * @param searchTerm Search term to look for
-     * @return List of matching customers
+     * @return List of matching customers, best matches first
      */
     public List<Customer> searchCustomers(String searchTerm) {
+        return searchCustomers(searchTerm, DbConst.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Search customers by name, code, email or phone, using the trigram indexes
+     * @param searchTerm Search term to look for
+     * @param limit Maximum number of results
+     * @return List of matching customers, best matches first
+     */
+    public List<Customer> searchCustomers(String searchTerm, int limit) {
         List<Customer> customers = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
+            String[] columns = {"name", "code", "email", "phone"};
             String sql = "SELECT id, code, name, email, phone, address, note, is_active, " +
                          "created_at, updated_at FROM customers " +
-                         "WHERE name ILIKE ? OR code ILIKE ? OR email ILIKE ? OR phone ILIKE ? " +
-                         "ORDER BY name";
+                         "WHERE " + TextSearch.matchSql(columns) + " " +
+                         "ORDER BY " + TextSearch.rankSql(columns) + " DESC, name LIMIT ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            stmt.setString(3, searchPattern);
-            stmt.setString(4, searchPattern);
+            int index = TextSearch.bindRepeated(stmt, 1, TextSearch.pattern(searchTerm), columns.length);
+            index = TextSearch.bindRepeated(stmt, index, searchTerm, columns.length);
+            stmt.setInt(index, limit);
 
             ResultSet rs = stmt.executeQuery();
 
@@ -350,4 +468,19 @@ public class CustomerService {
 
         return customer;
     }
+
+    /**
+     * Get hit/miss/eviction statistics of the customer cache
+     * @return Current cache statistics
+     */
+    public EntityCache.Stats getCacheStats() {
+        return CACHE.getStats();
+    }
+
+    /**
+     * Drop every cached customer, for bulk writes that bypass this service
+     */
+    void invalidateCache() {
+        CACHE.invalidateAll();
+    }
 }
@@ -0,0 +1,130 @@
+package app.swing.service;
+
+import app.swing.contants.DbConst;
+import app.swing.model.DashboardStats;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bộ nhớ đệm số liệu dashboard, được làm mới định kỳ ở nền
+ * <p>
+ * Các màn hình dashboard đọc bản chụp số liệu trong bộ nhớ thay vì truy vấn database mỗi lần
+ * mở. Lần đầu và định kỳ sau đó các số đếm được đọc toàn bộ bằng một truy vấn tổng hợp; giữa các
+ * lần đó mỗi lần làm mới chỉ cộng thêm các thay đổi do trigger ghi lại từ sau snapshot của lần đọc
+ * trước (xem {@link DashboardStatsService}), nên không phải đếm lại các bảng.
+ */
+public class DashboardStatsCache {
+
+    // Sau số lần làm mới tăng dần này thì đếm lại toàn bộ, bù cho thay đổi không qua trigger (vd. TRUNCATE)
+    private static final int FULL_RESYNC_EVERY = 20;
+
+    private static class Holder {
+        private static final DashboardStatsCache INSTANCE = new DashboardStatsCache();
+    }
+
+    public static DashboardStatsCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final DashboardStatsService dashboardStatsService = new DashboardStatsService();
+    private final Object refreshLock = new Object();
+    private volatile DashboardStats snapshot;
+    private ScheduledExecutorService scheduler;
+
+    // Trạng thái làm mới tăng dần, chỉ truy cập khi giữ refreshLock
+    private Map<String, Integer> counters;
+    private String watermark;
+    private int incrementalRefreshes;
+
+    private DashboardStatsCache() {}
+
+    /**
+     * Get the cached stats, computing them on first use; blocks, so call off the EDT
+     * @return Latest snapshot, or zeroed stats if nothing could be loaded
+     */
+    public DashboardStats getSnapshot() {
+        DashboardStats current = snapshot;
+        return current != null ? current : refreshNow();
+    }
+
+    /**
+     * Get the cached stats without touching the database
+     * @return Latest snapshot, or null if none has been loaded yet
+     */
+    public DashboardStats peekSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Refresh the stats immediately, e.g. when the user clicks "Làm mới"; blocks, so call off the EDT
+     * @return Refreshed snapshot, or the previous one if the refresh failed
+     */
+    public DashboardStats refreshNow() {
+        synchronized (refreshLock) {
+            refresh();
+            startScheduler();
+            DashboardStats current = snapshot;
+            return current != null ? current : new DashboardStats();
+        }
+    }
+
+    private void startScheduler() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dashboard-stats-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = DbConst.DASHBOARD_REFRESH_INTERVAL_MS;
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                synchronized (refreshLock) {
+                    refresh();
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        boolean fullScan = watermark == null || incrementalRefreshes >= FULL_RESYNC_EVERY;
+        DashboardStatsService.CounterRead read = fullScan
+                ? dashboardStatsService.getCounts()
+                : dashboardStatsService.getCountChanges(watermark);
+        if (read == null) {
+            return;
+        }
+
+        if (fullScan) {
+            counters = new HashMap<>(read.getCounters());
+            dashboardStatsService.pruneCountChanges();
+        } else {
+            read.getCounters().forEach((counter, delta) -> counters.merge(counter, delta, Integer::sum));
+        }
+        watermark = read.getSnapshot();
+        incrementalRefreshes = fullScan ? 0 : incrementalRefreshes + 1;
+
+        DashboardStats stats = new DashboardStats();
+        stats.setUserCount(counters.get(DashboardStatsService.USERS));
+        stats.setOrderCount(counters.get(DashboardStatsService.ORDERS));
+        stats.setPendingOrderCount(counters.get(DashboardStatsService.PENDING_ORDERS));
+        stats.setProductCount(counters.get(DashboardStatsService.PRODUCTS));
+        stats.setLowStockProductCount(counters.get(DashboardStatsService.LOW_STOCK_UNSTRIPED)
+                + read.getStripedLowStockCount());
+        stats.setCustomerCount(counters.get(DashboardStatsService.CUSTOMERS));
+        stats.setSupplierCount(counters.get(DashboardStatsService.SUPPLIERS));
+        stats.setCategoryCount(counters.get(DashboardStatsService.CATEGORIES));
+        stats.setAsOf(read.getAsOf());
+        stats.setRefreshedAt(LocalDateTime.now());
+        snapshot = stats;
+    }
+}
@@ -0,0 +1,179 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lớp service tính các số liệu thống kê cho dashboard
+ * <p>
+ * Các số đếm được đọc toàn bộ bằng {@link #getCounts()}, sau đó chỉ đọc phần thay đổi bằng
+ * {@link #getCountChanges(String)}: trigger trong database ghi thay đổi của mỗi câu lệnh vào
+ * dashboard_count_changes kèm mã giao dịch, và mốc của mỗi lần đọc là snapshot của database nên
+ * mỗi thay đổi được cộng đúng một lần, kể cả khi giao dịch commit muộn.
+ */
+public class DashboardStatsService {
+
+    // Tên các số đếm, phải khớp các trigger trong database/init.sql
+    static final String USERS = "users";
+    static final String ORDERS = "orders";
+    static final String PENDING_ORDERS = "pending_orders";
+    static final String PRODUCTS = "products";
+    static final String LOW_STOCK_UNSTRIPED = "low_stock_unstriped";
+    static final String CUSTOMERS = "customers";
+    static final String SUPPLIERS = "suppliers";
+    static final String CATEGORIES = "categories";
+
+    private static final String[] COUNTERS = {USERS, ORDERS, PENDING_ORDERS, PRODUCTS, LOW_STOCK_UNSTRIPED,
+                                              CUSTOMERS, SUPPLIERS, CATEGORIES};
+
+    // Sản phẩm chia dải sắp hết hàng; ghi vào dải không qua trigger của products nên luôn đếm lại
+    private static final String STRIPED_LOW_STOCK_SQL =
+            "(SELECT COUNT(*) FROM products WHERE stock_stripes > 0 AND COALESCE(" +
+            StockCounterService.stockQuantitySql("products") + ", 0) <= COALESCE(reorder_level, 0))";
+
+    // Thay đổi cũ hơn khoảng này đã được mọi lần làm mới đọc qua
+    private static final String CHANGE_RETENTION = "1 day";
+
+    /**
+     * Kết quả một lần đọc số đếm: giá trị tuyệt đối khi đọc toàn bộ, phần thay đổi khi đọc tăng dần
+     */
+    public static class CounterRead {
+        private final Map<String, Integer> counters;
+        private final int stripedLowStockCount;
+        private final String snapshot;
+        private final LocalDateTime asOf;
+
+        CounterRead(Map<String, Integer> counters, int stripedLowStockCount, String snapshot, LocalDateTime asOf) {
+            this.counters = Collections.unmodifiableMap(counters);
+            this.stripedLowStockCount = stripedLowStockCount;
+            this.snapshot = snapshot;
+            this.asOf = asOf;
+        }
+
+        /**
+         * Counter name to value or change; every counter is present
+         */
+        public Map<String, Integer> getCounters() {
+            return counters;
+        }
+
+        /**
+         * Current number of low-stock striped products, always absolute
+         */
+        public int getStripedLowStockCount() {
+            return stripedLowStockCount;
+        }
+
+        /**
+         * Database snapshot of this read, to pass to the next {@link DashboardStatsService#getCountChanges(String)}
+         */
+        public String getSnapshot() {
+            return snapshot;
+        }
+
+        public LocalDateTime getAsOf() {
+            return asOf;
+        }
+    }
+
+    /**
+     * Lấy tất cả số liệu dashboard bằng một truy vấn tổng hợp duy nhất
+     * @return Số đếm tuyệt đối kèm snapshot của lần đọc; null nếu truy vấn lỗi
+     */
+    public CounterRead getCounts() {
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT " +
+                         "(SELECT COUNT(*) FROM users) AS " + USERS + ", " +
+                         "o." + ORDERS + ", o." + PENDING_ORDERS + ", " +
+                         "p." + PRODUCTS + ", p." + LOW_STOCK_UNSTRIPED + ", " +
+                         STRIPED_LOW_STOCK_SQL + " AS striped_low_stock, " +
+                         "(SELECT COUNT(*) FROM customers) AS " + CUSTOMERS + ", " +
+                         "(SELECT COUNT(*) FROM suppliers) AS " + SUPPLIERS + ", " +
+                         "(SELECT COUNT(*) FROM categories) AS " + CATEGORIES + ", " +
+                         "pg_current_snapshot()::text AS snapshot, now() AS as_of " +
+                         "FROM (SELECT COUNT(*) AS " + ORDERS + ", " +
+                         "      COUNT(*) FILTER (WHERE status = 'pending') AS " + PENDING_ORDERS + " " +
+                         "      FROM orders) o, " +
+                         "     (SELECT COUNT(*) AS " + PRODUCTS + ", " +
+                         "      COUNT(*) FILTER (WHERE stock_stripes = 0 " +
+                         "      AND COALESCE(stock_quantity, 0) <= COALESCE(reorder_level, 0)) AS " + LOW_STOCK_UNSTRIPED + " " +
+                         "      FROM products) p";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return readCounters(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Lấy phần thay đổi của các số đếm từ các giao dịch commit sau một lần đọc trước
+     * @param sinceSnapshot Snapshot của lần đọc trước ({@link CounterRead#getSnapshot()})
+     * @return Thay đổi của từng số đếm (0 nếu không đổi) kèm snapshot mới; null nếu truy vấn lỗi
+     */
+    public CounterRead getCountChanges(String sinceSnapshot) {
+        try (Connection conn = DbConnection.getConnection()) {
+            StringBuilder sql = new StringBuilder("SELECT ");
+            for (String counter : COUNTERS) {
+                sql.append("COALESCE(SUM(delta) FILTER (WHERE counter = '").append(counter)
+                   .append("'), 0) AS ").append(counter).append(", ");
+            }
+            // Giao dịch có mã nhỏ hơn xmin của snapshot trước đã kết thúc trước lần đọc đó
+            sql.append(STRIPED_LOW_STOCK_SQL).append(" AS striped_low_stock, ")
+               .append("pg_current_snapshot()::text AS snapshot, now() AS as_of ")
+               .append("FROM dashboard_count_changes ")
+               .append("WHERE xact_id >= pg_snapshot_xmin(?::pg_snapshot) ")
+               .append("AND pg_visible_in_snapshot(xact_id, pg_current_snapshot()) ")
+               .append("AND NOT pg_visible_in_snapshot(xact_id, ?::pg_snapshot)");
+
+            PreparedStatement stmt = conn.prepareStatement(sql.toString());
+            stmt.setString(1, sinceSnapshot);
+            stmt.setString(2, sinceSnapshot);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return readCounters(rs);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Xóa các thay đổi số đếm đã cũ, gọi sau mỗi lần đọc toàn bộ
+     */
+    public void pruneCountChanges() {
+        try (Connection conn = DbConnection.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM dashboard_count_changes WHERE changed_at < now() - interval '" + CHANGE_RETENTION + "'");
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper method to map a counter row
+     */
+    private CounterRead readCounters(ResultSet rs) throws SQLException {
+        Map<String, Integer> counters = new HashMap<>();
+        for (String counter : COUNTERS) {
+            counters.put(counter, rs.getInt(counter));
+        }
+        return new CounterRead(counters, rs.getInt("striped_low_stock"), rs.getString("snapshot"),
+                rs.getTimestamp("as_of").toLocalDateTime());
+    }
+}
@@ -0,0 +1,258 @@
+package app.swing.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bộ nhớ đệm đọc xuyên (read-through) theo ID cho dữ liệu danh mục ít thay đổi
+ * <p>
+ * Giữ tối đa maxSize bản ghi, loại bản ghi lâu nhất chưa được đọc (LRU) khi đầy. Mỗi bản ghi
+ * chỉ được dùng trong ttlMs kể từ lúc nạp, nên thay đổi do máy khác ghi vào database sẽ được
+ * thấy chậm nhất sau khoảng đó. Service sở hữu bộ đệm phải gọi {@link #invalidate} hoặc
+ * {@link #invalidateAll} sau mọi lần ghi của chính nó.
+ * <p>
+ * Việc đọc database chạy ngoài khóa. Mỗi lần xóa làm tăng một bộ đếm phiên bản, kết quả của
+ * lần đọc bắt đầu trước khi xóa sẽ không được đưa vào bộ đệm để tránh giữ lại dữ liệu cũ.
+ * Kết quả null (không tìm thấy hoặc lỗi) không được lưu.
+ * <p>
+ * Bộ đệm chỉ giữ bản sao của riêng nó và mỗi lần đọc trả về một bản sao mới, nên màn hình có
+ * thể sửa đối tượng nhận được (ví dụ trong hộp thoại sửa) mà không làm hỏng bộ đệm.
+ */
+public class EntityCache<T> {
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMs;
+    private final UnaryOperator<T> copier;
+
+    // accessOrder = true: thứ tự duyệt từ bản ghi lâu nhất chưa đọc đến bản ghi vừa đọc
+    private final LinkedHashMap<Long, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Các trường dưới đây chỉ truy cập khi giữ khóa của đối tượng này
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param name Cache name used in statistics
+     * @param maxSize Maximum number of entries; 0 disables caching
+     * @param ttlMs Time in milliseconds an entry stays valid after it is loaded
+     * @param copier Makes an independent copy of an entity, e.g. a copy constructor
+     */
+    public EntityCache(String name, int maxSize, long ttlMs, UnaryOperator<T> copier) {
+        this.name = name;
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlMs = ttlMs;
+        this.copier = copier;
+    }
+
+    /**
+     * Get an entity, loading and caching it on a miss
+     * @param id Entity ID
+     * @param loader Loads the entity from the database; may return null
+     * @return Cached or loaded entity, null if the loader returned null
+     */
+    public T get(long id, LongFunction<T> loader) {
+        long loadVersion;
+        synchronized (this) {
+            T cached = lookup(id, System.currentTimeMillis());
+            if (cached != null) {
+                return cached;
+            }
+            loadVersion = version;
+        }
+
+        T loaded = loader.apply(id);
+        if (loaded != null) {
+            synchronized (this) {
+                store(id, loaded, loadVersion);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Get several entities, loading only the missing ones with a single call
+     * @param ids Entity IDs (duplicates and nulls are ignored)
+     * @param loader Loads the entities for a set of IDs; missing IDs are absent from its result
+     * @return Map from ID to entity; IDs that were not found are absent
+     */
+    public Map<Long, T> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, T>> loader) {
+        Map<Long, T> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        long loadVersion;
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Long id : ids) {
+                if (id == null || result.containsKey(id) || missing.contains(id)) {
+                    continue;
+                }
+                T cached = lookup(id, now);
+                if (cached != null) {
+                    result.put(id, cached);
+                } else {
+                    missing.add(id);
+                }
+            }
+            loadVersion = version;
+        }
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, T> loaded = loader.apply(missing);
+        synchronized (this) {
+            for (Map.Entry<Long, T> entry : loaded.entrySet()) {
+                if (entry.getValue() != null) {
+                    store(entry.getKey(), entry.getValue(), loadVersion);
+                }
+            }
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    /**
+     * Drop one entity, e.g. after it was updated or deleted
+     * @param id Entity ID
+     */
+    public synchronized void invalidate(long id) {
+        version++;
+        entries.remove(id);
+    }
+
+    /**
+     * Drop every entity, e.g. when a write may affect entities linked to the changed one
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+    }
+
+    /**
+     * Get a snapshot of the cache counters
+     * @return Current statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(name, entries.size(), hits, misses, evictions, expirations);
+    }
+
+    /**
+     * Helper method to read a live entry and count the hit or miss; caller holds the lock
+     */
+    private T lookup(long id, long now) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(id);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return copier.apply(entry.value);
+    }
+
+    /**
+     * Helper method to cache a loaded entity unless it was invalidated while loading; caller holds the lock
+     */
+    private void store(long id, T value, long loadVersion) {
+        if (maxSize == 0 || loadVersion != version) {
+            return;
+        }
+
+        // Giữ bản sao riêng, đối tượng vừa nạp thuộc về nơi gọi
+        entries.put(id, new Entry<>(copier.apply(value), System.currentTimeMillis() + ttlMs));
+
+        Iterator<Entry<T>> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long expiresAt;
+
+        private Entry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Số liệu của một bộ đệm tại thời điểm đọc
+     */
+    public static class Stats {
+        private final String name;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        public Stats(String name, int size, long hits, long misses, long evictions, long expirations) {
+            this.name = name;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /**
+         * Tỉ lệ đọc trúng bộ đệm, 0 khi chưa có lượt đọc nào
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: size=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, expirations=%d",
+                    name, size, hits, misses, getHitRate(), evictions, expirations);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
+import app.swing.util.CsvWriter;
+import app.swing.util.RowWriter;
+import app.swing.util.XlsxWriter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Lớp service xuất đơn hàng, chi tiết đơn hàng và phiếu xuất nhập kho ra file CSV hoặc Excel
+ * <p>
+ * Dữ liệu được đọc qua con trỏ phía server (tắt autocommit, đặt fetch size) nên mỗi lần chỉ
+ * giữ {@link DbConst#EXPORT_FETCH_SIZE} dòng trong bộ nhớ, và từng dòng được ghi thẳng ra file
+ * ngay khi đọc. File được ghi vào một file tạm cùng thư mục rồi mới đổi tên, nên khi lỗi hoặc
+ * hủy giữa chừng sẽ không để lại file dở dang.
+ */
+public class ExportService {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Các loại dữ liệu có thể xuất
+     */
+    public enum Dataset {
+        ORDERS("Đơn hàng", "don_hang",
+            new String[] {"ID", "Mã đơn hàng", "Mã khách hàng", "Khách hàng", "Người tạo", "Trạng thái",
+                          "Ngày đặt", "Ngày giao", "Tạm tính", "Thuế", "Giảm giá", "Phí vận chuyển",
+                          "Tổng cộng", "Ghi chú", "Ngày tạo"},
+            "SELECT o.id, o.order_number, c.code, c.name, u.username, o.status, o.placed_at, " +
+            "o.delivery_date, o.subtotal, o.tax, o.discount, o.shipping_fee, o.total, o.notes, o.created_at " +
+            "FROM orders o " +
+            "LEFT JOIN customers c ON c.id = o.customer_id " +
+            "LEFT JOIN users u ON u.id = o.user_id " +
+            "ORDER BY o.id"),
+
+        ORDER_ITEMS("Chi tiết đơn hàng", "chi_tiet_don_hang",
+            new String[] {"ID", "ID đơn hàng", "Mã đơn hàng", "ID sản phẩm", "SKU", "Sản phẩm",
+                          "Số lượng", "Đơn giá", "Giảm giá", "Thành tiền"},
+            "SELECT oi.id, oi.order_id, o.order_number, oi.product_id, oi.sku, oi.product_name, " +
+            "oi.quantity, oi.unit_price, oi.discount, oi.line_total " +
+            "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+            "ORDER BY oi.order_id, oi.id"),
+
+        INVENTORY_MOVEMENTS("Xuất nhập kho", "xuat_nhap_kho",
+            new String[] {"ID", "Thời gian", "SKU", "Sản phẩm", "Loại giao dịch", "Số lượng",
+                          "Loại chứng từ", "ID chứng từ", "Người thực hiện", "Ghi chú"},
+            "SELECT im.id, im.created_at, p.sku, p.name, im.kind, im.change_qty, " +
+            "im.reference_type, im.reference_id, u.username, im.note " +
+            "FROM inventory_movements im " +
+            "LEFT JOIN products p ON p.id = im.product_id " +
+            "LEFT JOIN users u ON u.id = im.user_id " +
+            "ORDER BY im.id");
+
+        private final String title;
+        private final String fileName;
+        private final String[] headers;
+        private final String sql;
+
+        Dataset(String title, String fileName, String[] headers, String sql) {
+            this.title = title;
+            this.fileName = fileName;
+            this.headers = headers;
+            this.sql = sql;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Tên file gợi ý, không có phần mở rộng
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    /**
+     * Các định dạng file xuất
+     */
+    public enum Format {
+        CSV("csv"),
+        XLSX("xlsx");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Nhận tiến độ xuất file; được gọi trên luồng đang xuất
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param rowsWritten Number of data rows written so far
+         * @return false to cancel the export
+         */
+        boolean onProgress(long rowsWritten);
+    }
+
+    /**
+     * Export a dataset to a file, streaming rows from the database; blocks, so call off the EDT
+     * @param dataset Data to export
+     * @param format File format
+     * @param target File to create or replace
+     * @param listener Notified every {@link DbConst#EXPORT_FETCH_SIZE} rows and at the end; may be null
+     * @return Number of data rows written, -1 on error or if the listener cancelled the export
+     */
+    public long export(Dataset dataset, Format format, Path target, ProgressListener listener) {
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+        Connection conn = null;
+        long rows = 0;
+        boolean completed = false;
+
+        try {
+            conn = DbConnection.getConnection();
+            DbConnection.markLongRunning(conn);
+            // Driver PostgreSQL chỉ dùng con trỏ (đọc từng phần theo fetch size) khi tắt autocommit
+            conn.setAutoCommit(false);
+
+            PreparedStatement stmt = conn.prepareStatement(dataset.sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DbConst.EXPORT_FETCH_SIZE);
+
+            ResultSet rs = stmt.executeQuery();
+            int[] types = columnTypes(rs.getMetaData());
+            Object[] values = new Object[types.length];
+
+            try (RowWriter writer = openWriter(dataset, format, temp)) {
+                while (rs.next()) {
+                    for (int i = 0; i < types.length; i++) {
+                        values[i] = readValue(rs, i + 1, types[i]);
+                    }
+                    writer.writeRow(values);
+                    rows++;
+
+                    if (rows % DbConst.EXPORT_FETCH_SIZE == 0 && listener != null && !listener.onProgress(rows)) {
+                        return -1;
+                    }
+                }
+            }
+
+            conn.commit();
+
+            if (listener != null && !listener.onProgress(rows)) {
+                return -1;
+            }
+
+            moveIntoPlace(temp, target);
+            completed = true;
+            return rows;
+
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            if (conn != null) {
+                // Kết nối lỗi thường làm rollback ném ngoại lệ; close vẫn phải chạy để trả kết nối cho pool
+                try {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                } finally {
+                    try {
+                        conn.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            if (!completed) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private RowWriter openWriter(Dataset dataset, Format format, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (format == Format.XLSX) {
+                return new XlsxWriter(channel, dataset.getTitle(), dataset.headers);
+            }
+            return new CsvWriter(channel, dataset.headers);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private int[] columnTypes(ResultSetMetaData metaData) throws SQLException {
+        int[] types = new int[metaData.getColumnCount()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = metaData.getColumnType(i + 1);
+        }
+        return types;
+    }
+
+    /**
+     * Helper method to read a cell: numbers stay numeric, timestamps are formatted, the rest is text
+     */
+    private Object readValue(ResultSet rs, int column, int type) throws SQLException {
+        Object value;
+        switch (type) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                value = rs.getLong(column);
+                break;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                value = rs.getBigDecimal(column);
+                break;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                Timestamp timestamp = rs.getTimestamp(column);
+                value = timestamp != null ? timestamp.toLocalDateTime().format(TIMESTAMP_FORMAT) : null;
+                break;
+            default:
+                value = rs.getString(column);
+        }
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,239 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
+import app.swing.model.InventoryMovement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi phiếu xuất nhập kho theo lô ở nền (write-behind)
+ * <p>
+ * Phiếu mới được đưa vào một hàng đợi có giới hạn. Một luồng nền lấy ra tối đa
+ * {@link DbConst#LEDGER_BATCH_SIZE} phiếu mỗi lần, ghi tất cả trong một giao dịch bằng một
+ * batch INSERT và chỉ cập nhật tồn kho một lần cho mỗi sản phẩm (tổng số lượng thay đổi của lô,
+ * theo thứ tự ID sản phẩm để không khóa chéo với giao dịch khác).
+ * <p>
+ * Future trả về từ {@link #submit} chỉ hoàn thành sau khi giao dịch chứa phiếu đã commit, nên
+ * phiếu được báo thành công là đã nằm trong database. Phiếu còn trong hàng đợi khi ứng dụng tắt
+ * thì chưa được ghi và cũng chưa được báo thành công. Khi hàng đợi đầy, {@link #submit} chờ tối
+ * đa {@link DbConst#LEDGER_OFFER_TIMEOUT_MS} rồi báo thất bại, để nơi gọi chậm lại thay vì dồn
+ * thêm phiếu vào bộ nhớ. Nếu cả lô bị từ chối (ví dụ một sản phẩm không đủ hàng), từng phiếu
+ * được ghi lại riêng để chỉ phiếu lỗi bị báo thất bại. Nếu luồng ghi dừng hẳn (ví dụ do
+ * {@link Error}), các phiếu còn chờ và mọi phiếu gửi sau đó bị báo thất bại ngay.
+ */
+public class InventoryLedgerWriter {
+
+    private static class Holder {
+        private static final InventoryLedgerWriter INSTANCE = new InventoryLedgerWriter();
+    }
+
+    public static InventoryLedgerWriter getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final BlockingQueue<PendingMovement> queue = new ArrayBlockingQueue<>(DbConst.LEDGER_QUEUE_CAPACITY);
+    private final StockCounterService stockCounterService = new StockCounterService();
+    private final Thread writer;
+
+    private InventoryLedgerWriter() {
+        writer = new Thread(this::runWriter, "inventory-ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a movement for the next batch
+     * @param movement InventoryMovement object with data; its ID is set once it is written
+     * @return Future completing with true after the movement is committed, false if it was
+     *         rejected, the queue stayed full or the writer thread has stopped
+     */
+    public CompletableFuture<Boolean> submit(InventoryMovement movement) {
+        PendingMovement pending = new PendingMovement(movement);
+        if (!writer.isAlive()) {
+            System.err.println("Inventory ledger writer has stopped, movement rejected");
+            pending.result.complete(false);
+            return pending.result;
+        }
+        try {
+            if (!queue.offer(pending, DbConst.LEDGER_OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Inventory ledger queue is full, movement rejected");
+                pending.result.complete(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.result.complete(false);
+        }
+        return pending.result;
+    }
+
+    private void runWriter() {
+        List<PendingMovement> batch = new ArrayList<>();
+        try {
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, DbConst.LEDGER_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    for (PendingMovement pending : batch) {
+                        pending.result.complete(false);
+                    }
+                }
+                batch.clear();
+            }
+        } finally {
+            // Luồng ghi dừng hẳn (vd. OutOfMemoryError): báo thất bại cho các phiếu còn chờ thay vì để nơi gọi chờ mãi
+            queue.drainTo(batch);
+            for (PendingMovement pending : batch) {
+                pending.result.complete(false);
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingMovement> batch) {
+        if (commit(batch)) {
+            for (PendingMovement pending : batch) {
+                pending.result.complete(true);
+            }
+            return;
+        }
+
+        if (batch.size() == 1) {
+            batch.get(0).result.complete(false);
+            return;
+        }
+
+        // Lô bị từ chối: ghi lại từng phiếu để tách riêng phiếu lỗi
+        for (PendingMovement pending : batch) {
+            pending.result.complete(commit(List.of(pending)));
+        }
+    }
+
+    /**
+     * Helper method to write a group of movements and their stock changes in one transaction
+     */
+    private boolean commit(List<PendingMovement> batch) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            insertMovements(batch, conn);
+
+            // Gộp số lượng theo sản phẩm, cập nhật theo thứ tự ID tăng dần
+            Map<Long, Integer> changes = new TreeMap<>();
+            for (PendingMovement pending : batch) {
+                changes.merge(pending.movement.getProductId(), pending.movement.getChangeQty(), Integer::sum);
+            }
+            for (Map.Entry<Long, Integer> entry : changes.entrySet()) {
+                if (entry.getValue() != 0) {
+                    stockCounterService.changeStock(conn, entry.getKey(), entry.getValue());
+                }
+            }
+
+            conn.commit();
+            return true;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            // ID đã gán thuộc về giao dịch vừa rollback
+            for (PendingMovement pending : batch) {
+                pending.movement.setId(0);
+            }
+            return false;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void insertMovements(List<PendingMovement> batch, Connection conn) throws SQLException {
+        String sql = "INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, " +
+                     "reference_id, note, created_by, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        PreparedStatement stmt = conn.prepareStatement(sql, new String[] {"id"});
+
+        for (PendingMovement pending : batch) {
+            InventoryMovement movement = pending.movement;
+            stmt.setLong(1, movement.getProductId());
+            stmt.setInt(2, movement.getChangeQty());
+            stmt.setString(3, movement.getKind());
+            stmt.setString(4, movement.getReferenceType());
+
+            if (movement.getReferenceId() != null) {
+                stmt.setLong(5, movement.getReferenceId());
+            } else {
+                stmt.setNull(5, java.sql.Types.BIGINT);
+            }
+
+            stmt.setString(6, movement.getNote());
+
+            if (movement.getCreatedBy() != null) {
+                stmt.setLong(7, movement.getCreatedBy());
+            } else {
+                stmt.setNull(7, java.sql.Types.BIGINT);
+            }
+
+            if (movement.getUserId() != null) {
+                stmt.setLong(8, movement.getUserId());
+            } else {
+                stmt.setNull(8, java.sql.Types.BIGINT);
+            }
+
+            stmt.addBatch();
+        }
+
+        stmt.executeBatch();
+
+        // Khóa sinh ra được trả về theo đúng thứ tự các dòng trong batch
+        ResultSet rs = stmt.getGeneratedKeys();
+        int index = 0;
+        while (rs.next() && index < batch.size()) {
+            batch.get(index++).movement.setId(rs.getLong(1));
+        }
+
+        if (index != batch.size()) {
+            throw new SQLException("Failed to insert inventory movements");
+        }
+    }
+
+    /**
+     * Một phiếu đang chờ ghi cùng future báo kết quả cho nơi gọi
+     */
+    private static class PendingMovement {
+        private final InventoryMovement movement;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingMovement(InventoryMovement movement) {
+            this.movement = movement;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package app.swing.service;
+
+import app.swing.contants.DbConst;
+import app.swing.model.ImportResult;
+import app.swing.model.InventoryMovement;
+import app.swing.util.CsvReader;
+import app.swing.util.ImportSupport;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * Lớp service nhập phiếu xuất nhập kho hàng loạt từ file CSV (vd. nhận một lô hàng lớn)
+ * <p>
+ * File được đọc từng dòng và chia thành các lô {@link DbConst#LEDGER_BATCH_SIZE} phiếu. Mỗi lô
+ * được tra SKU một lần rồi gửi cho sổ kho nền qua {@link InventoryMovementService#createMovements},
+ * nên được ghi trong một giao dịch với một lần cập nhật tồn kho cho mỗi sản phẩm. Phiếu không ghi
+ * được (vd. không đủ tồn kho) được báo lỗi theo số dòng, các phiếu còn lại của lô vẫn được ghi.
+ * <p>
+ * Các lô đã ghi được giữ lại khi lỗi hoặc hủy giữa chừng. Khác với nhập sản phẩm/khách hàng, phiếu
+ * kho không có khóa để gộp nên chạy lại cùng file sẽ ghi lại các phiếu đó thêm lần nữa.
+ * <p>
+ * Dòng đầu tiên là tiêu đề, dùng tên cột của bảng inventory_movements (không phân biệt hoa
+ * thường): sku, change_qty là bắt buộc; kind (mặc định purchase), reference_type, reference_id,
+ * note là tùy chọn.
+ */
+public class InventoryMovementImportService {
+
+    private static final String[] REQUIRED_COLUMNS = {"sku", "change_qty"};
+
+    // Các cột được nhận trong file
+    private static final String[] COLUMNS = {"sku", "change_qty", "kind", "reference_type", "reference_id", "note"};
+
+    /**
+     * Một dòng hợp lệ đang chờ ghi cùng lô
+     */
+    private static class PendingRow {
+        final long line;
+        final String sku;
+        final InventoryMovement movement;
+
+        PendingRow(long line, String sku, InventoryMovement movement) {
+            this.line = line;
+            this.sku = sku;
+            this.movement = movement;
+        }
+    }
+
+    private final InventoryMovementService movementService = new InventoryMovementService();
+    private final ProductService productService = new ProductService();
+
+    /**
+     * Import inventory movements from a CSV file; blocks, so call off the EDT
+     * @param file CSV file, UTF-8 with or without BOM
+     * @param userId User recorded on every movement, or null
+     * @param listener Receives the number of rows read after each chunk; returns false to stop. May be null
+     * @return Counts, rejected rows and timing; null on error or if the listener stopped the import.
+     *         Chunks written before an error or stop are kept
+     */
+    public ImportResult importMovements(Path file, Long userId, LongPredicate listener) {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+
+        try (CsvReader reader = new CsvReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+
+            String[] header = reader.readRecord();
+            if (header == null) {
+                result.addError(1, null, "File không có dữ liệu");
+                return result;
+            }
+            Map<String, Integer> columns = ImportSupport.mapColumns(header, COLUMNS, REQUIRED_COLUMNS, result);
+            if (columns == null) {
+                return result;
+            }
+
+            List<PendingRow> chunk = new ArrayList<>();
+            long rows = 0;
+            String[] record;
+            while ((record = reader.readRecord()) != null) {
+                rows++;
+                long line = reader.getRecordLine();
+                String sku = ImportSupport.field(record, columns, "sku");
+                try {
+                    chunk.add(new PendingRow(line, sku, toMovement(record, columns, userId)));
+                } catch (IllegalArgumentException e) {
+                    result.addError(line, sku, e.getMessage());
+                }
+
+                if (chunk.size() >= DbConst.LEDGER_BATCH_SIZE) {
+                    if (!writeChunk(chunk, result)) {
+                        return null;
+                    }
+                    chunk.clear();
+                    if (listener != null && !listener.test(rows)) {
+                        return null;
+                    }
+                }
+            }
+            if (!writeChunk(chunk, result)) {
+                return null;
+            }
+            result.setTotalRows(rows);
+
+            result.setElapsedMs((System.nanoTime() - startNanos) / 1_000_000);
+            if (listener != null) {
+                listener.test(rows);
+            }
+            return result;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Helper method to validate a record and build its movement, without the product ID
+     * @throws IllegalArgumentException with the message to report if the record is invalid
+     */
+    private InventoryMovement toMovement(String[] record, Map<String, Integer> columns, Long userId) {
+        if (ImportSupport.field(record, columns, "sku").isEmpty()) {
+            throw new IllegalArgumentException("Thiếu SKU");
+        }
+
+        InventoryMovement movement = new InventoryMovement();
+        String qty = ImportSupport.field(record, columns, "change_qty");
+        try {
+            movement.setChangeQty(Integer.parseInt(qty));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Số lượng không hợp lệ: " + qty);
+        }
+        if (movement.getChangeQty() == 0) {
+            throw new IllegalArgumentException("Số lượng thay đổi không thể bằng 0");
+        }
+
+        String kind = ImportSupport.field(record, columns, "kind").toLowerCase(Locale.ROOT);
+        if (kind.isEmpty()) {
+            kind = InventoryMovement.MovementKind.PURCHASE.getValue();
+        }
+        if (!InventoryMovement.MovementKind.fromValue(kind).getValue().equals(kind)) {
+            throw new IllegalArgumentException("Loại phiếu không hợp lệ: " + kind);
+        }
+        movement.setKind(kind);
+
+        String referenceType = ImportSupport.field(record, columns, "reference_type");
+        movement.setReferenceType(referenceType.isEmpty() ? null : referenceType);
+        String referenceId = ImportSupport.field(record, columns, "reference_id");
+        if (!referenceId.isEmpty()) {
+            try {
+                movement.setReferenceId(Long.parseLong(referenceId));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Mã tham chiếu không hợp lệ: " + referenceId);
+            }
+        }
+        String note = ImportSupport.field(record, columns, "note");
+        movement.setNote(note.isEmpty() ? null : note);
+
+        movement.setUserId(userId);
+        movement.setCreatedBy(userId);
+        return movement;
+    }
+
+    /**
+     * Helper method to resolve the chunk's SKUs and write its movements, recording the rows that failed
+     * @return false if the SKU lookup failed
+     */
+    private boolean writeChunk(List<PendingRow> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return true;
+        }
+
+        Set<String> skus = new HashSet<>();
+        for (PendingRow row : chunk) {
+            skus.add(row.sku);
+        }
+        Map<String, Long> productIds = productService.getProductIdsBySkus(skus);
+        if (productIds == null) {
+            return false;
+        }
+
+        List<PendingRow> found = new ArrayList<>();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (PendingRow row : chunk) {
+            Long productId = productIds.get(row.sku);
+            if (productId == null) {
+                result.addError(row.line, row.sku, "SKU không tồn tại");
+                continue;
+            }
+            row.movement.setProductId(productId);
+            found.add(row);
+            movements.add(row.movement);
+        }
+        if (movements.isEmpty()) {
+            return true;
+        }
+
+        // InventoryMovement không định nghĩa equals nên tập này so sánh theo đối tượng
+        Set<InventoryMovement> failed = new HashSet<>(movementService.createMovements(movements));
+        for (PendingRow row : found) {
+            if (failed.contains(row.movement)) {
+                result.addError(row.line, row.sku, "Không ghi được phiếu (không đủ tồn kho hoặc lỗi cơ sở dữ liệu)");
+            }
+        }
+        result.setInsertedRows(result.getInsertedRows() + movements.size() - failed.size());
+        return true;
+    }
+}
@@ -1,25 +1,48 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.InventoryMovement;
+import app.swing.model.Page;
 import app.swing.model.Product;
 import app.swing.model.User;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Lớp service cho thực thể Xuất nhập kho
  */
 public class InventoryMovementService {
 
+    // Câu SELECT cho màn hình danh sách: JOIN sẵn thông tin rút gọn của sản phẩm và người dùng
+    private static final String LIST_SELECT =
+            "SELECT im.id, im.product_id, im.change_qty, im.kind, im.reference_type, im.reference_id, " +
+            "im.note, im.created_by, im.user_id, im.created_at, " +
+            "p.sku AS product_sku, p.name AS product_name, u.full_name AS user_full_name " +
+            "FROM inventory_movements im " +
+            "LEFT JOIN products p ON im.product_id = p.id " +
+            "LEFT JOIN users u ON im.user_id = u.id ";
+
     private ProductService productService;
     private UserService userService;
+    private StockCounterService stockCounterService;
+    private InventoryLedgerWriter ledgerWriter;
+    private StockSnapshotService snapshotService;
 
     public InventoryMovementService() {
         this.productService = new ProductService();
         this.userService = new UserService();
+        this.stockCounterService = new StockCounterService();
+        this.ledgerWriter = InventoryLedgerWriter.getInstance();
+        this.snapshotService = new StockSnapshotService();
     }
 
     /**
@@ -49,6 +72,80 @@ public class InventoryMovementService {
         return movements;
     }
 
+    /**
+     * Lấy một trang phiếu xuất nhập kho cho màn hình danh sách, mới nhất trước,
+     * phân trang keyset theo (created_at, id)
+     * @param pageToken Token của trang trước, hoặc null cho trang đầu tiên
+     * @param pageSize Số phiếu tối đa trong trang
+     * @return Trang phiếu xuất nhập kho với quan hệ rút gọn
+     */
+    public Page<InventoryMovement> getMovementsPage(String pageToken, int pageSize) {
+        List<InventoryMovement> movements = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = LIST_SELECT +
+                         (pageToken != null ? "WHERE (im.created_at, im.id) < (?, ?) " : "") +
+                         "ORDER BY im.created_at DESC, im.id DESC LIMIT ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            int paramIndex = 1;
+            if (pageToken != null) {
+                String[] key = Page.decodeToken(pageToken, 2);
+                stmt.setTimestamp(paramIndex++, Timestamp.valueOf(key[0]));
+                stmt.setLong(paramIndex++, Long.parseLong(key[1]));
+            }
+            // Fetch one extra row to know whether another page exists
+            stmt.setInt(paramIndex, pageSize + 1);
+
+            ResultSet rs = stmt.executeQuery();
+
+            mapListRows(rs, movements);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Page.failed();
+        }
+
+        String nextToken = null;
+        if (movements.size() > pageSize) {
+            movements.remove(pageSize);
+            InventoryMovement last = movements.get(pageSize - 1);
+            nextToken = Page.encodeToken(Timestamp.valueOf(last.getCreatedAt()).toString(),
+                    String.valueOf(last.getId()));
+        }
+
+        return new Page<>(movements, nextToken);
+    }
+
+    /**
+     * Search inventory movements for the list screen, with lightweight product and user data
+     * @param searchTerm Search term
+     * @return List of matching movements with lightweight relations
+     */
+    public List<InventoryMovement> searchMovementsForList(String searchTerm) {
+        List<InventoryMovement> movements = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = LIST_SELECT +
+                         "WHERE p.name ILIKE ? OR p.sku ILIKE ? OR im.note ILIKE ? OR im.kind ILIKE ? " +
+                         "ORDER BY im.created_at DESC";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            String searchPattern = "%" + searchTerm + "%";
+            stmt.setString(1, searchPattern);
+            stmt.setString(2, searchPattern);
+            stmt.setString(3, searchPattern);
+            stmt.setString(4, searchPattern);
+
+            ResultSet rs = stmt.executeQuery();
+
+            mapListRows(rs, movements);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return movements;
+    }
+
     /**
      * Get inventory movements by product
      * @param productId Product ID
@@ -138,83 +235,54 @@ public class InventoryMovementService {
     }
 
     /**
-     * Create new inventory movement
+     * Create new inventory movement. The movement is written by the background ledger
+     * together with other pending movements; this method waits until it is committed.
      * @param movement InventoryMovement object with data
      * @return true if successful, false otherwise
      */
     public boolean createMovement(InventoryMovement movement) {
-        Connection conn = null;
-        try {
-            conn = DbConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction
-
-            // Insert inventory movement
-            String sql = "INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, " +
-                         "reference_id, note, created_by, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            stmt.setLong(1, movement.getProductId());
-            stmt.setInt(2, movement.getChangeQty());
-            stmt.setString(3, movement.getKind());
-            stmt.setString(4, movement.getReferenceType());
-
-            if (movement.getReferenceId() != null) {
-                stmt.setLong(5, movement.getReferenceId());
-            } else {
-                stmt.setNull(5, java.sql.Types.BIGINT);
-            }
-
-            stmt.setString(6, movement.getNote());
-
-            if (movement.getCreatedBy() != null) {
-                stmt.setLong(7, movement.getCreatedBy());
-            } else {
-                stmt.setNull(7, java.sql.Types.BIGINT);
-            }
-
-            if (movement.getUserId() != null) {
-                stmt.setLong(8, movement.getUserId());
-            } else {
-                stmt.setNull(8, java.sql.Types.BIGINT);
-            }
-
-            int rowsAffected = stmt.executeUpdate();
-
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    movement.setId(rs.getLong(1));
-                }
+        return createMovements(List.of(movement)).isEmpty();
+    }
 
-                // Update product stock quantity
-                updateProductStock(conn, movement.getProductId(), movement.getChangeQty());
+    /**
+     * Create many inventory movements, e.g. for a bulk stock intake. Movements are group-committed
+     * by the background ledger with one stock update per product per batch. A rejected batch is
+     * retried movement by movement, so some movements may be committed while others fail.
+     * @param movements InventoryMovement objects with data; generated IDs are set on them
+     * @return Movements that were not confirmed as committed within {@link DbConst#LEDGER_ACK_TIMEOUT_MS},
+     *         in input order; empty if all were committed. A movement that timed out may still be written later
+     */
+    public List<InventoryMovement> createMovements(List<InventoryMovement> movements) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (InventoryMovement movement : movements) {
+            results.add(ledgerWriter.submit(movement));
+        }
 
-                conn.commit(); // Commit transaction
-                return true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DbConst.LEDGER_ACK_TIMEOUT_MS);
+        List<InventoryMovement> failed = new ArrayList<>();
+        for (int i = 0; i < movements.size(); i++) {
+            if (!awaitCommit(results.get(i), deadline)) {
+                failed.add(movements.get(i));
             }
+        }
+        return failed;
+    }
 
-            conn.rollback();
+    /**
+     * Helper method to wait for a ledger acknowledgement until the deadline
+     */
+    private boolean awaitCommit(CompletableFuture<Boolean> result, long deadline) {
+        try {
+            return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Inventory ledger did not acknowledge a movement in time");
             return false;
-
-        } catch (SQLException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
             e.printStackTrace();
-            try {
-                if (conn != null) {
-                    conn.rollback();
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
             return false;
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
@@ -269,6 +337,10 @@ public class InventoryMovementService {
 
             stmt.setLong(9, movement.getId());
 
+            // Bản chụp tồn kho từ thời điểm của phiếu trở đi đã tính theo số lượng cũ
+            snapshotService.invalidateSnapshots(conn, movement.getId(),
+                    List.of(oldMovement.getProductId(), movement.getProductId()));
+
             int rowsAffected = stmt.executeUpdate();
 
             if (rowsAffected > 0) {
@@ -277,10 +349,15 @@ public class InventoryMovementService {
 
                 // If product changed, handle both products
                 if (movement.getProductId() != oldMovement.getProductId()) {
-                    // Reverse old product stock
-                    updateProductStock(conn, oldMovement.getProductId(), -oldMovement.getChangeQty());
-                    // Apply new product stock
-                    updateProductStock(conn, movement.getProductId(), movement.getChangeQty());
+                    // Reverse old product stock and apply new product stock,
+                    // locking the lower product ID first to avoid deadlocks
+                    if (oldMovement.getProductId() < movement.getProductId()) {
+                        updateProductStock(conn, oldMovement.getProductId(), -oldMovement.getChangeQty());
+                        updateProductStock(conn, movement.getProductId(), movement.getChangeQty());
+                    } else {
+                        updateProductStock(conn, movement.getProductId(), movement.getChangeQty());
+                        updateProductStock(conn, oldMovement.getProductId(), -oldMovement.getChangeQty());
+                    }
                 } else {
                     // Same product, just apply the difference
                     updateProductStock(conn, movement.getProductId(), stockAdjustment);
@@ -333,6 +410,8 @@ public class InventoryMovementService {
                 return false;
             }
 
+            snapshotService.invalidateSnapshots(conn, id, List.of(movement.getProductId()));
+
             // Delete the movement
             String sql = "DELETE FROM inventory_movements WHERE id = ?";
             PreparedStatement stmt = conn.prepareStatement(sql);
@@ -470,22 +549,16 @@ public class InventoryMovementService {
     }
 
     /**
-     * Update product stock quantity
+     * Update product stock quantity. A decrease only succeeds if it leaves enough stock
+     * for the quantity reserved by open orders. Hot products with striped stock counters
+     * are handled by {@link StockCounterService}.
      * @param conn Database connection
      * @param productId Product ID
      * @param changeQty Quantity change (positive for increase, negative for decrease)
-     * @throws SQLException if update fails
+     * @throws SQLException if update fails or available stock is not enough
      */
     private void updateProductStock(Connection conn, long productId, int changeQty) throws SQLException {
-        String sql = "UPDATE products SET stock_quantity = stock_quantity + ?, updated_at = now() WHERE id = ?";
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        stmt.setInt(1, changeQty);
-        stmt.setLong(2, productId);
-
-        int rowsAffected = stmt.executeUpdate();
-        if (rowsAffected == 0) {
-            throw new SQLException("Failed to update product stock for product ID: " + productId);
-        }
+        stockCounterService.changeStock(conn, productId, changeQty);
     }
 
     /**
@@ -527,6 +600,46 @@ public class InventoryMovementService {
         return movement;
     }
 
+    /**
+     * Helper method to map list rows, attaching lightweight product and user objects.
+     * Movements of the same product or user share one instance.
+     */
+    private void mapListRows(ResultSet rs, List<InventoryMovement> movements) throws SQLException {
+        Map<Long, Product> products = new HashMap<>();
+        Map<Long, User> users = new HashMap<>();
+
+        while (rs.next()) {
+            InventoryMovement movement = mapResultSetToMovement(rs);
+
+            String productSku = rs.getString("product_sku");
+            if (productSku != null) {
+                Product product = products.get(movement.getProductId());
+                if (product == null) {
+                    product = new Product();
+                    product.setId(movement.getProductId());
+                    product.setSku(productSku);
+                    product.setName(rs.getString("product_name"));
+                    products.put(product.getId(), product);
+                }
+                movement.setProduct(product);
+            }
+
+            String userFullName = rs.getString("user_full_name");
+            if (movement.getUserId() != null && userFullName != null) {
+                User user = users.get(movement.getUserId());
+                if (user == null) {
+                    user = new User();
+                    user.setId(movement.getUserId().intValue());
+                    user.setFullName(userFullName);
+                    users.put(movement.getUserId(), user);
+                }
+                movement.setUser(user);
+            }
+
+            movements.add(movement);
+        }
+    }
+
     /**
      * Helper method to load product and user for a movement
      */
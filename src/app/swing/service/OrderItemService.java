@@ -5,8 +5,13 @@ import app.swing.model.OrderItem;
 import app.swing.model.Product;
 
 import java.sql.*;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Lớp service cho thực thể Chi tiết đơn hàng
@@ -110,43 +115,60 @@ public class OrderItemService {
      * @return true if successful, false otherwise
      */
     public boolean createOrderItem(OrderItem item, Connection conn) {
-        try {
-            // Calculate line total if not set
-            if (item.getLineTotal() == null || item.getLineTotal().doubleValue() == 0) {
-                item.calculateLineTotal();
-            }
+        return createOrderItems(List.of(item), conn);
+    }
+
+    /**
+     * Create order items in one JDBC batch with existing connection (for transactions)
+     * @param items OrderItem objects with data; generated IDs are set on them
+     * @param conn Existing database connection
+     * @return true if all items were inserted, false otherwise
+     */
+    public boolean createOrderItems(List<OrderItem> items, Connection conn) {
+        if (items.isEmpty()) {
+            return true;
+        }
 
+        try {
             String sql = "INSERT INTO order_items (order_id, product_id, product_name, sku, " +
                          "quantity, unit_price, discount, line_total) " +
                          "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            stmt.setLong(1, item.getOrderId());
+            PreparedStatement stmt = conn.prepareStatement(sql, new String[] {"id"});
 
-            if (item.getProductId() != null) {
-                stmt.setLong(2, item.getProductId());
-            } else {
-                stmt.setNull(2, java.sql.Types.BIGINT);
-            }
-
-            stmt.setString(3, item.getProductName());
-            stmt.setString(4, item.getSku());
-            stmt.setInt(5, item.getQuantity());
-            stmt.setBigDecimal(6, item.getUnitPrice());
-            stmt.setBigDecimal(7, item.getDiscount());
-            stmt.setBigDecimal(8, item.getLineTotal());
+            for (OrderItem item : items) {
+                // Calculate line total if not set
+                if (item.getLineTotal() == null || item.getLineTotal().doubleValue() == 0) {
+                    item.calculateLineTotal();
+                }
 
-            int rowsAffected = stmt.executeUpdate();
+                stmt.setLong(1, item.getOrderId());
 
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    item.setId(rs.getLong(1));
+                if (item.getProductId() != null) {
+                    stmt.setLong(2, item.getProductId());
+                } else {
+                    stmt.setNull(2, java.sql.Types.BIGINT);
                 }
-                return true;
+
+                stmt.setString(3, item.getProductName());
+                stmt.setString(4, item.getSku());
+                stmt.setInt(5, item.getQuantity());
+                stmt.setBigDecimal(6, item.getUnitPrice());
+                stmt.setBigDecimal(7, item.getDiscount());
+                stmt.setBigDecimal(8, item.getLineTotal());
+                stmt.addBatch();
             }
 
-            return false;
+            stmt.executeBatch();
+
+            // Khóa sinh ra được trả về theo đúng thứ tự các dòng trong batch
+            ResultSet rs = stmt.getGeneratedKeys();
+            int index = 0;
+            while (rs.next() && index < items.size()) {
+                items.get(index++).setId(rs.getLong(1));
+            }
+
+            return index == items.size();
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -234,6 +256,130 @@ public class OrderItemService {
         }
     }
 
+    /**
+     * Đồng bộ chi tiết đơn hàng đã lưu với danh sách mới: chỉ thêm dòng mới, cập nhật dòng
+     * có thay đổi và xóa dòng bị bỏ đi
+     * @param orderId Order ID
+     * @param items Submitted order items; an item whose ID belongs to a saved row of this order updates that row
+     * @param conn Existing database connection
+     * @return true if successful, false otherwise
+     */
+    public boolean syncOrderItems(long orderId, List<OrderItem> items, Connection conn) {
+        try {
+            String sql = "SELECT id, order_id, product_id, product_name, sku, quantity, " +
+                         "unit_price, discount, line_total, created_at, updated_at " +
+                         "FROM order_items WHERE order_id = ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, orderId);
+
+            ResultSet rs = stmt.executeQuery();
+
+            Map<Long, OrderItem> persisted = new HashMap<>();
+            while (rs.next()) {
+                OrderItem item = mapResultSetToOrderItem(rs);
+                persisted.put(item.getId(), item);
+            }
+
+            List<OrderItem> toInsert = new ArrayList<>();
+            List<OrderItem> toUpdate = new ArrayList<>();
+            for (OrderItem item : items) {
+                item.setOrderId(orderId);
+                if (item.getLineTotal() == null || item.getLineTotal().doubleValue() == 0) {
+                    item.calculateLineTotal();
+                }
+
+                // Những dòng còn lại trong persisted sau vòng lặp là dòng cần xóa
+                OrderItem current = persisted.remove(item.getId());
+                if (current == null) {
+                    toInsert.add(item);
+                } else if (hasChanges(current, item)) {
+                    toUpdate.add(item);
+                }
+            }
+
+            return deleteOrderItems(persisted.keySet(), conn)
+                && updateOrderItems(toUpdate, conn)
+                && createOrderItems(toInsert, conn);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Helper method to update order items in one JDBC batch
+     */
+    private boolean updateOrderItems(List<OrderItem> items, Connection conn) throws SQLException {
+        if (items.isEmpty()) {
+            return true;
+        }
+
+        String sql = "UPDATE order_items SET product_id = ?, product_name = ?, sku = ?, " +
+                     "quantity = ?, unit_price = ?, discount = ?, line_total = ?, " +
+                     "updated_at = now() WHERE id = ?";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+
+        for (OrderItem item : items) {
+            if (item.getProductId() != null) {
+                stmt.setLong(1, item.getProductId());
+            } else {
+                stmt.setNull(1, java.sql.Types.BIGINT);
+            }
+
+            stmt.setString(2, item.getProductName());
+            stmt.setString(3, item.getSku());
+            stmt.setInt(4, item.getQuantity());
+            stmt.setBigDecimal(5, item.getUnitPrice());
+            stmt.setBigDecimal(6, item.getDiscount());
+            stmt.setBigDecimal(7, item.getLineTotal());
+            stmt.setLong(8, item.getId());
+            stmt.addBatch();
+        }
+
+        for (int count : stmt.executeBatch()) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to delete order items by ID with one statement
+     */
+    private boolean deleteOrderItems(Collection<Long> ids, Connection conn) throws SQLException {
+        if (ids.isEmpty()) {
+            return true;
+        }
+
+        String sql = "DELETE FROM order_items WHERE id = ANY(?)";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+
+        stmt.executeUpdate();
+        return true;
+    }
+
+    /**
+     * Helper method to check whether a submitted item differs from the saved row
+     */
+    private boolean hasChanges(OrderItem current, OrderItem item) {
+        return !Objects.equals(current.getProductId(), item.getProductId())
+            || !Objects.equals(current.getProductName(), item.getProductName())
+            || !Objects.equals(current.getSku(), item.getSku())
+            || current.getQuantity() != item.getQuantity()
+            || !sameAmount(current.getUnitPrice(), item.getUnitPrice())
+            || !sameAmount(current.getDiscount(), item.getDiscount())
+            || !sameAmount(current.getLineTotal(), item.getLineTotal());
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
     /**
      * Helper method to map ResultSet to OrderItem object
      */
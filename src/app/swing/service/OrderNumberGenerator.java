@@ -0,0 +1,95 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sinh mã đơn hàng dạng ORD-YYYYMMDD-NNNNNN không bao giờ trùng
+ * <p>
+ * Phần số lấy từ sequence order_number_seq của Postgres. Mỗi lần nextval cấp một khối
+ * {@link #BLOCK_SIZE} số liên tiếp, sau đó các số trong khối được phát từ bộ nhớ bằng
+ * AtomicLong nên nhiều luồng tạo đơn cùng lúc không phải chờ nhau. Sequence không bao giờ
+ * trả lại một giá trị hai lần, kể cả khi giao dịch bị rollback, nên phần số là duy nhất
+ * trên toàn hệ thống, không phụ thuộc vào phần ngày. Các số còn lại trong khối khi ứng dụng
+ * tắt sẽ bị bỏ qua.
+ */
+public class OrderNumberGenerator {
+
+    // Phải khớp INCREMENT BY của order_number_seq trong database/init.sql
+    private static final int BLOCK_SIZE = 100;
+
+    private static final String PREFIX = "ORD-";
+
+    private static class Holder {
+        private static final OrderNumberGenerator INSTANCE = new OrderNumberGenerator();
+    }
+
+    public static OrderNumberGenerator getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final AtomicReference<Block> currentBlock = new AtomicReference<>();
+    private final Object refillLock = new Object();
+
+    private OrderNumberGenerator() {}
+
+    /**
+     * Get the next order number, taking a new block from the sequence when the current one runs out
+     * @return Unique order number
+     * @throws SQLException if a new block could not be allocated
+     */
+    public String nextOrderNumber() throws SQLException {
+        long value = nextValue();
+        String datePart = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        return PREFIX + datePart + "-" + String.format("%06d", value);
+    }
+
+    private long nextValue() throws SQLException {
+        while (true) {
+            Block block = currentBlock.get();
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.end) {
+                    return value;
+                }
+            }
+
+            // Khối đã hết: chỉ một luồng lấy khối mới, các luồng khác dùng luôn khối đó
+            synchronized (refillLock) {
+                if (currentBlock.get() == block) {
+                    currentBlock.set(allocateBlock());
+                }
+            }
+        }
+    }
+
+    private Block allocateBlock() throws SQLException {
+        try (Connection conn = DbConnection.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT nextval('order_number_seq')");
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            return new Block(rs.getLong(1));
+        }
+    }
+
+    /**
+     * Một khối số đã cấp: [start, start + BLOCK_SIZE)
+     */
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start) {
+            this.next = new AtomicLong(start);
+            this.end = start + BLOCK_SIZE;
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.Customer;
 import app.swing.model.Order;
 import app.swing.model.OrderItem;
+import app.swing.model.Page;
 import app.swing.model.User;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Lớp service cho thực thể Đơn hàng
@@ -20,12 +26,14 @@ public class OrderService {
     private OrderItemService orderItemService;
     private PaymentService paymentService;
     private ShipmentService shipmentService;
+    private StockReservationService stockReservationService;
 
     public OrderService() {
         this.customerService = new CustomerService();
         this.orderItemService = new OrderItemService();
         this.paymentService = new PaymentService();
         this.shipmentService = new ShipmentService();
+        this.stockReservationService = new StockReservationService();
     }
 
     /**
@@ -44,21 +52,56 @@ public class OrderService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Order order = mapResultSetToOrder(rs);
+                orders.add(mapResultSetToOrder(rs));
+            }
 
-                // Load customer information if customer_id is not null
-                if (order.getCustomerId() != null) {
-                    Customer customer = customerService.getCustomerById(order.getCustomerId());
-                    order.setCustomer(customer);
-                }
+            // Load customer information for the whole result set at once
+            loadCustomers(orders);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
 
-                orders.add(order);
+        return orders;
+    }
+
+    /**
+     * Get one page of orders, newest first, using keyset pagination on (placed_at, id)
+     * @param pageToken Continuation token from the previous page, or null for the first page
+     * @param pageSize Maximum number of orders in the page
+     * @return Page of orders with customers loaded
+     */
+    public Page<Order> getOrdersPage(String pageToken, int pageSize) {
+        return fetchOrdersPage(pageToken, 0, pageSize);
+    }
+
+    /**
+     * Get the page of orders starting at a row offset, for random access (e.g. dragging the
+     * scrollbar). Continue from the returned token with {@link #getOrdersPage(String, int)}.
+     * @param offset Row offset in (placed_at DESC, id DESC) order
+     * @param pageSize Maximum number of orders in the page
+     * @return Page of orders with customers loaded
+     */
+    public Page<Order> getOrdersPageAt(int offset, int pageSize) {
+        return fetchOrdersPage(null, offset, pageSize);
+    }
+
+    /**
+     * Count all orders
+     * @return Number of orders
+     */
+    public int getOrderCount() {
+        try (Connection conn = DbConnection.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM orders");
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1);
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return orders;
+        return 0;
     }
 
     /**
@@ -175,37 +218,16 @@ public class OrderService {
                     long orderId = rs.getLong(1);
                     order.setId(orderId);
 
-                    // Insert order items
-                    if (order.getOrderItems() != null && !order.getOrderItems().isEmpty()) {
-                        for (OrderItem item : order.getOrderItems()) {
-                            item.setOrderId(orderId);
-                            if (!orderItemService.createOrderItem(item, conn)) {
-                                conn.rollback();
-                                return false;
-                            }
-                        }
-                    }
-
-                    // Insert payments
-                    if (order.getPayments() != null && !order.getPayments().isEmpty()) {
-                        for (var payment : order.getPayments()) {
-                            payment.setOrderId(orderId);
-                            if (!paymentService.createPayment(payment, conn)) {
-                                conn.rollback();
-                                return false;
-                            }
-                        }
+                    // Insert order items, payments and shipments, one batch per table
+                    if (!insertChildren(order, conn)) {
+                        conn.rollback();
+                        return false;
                     }
 
-                    // Insert shipments
-                    if (order.getShipments() != null && !order.getShipments().isEmpty()) {
-                        for (var shipment : order.getShipments()) {
-                            shipment.setOrderId(orderId);
-                            if (!shipmentService.createShipment(shipment, conn)) {
-                                conn.rollback();
-                                return false;
-                            }
-                        }
+                    // Reserve stock for the items; fails if any product is oversold
+                    if (!stockReservationService.applyOrder(order, null, conn)) {
+                        conn.rollback();
+                        return false;
                     }
 
                     conn.commit();
@@ -252,6 +274,16 @@ public class OrderService {
             // Calculate total if needed
             order.calculateTotal();
 
+            // Lock the order and read its previous status for the stock reservation
+            PreparedStatement statusStmt = conn.prepareStatement("SELECT status FROM orders WHERE id = ? FOR UPDATE");
+            statusStmt.setLong(1, order.getId());
+            ResultSet statusRs = statusStmt.executeQuery();
+            if (!statusRs.next()) {
+                conn.rollback();
+                return false;
+            }
+            String previousStatus = statusRs.getString("status");
+
             // Update order
             String sql = "UPDATE orders SET customer_id = ?, user_id = ?, status = ?, " +
                          "placed_at = ?, delivery_date = ?, subtotal = ?, tax = ?, " +
@@ -297,43 +329,18 @@ public class OrderService {
             int rowsAffected = stmt.executeUpdate();
 
             if (rowsAffected > 0) {
-                // Handle order items (delete existing and insert new)
-                orderItemService.deleteOrderItemsByOrderId(order.getId(), conn);
-
-                if (order.getOrderItems() != null && !order.getOrderItems().isEmpty()) {
-                    for (OrderItem item : order.getOrderItems()) {
-                        item.setOrderId(order.getId());
-                        if (!orderItemService.createOrderItem(item, conn)) {
-                            conn.rollback();
-                            return false;
-                        }
-                    }
-                }
-
-                // Handle payments (delete existing and insert new)
-                paymentService.deletePaymentsByOrderId(order.getId(), conn);
-
-                if (order.getPayments() != null && !order.getPayments().isEmpty()) {
-                    for (var payment : order.getPayments()) {
-                        payment.setOrderId(order.getId());
-                        if (!paymentService.createPayment(payment, conn)) {
-                            conn.rollback();
-                            return false;
-                        }
-                    }
+                // Only write the order items, payments and shipments that actually changed
+                if (!orderItemService.syncOrderItems(order.getId(), listOrEmpty(order.getOrderItems()), conn)
+                        || !paymentService.syncPayments(order.getId(), listOrEmpty(order.getPayments()), conn)
+                        || !shipmentService.syncShipments(order.getId(), listOrEmpty(order.getShipments()), conn)) {
+                    conn.rollback();
+                    return false;
                 }
 
-                // Handle shipments (delete existing and insert new)
-                shipmentService.deleteShipmentsByOrderId(order.getId(), conn);
-
-                if (order.getShipments() != null && !order.getShipments().isEmpty()) {
-                    for (var shipment : order.getShipments()) {
-                        shipment.setOrderId(order.getId());
-                        if (!shipmentService.createShipment(shipment, conn)) {
-                            conn.rollback();
-                            return false;
-                        }
-                    }
+                // Adjust reserved stock to the new items and status
+                if (!stockReservationService.applyOrder(order, previousStatus, conn)) {
+                    conn.rollback();
+                    return false;
                 }
 
                 conn.commit();
@@ -371,7 +378,18 @@ public class OrderService {
      * @return true if successful, false otherwise
      */
     public boolean deleteOrder(long id) {
-        try (Connection conn = DbConnection.getConnection()) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Lock the order first, in the same order as updateOrder, then give back the
+            // stock it holds before its reservations cascade away
+            PreparedStatement lockStmt = conn.prepareStatement("SELECT id FROM orders WHERE id = ? FOR UPDATE");
+            lockStmt.setLong(1, id);
+            lockStmt.executeQuery();
+            stockReservationService.releaseOrder(id, conn);
+
             // Due to CASCADE constraints in the database, deleting the order
             // will automatically delete related order items, payments, and shipments
             String sql = "DELETE FROM orders WHERE id = ?";
@@ -379,50 +397,85 @@ public class OrderService {
             stmt.setLong(1, id);
 
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected > 0) {
+                conn.commit();
+                return true;
+            }
+
+            conn.rollback();
+            return false;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
             return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
     /**
      * Search orders by order number, customer name, or status
      * @param searchTerm Search term to look for
-     * @return List of matching orders
+     * @return List of matching orders, best matches first
      */
     public List<Order> searchOrders(String searchTerm) {
+        return searchOrders(searchTerm, DbConst.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Search orders by order number, customer name, or exact status, using the trigram indexes
+     * @param searchTerm Search term to look for
+     * @param limit Maximum number of results
+     * @return List of matching orders, best matches first, then newest
+     */
+    public List<Order> searchOrders(String searchTerm, int limit) {
         List<Order> orders = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
+            // Mỗi nhánh UNION dùng index riêng; OR trực tiếp qua JOIN sẽ buộc quét toàn bảng
             String sql = "SELECT o.id, o.order_number, o.customer_id, o.user_id, o.status, " +
                          "o.placed_at, o.delivery_date, o.subtotal, o.tax, o.discount, " +
                          "o.shipping_fee, o.total, o.notes, o.created_at, o.updated_at " +
                          "FROM orders o " +
                          "LEFT JOIN customers c ON o.customer_id = c.id " +
-                         "WHERE o.order_number ILIKE ? OR c.name ILIKE ? OR o.status ILIKE ? " +
-                         "ORDER BY o.placed_at DESC";
+                         "WHERE o.id IN (" +
+                         "  SELECT id FROM orders WHERE order_number ILIKE ? " +
+                         "  UNION SELECT id FROM orders WHERE status = lower(?) " +
+                         "  UNION SELECT mo.id FROM orders mo JOIN customers mc ON mo.customer_id = mc.id " +
+                         "  WHERE mc.name ILIKE ?) " +
+                         "ORDER BY " + TextSearch.rankSql("o.order_number", "c.name", "o.status") + " DESC, " +
+                         "o.placed_at DESC LIMIT ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
+            String searchPattern = TextSearch.pattern(searchTerm);
             stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
+            stmt.setString(2, searchTerm.trim());
             stmt.setString(3, searchPattern);
+            int index = TextSearch.bindRepeated(stmt, 4, searchTerm, 3);
+            stmt.setInt(index, limit);
 
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Order order = mapResultSetToOrder(rs);
-
-                // Load customer information if customer_id is not null
-                if (order.getCustomerId() != null) {
-                    Customer customer = customerService.getCustomerById(order.getCustomerId());
-                    order.setCustomer(customer);
-                }
-
-                orders.add(order);
+                orders.add(mapResultSetToOrder(rs));
             }
+
+            // Load customer information for the whole result set at once
+            loadCustomers(orders);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -450,34 +503,139 @@ public class OrderService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Order order = mapResultSetToOrder(rs);
+                orders.add(mapResultSetToOrder(rs));
+            }
 
-                // Load customer information if customer_id is not null
-                if (order.getCustomerId() != null) {
-                    Customer customer = customerService.getCustomerById(order.getCustomerId());
-                    order.setCustomer(customer);
-                }
+            // Load customer information for the whole result set at once
+            loadCustomers(orders);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return orders;
+    }
+
+    /**
+     * Helper method to fetch a page of orders either after a keyset token or at an offset
+     */
+    private Page<Order> fetchOrdersPage(String pageToken, int offset, int pageSize) {
+        List<Order> orders = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT id, order_number, customer_id, user_id, status, placed_at, " +
+                         "delivery_date, subtotal, tax, discount, shipping_fee, total, notes, " +
+                         "created_at, updated_at FROM orders " +
+                         (pageToken != null ? "WHERE (placed_at, id) < (?, ?) " : "") +
+                         "ORDER BY placed_at DESC, id DESC LIMIT ?" +
+                         (offset > 0 ? " OFFSET ?" : "");
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            int paramIndex = 1;
+            if (pageToken != null) {
+                String[] key = Page.decodeToken(pageToken, 2);
+                stmt.setTimestamp(paramIndex++, Timestamp.valueOf(key[0]));
+                stmt.setLong(paramIndex++, Long.parseLong(key[1]));
+            }
+            // Fetch one extra row to know whether another page exists
+            stmt.setInt(paramIndex++, pageSize + 1);
+            if (offset > 0) {
+                stmt.setInt(paramIndex, offset);
+            }
+
+            ResultSet rs = stmt.executeQuery();
 
-                orders.add(order);
+            while (rs.next()) {
+                orders.add(mapResultSetToOrder(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return Page.failed();
         }
 
-        return orders;
+        String nextToken = null;
+        if (orders.size() > pageSize) {
+            orders.remove(pageSize);
+            Order last = orders.get(pageSize - 1);
+            nextToken = Page.encodeToken(Timestamp.valueOf(last.getPlacedAt()).toString(),
+                    String.valueOf(last.getId()));
+        }
+
+        loadCustomers(orders);
+        return new Page<>(orders, nextToken);
+    }
+
+    /**
+     * Helper method to insert the child rows of an order with one JDBC batch per table
+     * @param order Order with its ID set
+     * @param conn Connection of the surrounding transaction
+     * @return true if every child row was inserted
+     */
+    private boolean insertChildren(Order order, Connection conn) {
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                item.setOrderId(order.getId());
+            }
+            if (!orderItemService.createOrderItems(order.getOrderItems(), conn)) {
+                return false;
+            }
+        }
+
+        if (order.getPayments() != null) {
+            for (var payment : order.getPayments()) {
+                payment.setOrderId(order.getId());
+            }
+            if (!paymentService.createPayments(order.getPayments(), conn)) {
+                return false;
+            }
+        }
+
+        if (order.getShipments() != null) {
+            for (var shipment : order.getShipments()) {
+                shipment.setOrderId(order.getId());
+            }
+            if (!shipmentService.createShipments(order.getShipments(), conn)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static <T> List<T> listOrEmpty(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    /**
+     * Helper method to attach customers to a list of orders using one batched query.
+     * Orders of the same customer share the same Customer instance.
+     */
+    private void loadCustomers(List<Order> orders) {
+        Set<Long> customerIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getCustomerId() != null) {
+                customerIds.add(order.getCustomerId());
+            }
+        }
+
+        if (customerIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Customer> customers = customerService.getCustomersByIds(customerIds);
+        for (Order order : orders) {
+            if (order.getCustomerId() != null) {
+                order.setCustomer(customers.get(order.getCustomerId()));
+            }
+        }
     }
 
     /**
      * Generate a unique order number
      * @return Unique order number
+     * @throws SQLException if no number block could be allocated from the sequence
      */
-    private String generateOrderNumber() {
-        // Format: ORD-YYYYMMDD-XXXX (where XXXX is a random number)
-        String prefix = "ORD-";
-        String datePart = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE);
-        int randomPart = 1000 + (int)(Math.random() * 9000); // Random 4-digit number
-
-        return prefix + datePart + "-" + randomPart;
+    private String generateOrderNumber() throws SQLException {
+        return OrderNumberGenerator.getInstance().nextOrderNumber();
     }
 
     /**
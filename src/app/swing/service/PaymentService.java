@@ -4,9 +4,14 @@ import app.swing.configuration.DbConnection;
 import app.swing.model.Payment;
 
 import java.sql.*;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Lớp service cho thực thể Thanh toán
@@ -87,33 +92,50 @@ public class PaymentService {
      * @return true if successful, false otherwise
      */
     public boolean createPayment(Payment payment, Connection conn) {
+        return createPayments(List.of(payment), conn);
+    }
+
+    /**
+     * Create payments in one JDBC batch with existing connection (for transactions)
+     * @param payments Payment objects with data; generated IDs are set on them
+     * @param conn Existing database connection
+     * @return true if all payments were inserted, false otherwise
+     */
+    public boolean createPayments(List<Payment> payments, Connection conn) {
+        if (payments.isEmpty()) {
+            return true;
+        }
+
         try {
             String sql = "INSERT INTO payments (order_id, amount, method, reference, paid_at) " +
                          "VALUES (?, ?, ?, ?, ?)";
 
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            stmt.setLong(1, payment.getOrderId());
-            stmt.setBigDecimal(2, payment.getAmount());
-            stmt.setString(3, payment.getMethod());
-            stmt.setString(4, payment.getReference());
+            PreparedStatement stmt = conn.prepareStatement(sql, new String[] {"id"});
 
-            if (payment.getPaidAt() != null) {
-                stmt.setTimestamp(5, Timestamp.valueOf(payment.getPaidAt()));
-            } else {
-                stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            for (Payment payment : payments) {
+                stmt.setLong(1, payment.getOrderId());
+                stmt.setBigDecimal(2, payment.getAmount());
+                stmt.setString(3, payment.getMethod());
+                stmt.setString(4, payment.getReference());
+
+                if (payment.getPaidAt() != null) {
+                    stmt.setTimestamp(5, Timestamp.valueOf(payment.getPaidAt()));
+                } else {
+                    stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                }
+                stmt.addBatch();
             }
 
-            int rowsAffected = stmt.executeUpdate();
+            stmt.executeBatch();
 
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    payment.setId(rs.getLong(1));
-                }
-                return true;
+            // Khóa sinh ra được trả về theo đúng thứ tự các dòng trong batch
+            ResultSet rs = stmt.getGeneratedKeys();
+            int index = 0;
+            while (rs.next() && index < payments.size()) {
+                payments.get(index++).setId(rs.getLong(1));
             }
 
-            return false;
+            return index == payments.size();
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -194,6 +216,120 @@ public class PaymentService {
         }
     }
 
+    /**
+     * Đồng bộ các thanh toán đã lưu với danh sách mới: chỉ thêm, cập nhật hoặc xóa những
+     * thanh toán thực sự thay đổi
+     * @param orderId Order ID
+     * @param payments Submitted payments; a payment whose ID belongs to a saved row of this order updates that row
+     * @param conn Existing database connection
+     * @return true if successful, false otherwise
+     */
+    public boolean syncPayments(long orderId, List<Payment> payments, Connection conn) {
+        try {
+            String sql = "SELECT id, order_id, amount, method, reference, paid_at, created_at " +
+                         "FROM payments WHERE order_id = ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, orderId);
+
+            ResultSet rs = stmt.executeQuery();
+
+            Map<Long, Payment> persisted = new HashMap<>();
+            while (rs.next()) {
+                Payment payment = mapResultSetToPayment(rs);
+                persisted.put(payment.getId(), payment);
+            }
+
+            List<Payment> toInsert = new ArrayList<>();
+            List<Payment> toUpdate = new ArrayList<>();
+            for (Payment payment : payments) {
+                payment.setOrderId(orderId);
+
+                // Những thanh toán còn lại trong persisted sau vòng lặp là thanh toán cần xóa
+                Payment current = persisted.remove(payment.getId());
+                if (current == null) {
+                    toInsert.add(payment);
+                } else if (hasChanges(current, payment)) {
+                    toUpdate.add(payment);
+                }
+            }
+
+            return deletePayments(persisted.keySet(), conn)
+                && updatePayments(toUpdate, conn)
+                && createPayments(toInsert, conn);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Helper method to update payments in one JDBC batch
+     */
+    private boolean updatePayments(List<Payment> payments, Connection conn) throws SQLException {
+        if (payments.isEmpty()) {
+            return true;
+        }
+
+        String sql = "UPDATE payments SET amount = ?, method = ?, reference = ?, paid_at = ? " +
+                     "WHERE id = ?";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+
+        for (Payment payment : payments) {
+            stmt.setBigDecimal(1, payment.getAmount());
+            stmt.setString(2, payment.getMethod());
+            stmt.setString(3, payment.getReference());
+
+            if (payment.getPaidAt() != null) {
+                stmt.setTimestamp(4, Timestamp.valueOf(payment.getPaidAt()));
+            } else {
+                stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            }
+
+            stmt.setLong(5, payment.getId());
+            stmt.addBatch();
+        }
+
+        for (int count : stmt.executeBatch()) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to delete payments by ID with one statement
+     */
+    private boolean deletePayments(Collection<Long> ids, Connection conn) throws SQLException {
+        if (ids.isEmpty()) {
+            return true;
+        }
+
+        String sql = "DELETE FROM payments WHERE id = ANY(?)";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+
+        stmt.executeUpdate();
+        return true;
+    }
+
+    /**
+     * Helper method to check whether a submitted payment differs from the saved row
+     */
+    private boolean hasChanges(Payment current, Payment payment) {
+        BigDecimal currentAmount = current.getAmount();
+        BigDecimal amount = payment.getAmount();
+        boolean sameAmount = currentAmount == null ? amount == null : amount != null && currentAmount.compareTo(amount) == 0;
+
+        return !sameAmount
+            || !Objects.equals(current.getMethod(), payment.getMethod())
+            || !Objects.equals(current.getReference(), payment.getReference())
+            || !Objects.equals(current.getPaidAt(), payment.getPaidAt());
+    }
+
     /**
      * Helper method to map ResultSet to Payment object
      */
@@ -0,0 +1,354 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+import app.swing.model.ImportResult;
+import app.swing.util.CopyBuffer;
+import app.swing.util.CsvReader;
+import app.swing.util.ImportSupport;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Lớp service nhập sản phẩm hàng loạt từ file CSV (vd. danh mục hàng của nhà cung cấp)
+ * <p>
+ * File được đọc từng dòng; dòng hợp lệ được đẩy thẳng qua lệnh COPY vào một bảng tạm, dòng lỗi
+ * được ghi lại kèm số dòng. Sau đó các kiểm tra cần database (SKU trùng trong file, SKU đã có,
+ * danh mục và nhà cung cấp không tồn tại) chạy một lần trên cả bảng tạm, sau đó sản phẩm đã có
+ * được cập nhật bằng một câu lệnh và sản phẩm mới được thêm bằng một câu lệnh. Tất cả nằm trong
+ * một giao dịch nên khi lỗi hoặc hủy giữa chừng sẽ không có sản phẩm nào được nhập.
+ * <p>
+ * Dòng đầu tiên là tiêu đề, dùng tên cột của bảng products (không phân biệt hoa thường):
+ * sku, name, price là bắt buộc; description, category_id, supplier_id, cost, stock_quantity,
+ * reorder_level, is_active là tùy chọn. Khi cập nhật sản phẩm đã có chỉ các ô có giá trị được
+ * ghi đè, ô trống hoặc cột không có trong file giữ giá trị cũ; riêng tồn kho không bao giờ bị ghi
+ * đè vì tồn kho chỉ thay đổi qua phiếu xuất nhập kho. Sản phẩm mới được ghi kèm phiếu tồn kho đầu kỳ như
+ * {@link ProductService#createProduct}.
+ */
+public class ProductImportService {
+
+    // Số dòng giữa hai lần báo tiến độ
+    private static final int PROGRESS_INTERVAL = 5_000;
+
+    // Giá trị lớn nhất của cột NUMERIC(12,2)
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("9999999999.99");
+
+    private static final String[] REQUIRED_COLUMNS = {"sku", "name", "price"};
+
+    // Các cột được nhận trong file, theo thứ tự cột của bảng tạm
+    private static final String[] COLUMNS = {"sku", "name", "description", "category_id", "supplier_id",
+                                             "price", "cost", "stock_quantity", "reorder_level", "is_active"};
+
+    private static final String STAGING_DDL =
+            "CREATE TEMP TABLE product_import (" +
+            "  line BIGINT NOT NULL, sku TEXT NOT NULL, name TEXT NOT NULL, description TEXT, " +
+            "  category_id BIGINT, supplier_id BIGINT, price NUMERIC(12,2) NOT NULL, cost NUMERIC(12,2), " +
+            "  stock_quantity INTEGER, reorder_level INTEGER, is_active BOOLEAN, product_id BIGINT" +
+            ") ON COMMIT DROP";
+
+    private static final String COPY_SQL =
+            "COPY product_import (line, sku, name, description, category_id, supplier_id, price, cost, " +
+            "stock_quantity, reorder_level, is_active) FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Import products from a CSV file; blocks, so call off the EDT
+     * @param file CSV file, UTF-8 with or without BOM
+     * @param defaultSupplierId Supplier for rows without one, or null
+     * @param updateExisting true to update products whose SKU already exists, false to reject those rows
+     * @param listener Receives the number of rows read every few thousand rows; returns false to cancel. May be null
+     * @return Counts, rejected rows and timing; null on error or if the listener cancelled the import
+     */
+    public ImportResult importProducts(Path file, Long defaultSupplierId, boolean updateExisting,
+                                       LongPredicate listener) {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+        Connection conn = null;
+
+        try (CsvReader reader = new CsvReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+
+            String[] header = reader.readRecord();
+            if (header == null) {
+                result.addError(1, null, "File không có dữ liệu");
+                return result;
+            }
+            Map<String, Integer> columns = ImportSupport.mapColumns(header, COLUMNS, REQUIRED_COLUMNS, result);
+            if (columns == null) {
+                return result;
+            }
+
+            conn = DbConnection.getConnection();
+            DbConnection.markLongRunning(conn);
+            conn.setAutoCommit(false);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(STAGING_DDL);
+            }
+
+            if (!copyRows(conn, reader, columns, result, listener)) {
+                conn.rollback();
+                return null;
+            }
+
+            ImportSupport.analyze(conn, "product_import");
+
+            if (defaultSupplierId != null) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "UPDATE product_import SET supplier_id = ? WHERE supplier_id IS NULL")) {
+                    stmt.setLong(1, defaultSupplierId);
+                    stmt.executeUpdate();
+                }
+            }
+
+            ImportSupport.rejectRows(conn, result,
+                    "DELETE FROM product_import d " +
+                    "USING (SELECT sku, min(line) AS first_line FROM product_import " +
+                    "       GROUP BY sku HAVING count(*) > 1) k " +
+                    "WHERE d.sku = k.sku AND d.line > k.first_line " +
+                    "RETURNING d.line, d.sku, 'SKU trùng với dòng ' || k.first_line || ' trong file'");
+            if (!updateExisting) {
+                ImportSupport.rejectRows(conn, result,
+                        "DELETE FROM product_import s USING products p WHERE p.sku = s.sku " +
+                        "RETURNING s.line, s.sku, 'SKU đã tồn tại'");
+            }
+            ImportSupport.rejectRows(conn, result,
+                    "DELETE FROM product_import s " +
+                    "WHERE s.category_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM categories c WHERE c.id = s.category_id) " +
+                    "RETURNING s.line, s.sku, 'Danh mục ID ' || s.category_id || ' không tồn tại'");
+            ImportSupport.rejectRows(conn, result,
+                    "DELETE FROM product_import s " +
+                    "WHERE s.supplier_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM suppliers su WHERE su.id = s.supplier_id) " +
+                    "RETURNING s.line, s.sku, 'Nhà cung cấp ID ' || s.supplier_id || ' không tồn tại'");
+
+            if (updateExisting) {
+                updateProducts(conn, result);
+            }
+            insertProducts(conn, result);
+
+            conn.commit();
+
+            result.setElapsedMs((System.nanoTime() - startNanos) / 1_000_000);
+            if (listener != null) {
+                listener.test(result.getTotalRows());
+            }
+            return result;
+
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            return null;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method to validate each record and stream the valid ones into the staging table
+     * @return false if the listener cancelled the import
+     */
+    private boolean copyRows(Connection conn, CsvReader reader, Map<String, Integer> columns,
+                             ImportResult result, LongPredicate listener) throws SQLException, IOException {
+        CopyBuffer copy = new CopyBuffer(conn.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL));
+        long rows = 0;
+
+        try {
+            String[] record;
+            while ((record = reader.readRecord()) != null) {
+                rows++;
+                long line = reader.getRecordLine();
+                String error = appendRow(copy, line, record, columns);
+                if (error != null) {
+                    result.addError(line, ImportSupport.field(record, columns, "sku"), error);
+                }
+
+                if (rows % PROGRESS_INTERVAL == 0 && listener != null && !listener.test(rows)) {
+                    return false;
+                }
+            }
+            copy.finish();
+            result.setTotalRows(rows);
+            return true;
+        } finally {
+            copy.cancel();
+        }
+    }
+
+    /**
+     * Helper method to validate one record and append it to the COPY data
+     * @return Error message, or null if the row was appended
+     */
+    private String appendRow(CopyBuffer copy, long line, String[] record, Map<String, Integer> columns)
+            throws SQLException {
+        String sku = ImportSupport.field(record, columns, "sku");
+        String name = ImportSupport.field(record, columns, "name");
+        if (sku.isEmpty()) {
+            return "Thiếu SKU";
+        }
+        if (name.isEmpty()) {
+            return "Thiếu tên sản phẩm";
+        }
+
+        BigDecimal price;
+        BigDecimal cost;
+        Long categoryId;
+        Long supplierId;
+        Integer stock;
+        Integer reorderLevel;
+        Boolean active;
+        try {
+            price = parseAmount(ImportSupport.field(record, columns, "price"), "Giá bán");
+            if (price == null) {
+                return "Thiếu giá bán";
+            }
+            cost = parseAmount(ImportSupport.field(record, columns, "cost"), "Giá nhập");
+            categoryId = parseId(ImportSupport.field(record, columns, "category_id"), "Danh mục");
+            supplierId = parseId(ImportSupport.field(record, columns, "supplier_id"), "Nhà cung cấp");
+            stock = parseCount(ImportSupport.field(record, columns, "stock_quantity"), "Tồn kho");
+            reorderLevel = parseCount(ImportSupport.field(record, columns, "reorder_level"), "Mức tái đặt");
+            active = ImportSupport.parseBoolean(ImportSupport.field(record, columns, "is_active"));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        copy.value(line)
+            .text(sku)
+            .text(name)
+            .text(ImportSupport.field(record, columns, "description"))
+            .value(categoryId)
+            .value(supplierId)
+            .value(price)
+            .value(cost)
+            .value(stock)
+            .value(reorderLevel)
+            .value(active)
+            .endRow();
+        return null;
+    }
+
+    private BigDecimal parseAmount(String text, String label) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text).setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException(label + " không hợp lệ: " + text);
+        }
+        if (value.signum() < 0 || value.compareTo(MAX_AMOUNT) > 0) {
+            throw new IllegalArgumentException(label + " phải từ 0 đến " + MAX_AMOUNT.toPlainString());
+        }
+        return value;
+    }
+
+    private Long parseId(String text, String label) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(text);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Báo lỗi chung bên dưới
+        }
+        throw new IllegalArgumentException(label + " ID không hợp lệ: " + text);
+    }
+
+    private Integer parseCount(String text, String label) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            int value = Integer.parseInt(text);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Báo lỗi chung bên dưới
+        }
+        throw new IllegalArgumentException(label + " phải là số nguyên không âm: " + text);
+    }
+
+    /**
+     * Helper method to update the existing products of the staged rows; blank cells keep the stored value
+     */
+    private void updateProducts(Connection conn, ImportResult result) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE product_import s SET product_id = p.id FROM products p WHERE p.sku = s.sku");
+
+            // SKU là khóa, tồn kho chỉ thay đổi qua phiếu xuất nhập kho
+            // clock_timestamp() thay vì now() để updated_at sát lúc commit, chỉ mục tìm kiếm sản phẩm không bỏ sót
+            int updated = stmt.executeUpdate(
+                    "UPDATE products p SET name = s.name, description = COALESCE(s.description, p.description), " +
+                    "category_id = COALESCE(s.category_id, p.category_id), " +
+                    "supplier_id = COALESCE(s.supplier_id, p.supplier_id), price = s.price, " +
+                    "cost = COALESCE(s.cost, p.cost), reorder_level = COALESCE(s.reorder_level, p.reorder_level), " +
+                    "is_active = COALESCE(s.is_active, p.is_active), updated_at = clock_timestamp() " +
+                    "FROM product_import s WHERE p.id = s.product_id");
+            result.setUpdatedRows(updated);
+        }
+    }
+
+    /**
+     * Helper method to insert the staged rows that matched no product in one statement, with the
+     * opening movement of each. Rows skipped because another session added the same SKU meanwhile
+     * are recorded as errors.
+     */
+    private void insertProducts(Connection conn, ImportResult result) throws SQLException {
+        String sql = "WITH ins AS (" +
+                     "  INSERT INTO products (sku, name, description, category_id, supplier_id, " +
+                     "  price, cost, stock_quantity, reorder_level, is_active, updated_at) " +
+                     "  SELECT sku, name, description, category_id, supplier_id, " +
+                     "  price, COALESCE(cost, 0), COALESCE(stock_quantity, 0), COALESCE(reorder_level, 0), " +
+                     "  COALESCE(is_active, TRUE), clock_timestamp() " +
+                     "  FROM product_import WHERE product_id IS NULL ORDER BY line " +
+                     "  ON CONFLICT (sku) DO NOTHING " +
+                     "  RETURNING id, sku, stock_quantity), " +
+                     "m AS (" +
+                     "  INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, note) " +
+                     "  SELECT id, stock_quantity, 'adjustment', ?, ? FROM ins), " +
+                     "u AS (" +
+                     "  UPDATE product_import s SET product_id = ins.id FROM ins WHERE s.sku = ins.sku) " +
+                     "SELECT count(*) FROM ins";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, ProductService.OPENING_REFERENCE_TYPE);
+            stmt.setString(2, ProductService.INITIAL_STOCK_NOTE);
+
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                result.setInsertedRows(rs.getLong(1));
+            }
+        }
+
+        ImportSupport.rejectRows(conn, result,
+                "DELETE FROM product_import WHERE product_id IS NULL " +
+                "RETURNING line, sku, 'SKU vừa được thêm từ nơi khác trong lúc nhập'");
+    }
+}
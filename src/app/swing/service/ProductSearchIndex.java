@@ -0,0 +1,259 @@
+package app.swing.service;
+
+import app.swing.model.Product;
+
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục tìm kiếm sản phẩm đang hoạt động, nằm sẵn trong bộ nhớ cho ô chọn sản phẩm
+ * <p>
+ * SKU được giữ trong một cây có thứ tự để tìm theo tiền tố, tên sản phẩm được chia thành các
+ * cụm 3 ký tự (trigram) trỏ tới ID sản phẩm. Chữ được chuyển về chữ thường và bỏ dấu tiếng Việt
+ * trước khi đưa vào chỉ mục, nên gõ "ao thun" vẫn tìm được "Áo thun".
+ * <p>
+ * {@link #refresh()} chỉ đọc các sản phẩm có updated_at sau lần làm mới trước (lùi lại một
+ * khoảng chồng lấn) và cập nhật hoặc loại bỏ từng sản phẩm. Sản phẩm bị xóa hẳn không còn dòng
+ * nào để đọc: {@link ProductService#deleteProduct} tự loại sản phẩm khỏi chỉ mục, còn sản phẩm bị
+ * xóa từ máy khác được loại ở lần nạp lại toàn bộ định kỳ, lần này cũng bù cho các giao dịch
+ * commit muộn hơn khoảng chồng lấn. Tra cứu không truy cập database.
+ */
+public class ProductSearchIndex {
+
+    // Độ dài cụm ký tự của chỉ mục tên
+    private static final int GRAM = 3;
+
+    // Lùi mốc updated_at lại một khoảng để không bỏ sót giao dịch commit muộn
+    private static final long WATERMARK_OVERLAP_MS = 5_000L;
+
+    // Sau số lần làm mới tăng dần này thì nạp lại toàn bộ
+    private static final int FULL_RELOAD_EVERY = 50;
+
+    private static class Holder {
+        private static final ProductSearchIndex INSTANCE = new ProductSearchIndex();
+    }
+
+    public static ProductSearchIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final ProductService productService = new ProductService();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object refreshLock = new Object();
+
+    // Các cấu trúc chỉ mục, đọc khi giữ read lock và sửa khi giữ write lock
+    private final Map<Long, Product> products = new HashMap<>();
+    private final Map<Long, String> indexedNames = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> skus = new TreeMap<>();
+    private final Map<String, Set<Long>> nameGrams = new HashMap<>();
+
+    // Trạng thái làm mới, chỉ truy cập khi giữ refreshLock
+    private Timestamp watermark;
+    private int incrementalRefreshes;
+
+    private ProductSearchIndex() {}
+
+    /**
+     * Bring the index up to date with the products changed since the last refresh; blocks, so call off the EDT
+     * @return true if the index is up to date, false if the database could not be read
+     */
+    public boolean refresh() {
+        synchronized (refreshLock) {
+            boolean fullReload = watermark == null || incrementalRefreshes >= FULL_RELOAD_EVERY;
+            List<Product> changed = productService.getProductsChangedSince(fullReload ? null : watermark);
+            if (changed == null) {
+                return false;
+            }
+
+            LocalDateTime latest = null;
+            lock.writeLock().lock();
+            try {
+                if (fullReload) {
+                    clear();
+                }
+                for (Product product : changed) {
+                    remove(product.getId());
+                    if (product.isActive()) {
+                        add(product);
+                    }
+                    if (product.getUpdatedAt() != null
+                            && (latest == null || product.getUpdatedAt().isAfter(latest))) {
+                        latest = product.getUpdatedAt();
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (latest != null) {
+                watermark = new Timestamp(Timestamp.valueOf(latest).getTime() - WATERMARK_OVERLAP_MS);
+            } else if (fullReload) {
+                watermark = new Timestamp(System.currentTimeMillis() - WATERMARK_OVERLAP_MS);
+            }
+            incrementalRefreshes = fullReload ? 0 : incrementalRefreshes + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Drop a product that was deleted, without waiting for the next full reload
+     * @param id Product ID
+     */
+    public void removeProduct(long id) {
+        lock.writeLock().lock();
+        try {
+            remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find active products for type-ahead: SKU prefix matches first, then names containing the text
+     * @param text Text as typed; blank returns every product
+     * @param limit Maximum number of results
+     * @return Matching products ordered by name within each group
+     */
+    public List<Product> search(String text, int limit) {
+        String query = normalize(text);
+
+        lock.readLock().lock();
+        try {
+            if (query.isEmpty()) {
+                List<Product> all = new ArrayList<>(products.values());
+                all.sort(Comparator.comparing(Product::getName, Comparator.nullsLast(String::compareTo)));
+                return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+            }
+
+            Set<Long> ids = new LinkedHashSet<>();
+            for (Set<Long> skuIds : skus.subMap(query, true, query + Character.MAX_VALUE, false).values()) {
+                ids.addAll(skuIds);
+            }
+            List<Product> skuMatches = toSortedProducts(ids);
+
+            Set<Long> nameIds = new HashSet<>();
+            for (long id : nameCandidates(query)) {
+                if (!ids.contains(id) && indexedNames.get(id).contains(query)) {
+                    nameIds.add(id);
+                }
+            }
+
+            List<Product> result = new ArrayList<>(skuMatches);
+            result.addAll(toSortedProducts(nameIds));
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper method for the products whose name may contain the query: the intersection of the
+     * posting lists of its trigrams, or every product when the query is shorter than a trigram
+     */
+    private Set<Long> nameCandidates(String query) {
+        if (query.length() < GRAM) {
+            return products.keySet();
+        }
+
+        Set<Long> candidates = null;
+        for (String gram : grams(query)) {
+            Set<Long> posting = nameGrams.getOrDefault(gram, Collections.emptySet());
+            if (candidates == null) {
+                candidates = new HashSet<>(posting);
+            } else {
+                candidates.retainAll(posting);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private List<Product> toSortedProducts(Set<Long> ids) {
+        List<Product> list = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            list.add(products.get(id));
+        }
+        list.sort(Comparator.comparing(Product::getName, Comparator.nullsLast(String::compareTo)));
+        return list;
+    }
+
+    private void add(Product product) {
+        long id = product.getId();
+        String name = normalize(product.getName());
+
+        products.put(id, product);
+        indexedNames.put(id, name);
+        skus.computeIfAbsent(normalize(product.getSku()), k -> new HashSet<>()).add(id);
+        for (String gram : grams(name)) {
+            nameGrams.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void remove(long id) {
+        Product product = products.remove(id);
+        if (product == null) {
+            return;
+        }
+
+        String sku = normalize(product.getSku());
+        Set<Long> skuIds = skus.get(sku);
+        if (skuIds != null) {
+            skuIds.remove(id);
+            if (skuIds.isEmpty()) {
+                skus.remove(sku);
+            }
+        }
+
+        for (String gram : grams(indexedNames.remove(id))) {
+            Set<Long> posting = nameGrams.get(gram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    nameGrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        products.clear();
+        indexedNames.clear();
+        skus.clear();
+        nameGrams.clear();
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * Helper method to lower-case text and strip Vietnamese diacritics
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.trim().toLowerCase(), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").replace('đ', 'd');
+    }
+}
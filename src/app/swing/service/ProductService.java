@@ -1,14 +1,22 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.Category;
+import app.swing.model.Page;
 import app.swing.model.Product;
 import app.swing.model.Supplier;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Lớp service cho thực thể Sản phẩm
@@ -17,10 +25,18 @@ public class ProductService {
 
     private CategoryService categoryService;
     private SupplierService supplierService;
+    // Ghi chú của các phiếu điều chỉnh tự động khi tồn kho được nhập trực tiếp
+    static final String INITIAL_STOCK_NOTE = "Tồn kho ban đầu";
+    // reference_type của phiếu tồn kho đầu kỳ; mỗi sản phẩm có đúng một phiếu, kể cả khi số lượng bằng 0
+    static final String OPENING_REFERENCE_TYPE = "opening";
+    private static final String DIRECT_EDIT_NOTE = "Sửa tồn kho trực tiếp";
+
+    private StockCounterService stockCounterService;
 
     public ProductService() {
         this.categoryService = new CategoryService();
         this.supplierService = new SupplierService();
+        this.stockCounterService = new StockCounterService();
     }
 
     /**
@@ -32,7 +48,8 @@ public class ProductService {
 
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p ORDER BY p.name";
 
@@ -40,10 +57,10 @@ public class ProductService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
             }
+
+            loadProductRelations(products);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -51,6 +68,46 @@ public class ProductService {
         return products;
     }
 
+    /**
+     * Lấy một trang sản phẩm sắp xếp theo tên, phân trang keyset theo (name, id)
+     * @param pageToken Token của trang trước, hoặc null cho trang đầu tiên
+     * @param pageSize Số sản phẩm tối đa trong trang
+     * @return Trang sản phẩm kèm danh mục và nhà cung cấp
+     */
+    public Page<Product> getProductsPage(String pageToken, int pageSize) {
+        return fetchProductsPage(pageToken, 0, pageSize);
+    }
+
+    /**
+     * Lấy trang sản phẩm bắt đầu tại một vị trí dòng, dùng khi nhảy tới giữa danh sách.
+     * Các trang tiếp theo nên dùng token trả về với {@link #getProductsPage(String, int)}.
+     * @param offset Vị trí dòng theo thứ tự (name, id)
+     * @param pageSize Số sản phẩm tối đa trong trang
+     * @return Trang sản phẩm kèm danh mục và nhà cung cấp
+     */
+    public Page<Product> getProductsPageAt(int offset, int pageSize) {
+        return fetchProductsPage(null, offset, pageSize);
+    }
+
+    /**
+     * Đếm tổng số sản phẩm
+     * @return Số sản phẩm
+     */
+    public int getProductCount() {
+        try (Connection conn = DbConnection.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM products");
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return 0;
+    }
+
     /**
      * Get only active products
      * @return List of active products
@@ -60,7 +117,8 @@ public class ProductService {
 
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p WHERE p.is_active = true ORDER BY p.name";
 
@@ -68,30 +126,106 @@ public class ProductService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
+            }
+
+            loadProductRelations(products);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return products;
+    }
+
+    /**
+     * Lấy các sản phẩm thay đổi sau một mốc updated_at, kể cả sản phẩm đã ngừng hoạt động,
+     * để bộ nhớ đệm biết cần cập nhật hay loại bỏ. Sản phẩm chia dải tồn kho luôn được trả về vì
+     * ghi vào dải không đổi updated_at. Không nạp danh mục và nhà cung cấp.
+     * @param changedSince Mốc updated_at, null để lấy toàn bộ sản phẩm đang hoạt động
+     * @return Danh sách sản phẩm; null nếu truy vấn lỗi
+     */
+    public List<Product> getProductsChangedSince(Timestamp changedSince) {
+        List<Product> products = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
+                         "p.created_at, p.updated_at " +
+                         "FROM products p " +
+                         (changedSince != null ? "WHERE p.updated_at > ? OR p.stock_stripes > 0" : "WHERE p.is_active = true");
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            if (changedSince != null) {
+                stmt.setTimestamp(1, changedSince);
+            }
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                products.add(mapResultSetToProduct(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
 
         return products;
     }
 
+    /**
+     * Tra ID sản phẩm theo SKU, dùng khi nhập phiếu kho hàng loạt
+     * @param skus SKU cần tra
+     * @return SKU đến ID cho các SKU có sản phẩm; null nếu truy vấn lỗi
+     */
+    public Map<String, Long> getProductIdsBySkus(Collection<String> skus) {
+        Map<String, Long> ids = new HashMap<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT id, sku FROM products WHERE sku = ANY(?)");
+            stmt.setArray(1, conn.createArrayOf("text", skus.toArray()));
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                ids.put(rs.getString("sku"), rs.getLong("id"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return ids;
+    }
+
     /**
      * Get products by category
      * @param categoryId Category ID
      * @return List of products in the category
      */
     public List<Product> getProductsByCategory(long categoryId) {
+        return getProductsByCategory(categoryId, false);
+    }
+
+    /**
+     * Get products by category, optionally including every subcategory at any depth
+     * @param categoryId Category ID
+     * @param includeSubcategories true to include the products of all descendant categories
+     * @return List of products in the category (or its subtree)
+     */
+    public List<Product> getProductsByCategory(long categoryId, boolean includeSubcategories) {
         List<Product> products = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
-                         "FROM products p WHERE p.category_id = ? ORDER BY p.name";
+                         "FROM products p WHERE " +
+                         (includeSubcategories
+                             ? "p.category_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?) "
+                             : "p.category_id = ? ") +
+                         "ORDER BY p.name";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setLong(1, categoryId);
@@ -99,10 +233,10 @@ public class ProductService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
             }
+
+            loadProductRelations(products);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -120,7 +254,8 @@ public class ProductService {
 
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p WHERE p.supplier_id = ? ORDER BY p.name";
 
@@ -130,10 +265,10 @@ public class ProductService {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
             }
+
+            loadProductRelations(products);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -149,7 +284,8 @@ public class ProductService {
     public Product getProductById(long id) {
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p WHERE p.id = ?";
 
@@ -178,7 +314,8 @@ public class ProductService {
     public Product getProductBySku(String sku) {
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p WHERE p.sku = ?";
 
@@ -206,11 +343,17 @@ public class ProductService {
      */
     public boolean createProduct(Product product) {
         try (Connection conn = DbConnection.getConnection()) {
-            String sql = "INSERT INTO products (sku, name, description, category_id, supplier_id, " +
-                         "price, cost, stock_quantity, reorder_level, is_active) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            // Tồn kho ban đầu được ghi kèm một phiếu đầu kỳ để sổ xuất nhập kho khớp tồn kho
+            String sql = "WITH p AS (" +
+                         "  INSERT INTO products (sku, name, description, category_id, supplier_id, " +
+                         "  price, cost, stock_quantity, reorder_level, is_active) " +
+                         "  VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id, stock_quantity), " +
+                         "m AS (" +
+                         "  INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, note) " +
+                         "  SELECT id, stock_quantity, 'adjustment', ?, ? FROM p) " +
+                         "SELECT id FROM p";
 
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setString(1, product.getSku());
             stmt.setString(2, product.getName());
             stmt.setString(3, product.getDescription());
@@ -232,14 +375,13 @@ public class ProductService {
             stmt.setInt(8, product.getStockQuantity());
             stmt.setInt(9, product.getReorderLevel());
             stmt.setBoolean(10, product.isActive());
+            stmt.setString(11, OPENING_REFERENCE_TYPE);
+            stmt.setString(12, INITIAL_STOCK_NOTE);
 
-            int rowsAffected = stmt.executeUpdate();
+            ResultSet rs = stmt.executeQuery();
 
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    product.setId(rs.getLong(1));
-                }
+            if (rs.next()) {
+                product.setId(rs.getLong("id"));
                 return true;
             }
 
@@ -257,10 +399,14 @@ public class ProductService {
      * @return true if successful, false otherwise
      */
     public boolean updateProduct(Product product) {
-        try (Connection conn = DbConnection.getConnection()) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+
             String sql = "UPDATE products SET sku = ?, name = ?, description = ?, " +
                          "category_id = ?, supplier_id = ?, price = ?, cost = ?, " +
-                         "stock_quantity = ?, reorder_level = ?, is_active = ?, " +
+                         "reorder_level = ?, is_active = ?, " +
                          "updated_at = now() WHERE id = ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
@@ -282,17 +428,43 @@ public class ProductService {
 
             stmt.setBigDecimal(6, product.getPrice());
             stmt.setBigDecimal(7, product.getCost());
-            stmt.setInt(8, product.getStockQuantity());
-            stmt.setInt(9, product.getReorderLevel());
-            stmt.setBoolean(10, product.isActive());
-            stmt.setLong(11, product.getId());
+            stmt.setInt(8, product.getReorderLevel());
+            stmt.setBoolean(9, product.isActive());
+            stmt.setLong(10, product.getId());
 
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (stmt.executeUpdate() == 0) {
+                conn.rollback();
+                return false;
+            }
+
+            // Tồn kho và số dải được ghi cùng nhau để tổng các dải luôn khớp
+            int currentStock = stockCounterService.lockStockQuantity(conn, product.getId());
+            stockCounterService.resetStock(conn, product.getId(), product.getStockQuantity(),
+                                           product.getStockStripes());
+            recordStockAdjustment(conn, product.getId(), product.getStockQuantity() - currentStock);
+
+            conn.commit();
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
             return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
@@ -331,7 +503,12 @@ public class ProductService {
             stmt.setLong(1, id);
 
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected == 0) {
+                return false;
+            }
+            // Sản phẩm bị xóa hẳn không còn dòng để lần làm mới tăng dần của chỉ mục đọc được
+            ProductSearchIndex.getInstance().removeProduct(id);
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -346,51 +523,90 @@ public class ProductService {
      * @return true if successful, false otherwise
      */
     public boolean updateStockQuantity(long id, int newQuantity) {
-        try (Connection conn = DbConnection.getConnection()) {
-            String sql = "UPDATE products SET stock_quantity = ?, updated_at = now() WHERE id = ?";
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Khóa sản phẩm cùng các dải để số dải và tồn kho không đổi trong lúc ghi lại
+            int currentStock = stockCounterService.lockStockQuantity(conn, id);
+
+            String sql = "SELECT stock_stripes FROM products WHERE id = ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, newQuantity);
-            stmt.setLong(2, id);
+            stmt.setLong(1, id);
 
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+
+            stockCounterService.resetStock(conn, id, newQuantity, rs.getInt("stock_stripes"));
+            recordStockAdjustment(conn, id, newQuantity - currentStock);
+
+            conn.commit();
+            return true;
 
         } catch (SQLException e) {
             e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
             return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
     /**
      * Search products by name, SKU or description
      * @param searchTerm Search term to look for
-     * @return List of matching products
+     * @return List of matching products, best matches first
      */
     public List<Product> searchProducts(String searchTerm) {
+        return searchProducts(searchTerm, DbConst.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Search products by name, SKU or description, using the trigram indexes
+     * @param searchTerm Search term to look for
+     * @param limit Maximum number of results
+     * @return List of matching products, best matches first
+     */
+    public List<Product> searchProducts(String searchTerm, int limit) {
         List<Product> products = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
+            String[] columns = {"p.name", "p.sku", "p.description"};
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p " +
-                         "WHERE p.name ILIKE ? OR p.sku ILIKE ? OR p.description ILIKE ? " +
-                         "ORDER BY p.name";
+                         "WHERE " + TextSearch.matchSql(columns) + " " +
+                         "ORDER BY " + TextSearch.rankSql(columns) + " DESC, p.name LIMIT ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            stmt.setString(3, searchPattern);
+            int index = TextSearch.bindRepeated(stmt, 1, TextSearch.pattern(searchTerm), columns.length);
+            index = TextSearch.bindRepeated(stmt, index, searchTerm, columns.length);
+            stmt.setInt(index, limit);
 
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
             }
+
+            loadProductRelations(products);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -439,20 +655,21 @@ public class ProductService {
 
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
-                         "p.price, p.cost, p.stock_quantity, p.reorder_level, p.is_active, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
                          "p.created_at, p.updated_at " +
                          "FROM products p " +
-                         "WHERE p.is_active = true AND p.stock_quantity <= p.reorder_level " +
-                         "ORDER BY (p.stock_quantity - p.reorder_level) ASC";
+                         "WHERE p.is_active = true AND " + StockCounterService.stockQuantitySql("p") + " <= p.reorder_level " +
+                         "ORDER BY (" + StockCounterService.stockQuantitySql("p") + " - p.reorder_level) ASC";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                Product product = mapResultSetToProduct(rs);
-                loadProductRelations(product);
-                products.add(product);
+                products.add(mapResultSetToProduct(rs));
             }
+
+            loadProductRelations(products);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -460,6 +677,74 @@ public class ProductService {
         return products;
     }
 
+    /**
+     * Helper method to fetch a page of products either after a keyset token or at an offset
+     */
+    private Page<Product> fetchProductsPage(String pageToken, int offset, int pageSize) {
+        List<Product> products = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT p.id, p.sku, p.name, p.description, p.category_id, p.supplier_id, " +
+                         "p.price, p.cost, " + StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         "p.reserved_quantity, p.stock_stripes, p.reorder_level, p.is_active, " +
+                         "p.created_at, p.updated_at " +
+                         "FROM products p " +
+                         (pageToken != null ? "WHERE (p.name, p.id) > (?, ?) " : "") +
+                         "ORDER BY p.name, p.id LIMIT ?" +
+                         (offset > 0 ? " OFFSET ?" : "");
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            int paramIndex = 1;
+            if (pageToken != null) {
+                String[] key = Page.decodeToken(pageToken, 2);
+                stmt.setString(paramIndex++, key[0]);
+                stmt.setLong(paramIndex++, Long.parseLong(key[1]));
+            }
+            // Fetch one extra row to know whether another page exists
+            stmt.setInt(paramIndex++, pageSize + 1);
+            if (offset > 0) {
+                stmt.setInt(paramIndex, offset);
+            }
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                products.add(mapResultSetToProduct(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Page.failed();
+        }
+
+        String nextToken = null;
+        if (products.size() > pageSize) {
+            products.remove(pageSize);
+            Product last = products.get(pageSize - 1);
+            nextToken = Page.encodeToken(last.getName(), String.valueOf(last.getId()));
+        }
+
+        loadProductRelations(products);
+        return new Page<>(products, nextToken);
+    }
+
+    /**
+     * Helper method to record a direct stock edit as an adjustment movement, keeping the ledger
+     * in line with the stored stock
+     */
+    private void recordStockAdjustment(Connection conn, long productId, int changeQty) throws SQLException {
+        if (changeQty == 0) {
+            return;
+        }
+
+        String sql = "INSERT INTO inventory_movements (product_id, change_qty, kind, note) " +
+                     "VALUES (?, ?, 'adjustment', ?)";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setLong(1, productId);
+        stmt.setInt(2, changeQty);
+        stmt.setString(3, DIRECT_EDIT_NOTE);
+        stmt.executeUpdate();
+    }
+
     /**
      * Helper method to map ResultSet to Product object
      */
@@ -485,6 +770,8 @@ public class ProductService {
         product.setPrice(rs.getBigDecimal("price"));
         product.setCost(rs.getBigDecimal("cost"));
         product.setStockQuantity(rs.getInt("stock_quantity"));
+        product.setReservedQuantity(rs.getInt("reserved_quantity"));
+        product.setStockStripes(rs.getInt("stock_stripes"));
         product.setReorderLevel(rs.getInt("reorder_level"));
         product.setActive(rs.getBoolean("is_active"));
         product.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
@@ -497,19 +784,45 @@ public class ProductService {
      * Helper method to load category and supplier for a product
      */
     private void loadProductRelations(Product product) {
-        // Load category if available
-        if (product.getCategoryId() != null) {
-            Category category = categoryService.getCategoryById(product.getCategoryId());
-            if (category != null) {
-                product.setCategory(category);
+        loadProductRelations(Collections.singletonList(product));
+    }
+
+    /**
+     * Helper method to load categories (with their parent chain) and suppliers for a list of
+     * products in a fixed number of queries, regardless of list size or category depth
+     */
+    private void loadProductRelations(List<Product> products) {
+        Set<Long> categoryIds = new HashSet<>();
+        Set<Long> supplierIds = new HashSet<>();
+        for (Product product : products) {
+            if (product.getCategoryId() != null) {
+                categoryIds.add(product.getCategoryId());
+            }
+            if (product.getSupplierId() != null) {
+                supplierIds.add(product.getSupplierId());
             }
         }
 
-        // Load supplier if available
-        if (product.getSupplierId() != null) {
-            Supplier supplier = supplierService.getSupplierById(product.getSupplierId());
-            if (supplier != null) {
-                product.setSupplier(supplier);
+        Map<Long, Category> categories = categoryIds.isEmpty()
+                ? Collections.emptyMap() : categoryService.getCategoriesWithAncestors(categoryIds);
+        Map<Long, Supplier> suppliers = supplierIds.isEmpty()
+                ? Collections.emptyMap() : supplierService.getSuppliersByIds(supplierIds);
+
+        for (Product product : products) {
+            // Load category if available
+            if (product.getCategoryId() != null) {
+                Category category = categories.get(product.getCategoryId());
+                if (category != null) {
+                    product.setCategory(category);
+                }
+            }
+
+            // Load supplier if available
+            if (product.getSupplierId() != null) {
+                Supplier supplier = suppliers.get(product.getSupplierId());
+                if (supplier != null) {
+                    product.setSupplier(supplier);
+                }
             }
         }
     }
@@ -6,7 +6,11 @@ import app.swing.model.Shipment;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Lớp service cho thực thể Giao hàng
@@ -88,40 +92,57 @@ public class ShipmentService {
      * @return true if successful, false otherwise
      */
     public boolean createShipment(Shipment shipment, Connection conn) {
+        return createShipments(List.of(shipment), conn);
+    }
+
+    /**
+     * Create shipments in one JDBC batch with existing connection (for transactions)
+     * @param shipments Shipment objects with data; generated IDs are set on them
+     * @param conn Existing database connection
+     * @return true if all shipments were inserted, false otherwise
+     */
+    public boolean createShipments(List<Shipment> shipments, Connection conn) {
+        if (shipments.isEmpty()) {
+            return true;
+        }
+
         try {
             String sql = "INSERT INTO shipments (order_id, provider, tracking_number, " +
                          "shipped_at, delivered_at, status) VALUES (?, ?, ?, ?, ?, ?)";
 
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            stmt.setLong(1, shipment.getOrderId());
-            stmt.setString(2, shipment.getProvider());
-            stmt.setString(3, shipment.getTrackingNumber());
+            PreparedStatement stmt = conn.prepareStatement(sql, new String[] {"id"});
 
-            if (shipment.getShippedAt() != null) {
-                stmt.setTimestamp(4, Timestamp.valueOf(shipment.getShippedAt()));
-            } else {
-                stmt.setNull(4, java.sql.Types.TIMESTAMP);
-            }
+            for (Shipment shipment : shipments) {
+                stmt.setLong(1, shipment.getOrderId());
+                stmt.setString(2, shipment.getProvider());
+                stmt.setString(3, shipment.getTrackingNumber());
 
-            if (shipment.getDeliveredAt() != null) {
-                stmt.setTimestamp(5, Timestamp.valueOf(shipment.getDeliveredAt()));
-            } else {
-                stmt.setNull(5, java.sql.Types.TIMESTAMP);
-            }
+                if (shipment.getShippedAt() != null) {
+                    stmt.setTimestamp(4, Timestamp.valueOf(shipment.getShippedAt()));
+                } else {
+                    stmt.setNull(4, java.sql.Types.TIMESTAMP);
+                }
 
-            stmt.setString(6, shipment.getStatus());
+                if (shipment.getDeliveredAt() != null) {
+                    stmt.setTimestamp(5, Timestamp.valueOf(shipment.getDeliveredAt()));
+                } else {
+                    stmt.setNull(5, java.sql.Types.TIMESTAMP);
+                }
 
-            int rowsAffected = stmt.executeUpdate();
+                stmt.setString(6, shipment.getStatus());
+                stmt.addBatch();
+            }
 
-            if (rowsAffected > 0) {
-                ResultSet rs = stmt.getGeneratedKeys();
-                if (rs.next()) {
-                    shipment.setId(rs.getLong(1));
-                }
-                return true;
+            stmt.executeBatch();
+
+            // Khóa sinh ra được trả về theo đúng thứ tự các dòng trong batch
+            ResultSet rs = stmt.getGeneratedKeys();
+            int index = 0;
+            while (rs.next() && index < shipments.size()) {
+                shipments.get(index++).setId(rs.getLong(1));
             }
 
-            return false;
+            return index == shipments.size();
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -208,6 +229,123 @@ public class ShipmentService {
         }
     }
 
+    /**
+     * Đồng bộ các lần giao hàng đã lưu với danh sách mới: chỉ thêm, cập nhật hoặc xóa những
+     * lần giao hàng thực sự thay đổi
+     * @param orderId Order ID
+     * @param shipments Submitted shipments; a shipment whose ID belongs to a saved row of this order updates that row
+     * @param conn Existing database connection
+     * @return true if successful, false otherwise
+     */
+    public boolean syncShipments(long orderId, List<Shipment> shipments, Connection conn) {
+        try {
+            String sql = "SELECT id, order_id, provider, tracking_number, shipped_at, " +
+                         "delivered_at, status, created_at FROM shipments WHERE order_id = ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, orderId);
+
+            ResultSet rs = stmt.executeQuery();
+
+            Map<Long, Shipment> persisted = new HashMap<>();
+            while (rs.next()) {
+                Shipment shipment = mapResultSetToShipment(rs);
+                persisted.put(shipment.getId(), shipment);
+            }
+
+            List<Shipment> toInsert = new ArrayList<>();
+            List<Shipment> toUpdate = new ArrayList<>();
+            for (Shipment shipment : shipments) {
+                shipment.setOrderId(orderId);
+
+                // Những lần giao hàng còn lại trong persisted sau vòng lặp là dòng cần xóa
+                Shipment current = persisted.remove(shipment.getId());
+                if (current == null) {
+                    toInsert.add(shipment);
+                } else if (hasChanges(current, shipment)) {
+                    toUpdate.add(shipment);
+                }
+            }
+
+            return deleteShipments(persisted.keySet(), conn)
+                && updateShipments(toUpdate, conn)
+                && createShipments(toInsert, conn);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Helper method to update shipments in one JDBC batch
+     */
+    private boolean updateShipments(List<Shipment> shipments, Connection conn) throws SQLException {
+        if (shipments.isEmpty()) {
+            return true;
+        }
+
+        String sql = "UPDATE shipments SET provider = ?, tracking_number = ?, " +
+                     "shipped_at = ?, delivered_at = ?, status = ? WHERE id = ?";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+
+        for (Shipment shipment : shipments) {
+            stmt.setString(1, shipment.getProvider());
+            stmt.setString(2, shipment.getTrackingNumber());
+
+            if (shipment.getShippedAt() != null) {
+                stmt.setTimestamp(3, Timestamp.valueOf(shipment.getShippedAt()));
+            } else {
+                stmt.setNull(3, java.sql.Types.TIMESTAMP);
+            }
+
+            if (shipment.getDeliveredAt() != null) {
+                stmt.setTimestamp(4, Timestamp.valueOf(shipment.getDeliveredAt()));
+            } else {
+                stmt.setNull(4, java.sql.Types.TIMESTAMP);
+            }
+
+            stmt.setString(5, shipment.getStatus());
+            stmt.setLong(6, shipment.getId());
+            stmt.addBatch();
+        }
+
+        for (int count : stmt.executeBatch()) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to delete shipments by ID with one statement
+     */
+    private boolean deleteShipments(Collection<Long> ids, Connection conn) throws SQLException {
+        if (ids.isEmpty()) {
+            return true;
+        }
+
+        String sql = "DELETE FROM shipments WHERE id = ANY(?)";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+
+        stmt.executeUpdate();
+        return true;
+    }
+
+    /**
+     * Helper method to check whether a submitted shipment differs from the saved row
+     */
+    private boolean hasChanges(Shipment current, Shipment shipment) {
+        return !Objects.equals(current.getProvider(), shipment.getProvider())
+            || !Objects.equals(current.getTrackingNumber(), shipment.getTrackingNumber())
+            || !Objects.equals(current.getShippedAt(), shipment.getShippedAt())
+            || !Objects.equals(current.getDeliveredAt(), shipment.getDeliveredAt())
+            || !Objects.equals(current.getStatus(), shipment.getStatus());
+    }
+
     /**
      * Helper method to map ResultSet to Shipment object
      */
@@ -0,0 +1,217 @@
+package app.swing.service;
+
+import java.sql.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bộ đếm tồn kho chia dải cho các sản phẩm bán rất chạy
+ * <p>
+ * Sản phẩm thường lưu tồn kho trong products.stock_quantity, nên mọi phiếu xuất nhập của cùng
+ * một sản phẩm phải chờ nhau trên một dòng. Khi bật chia dải (products.stock_stripes = N > 0),
+ * tồn kho được chia ra N dòng product_stock_stripes và mỗi phiếu chỉ khóa một dòng chọn ngẫu
+ * nhiên, nên N giao dịch có thể ghi cùng lúc. Tồn kho thực tế là products.stock_quantity cộng
+ * tổng các dải, xem {@link #stockQuantitySql(String)}.
+ * <p>
+ * Mỗi dải không bao giờ âm (CHECK trong database và UPDATE có điều kiện). Một lần xuất từ dải
+ * giữ khóa chia sẻ trên dòng sản phẩm và chỉ được lấy khi riêng dải đó cộng phần tồn kho trên
+ * dòng sản phẩm vẫn đủ cho số đang giữ cho đơn hàng; các dải khác không âm nên tổng tồn kho cũng
+ * đủ, dù các phiếu khác đang lấy song song từ dải khác. Khi không dải nào thỏa điều kiện, giao
+ * dịch khóa dòng sản phẩm cùng tất cả các dải theo thứ tự, kiểm tra tổng tồn kho so với số đang
+ * giữ rồi chia đều lại tồn kho cho các dải.
+ * <p>
+ * Ghi vào dải không cập nhật products.updated_at, vì như vậy phải khóa dòng sản phẩm và mọi phiếu
+ * lại phải chờ nhau. Nơi đọc tăng dần theo updated_at phải luôn đọc lại sản phẩm có
+ * stock_stripes > 0 (xem DashboardStatsService và ProductService.getProductsChangedSince).
+ */
+public class StockCounterService {
+
+    /**
+     * SQL expression for the on-hand quantity of a product, including its stripes
+     * @param alias Table alias or name of the products table in the query
+     * @return Expression to use in place of stock_quantity
+     */
+    public static String stockQuantitySql(String alias) {
+        return "(" + alias + ".stock_quantity + CASE WHEN " + alias + ".stock_stripes > 0 THEN " +
+               "COALESCE((SELECT SUM(pss.quantity) FROM product_stock_stripes pss " +
+               "WHERE pss.product_id = " + alias + ".id), 0) ELSE 0 END)";
+    }
+
+    /**
+     * Apply a stock change with the connection of the surrounding transaction
+     * @param conn Database connection
+     * @param productId Product ID
+     * @param changeQty Quantity change (positive for increase, negative for decrease)
+     * @throws SQLException if the product does not exist or does not have enough available stock
+     */
+    public void changeStock(Connection conn, long productId, int changeQty) throws SQLException {
+        // Sản phẩm không chia dải: cập nhật thẳng dòng sản phẩm
+        String sql = "UPDATE products SET stock_quantity = stock_quantity + ?, updated_at = now() " +
+                     "WHERE id = ? AND stock_stripes = 0 " +
+                     "AND (? >= 0 OR stock_quantity - reserved_quantity + ? >= 0)";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setInt(1, changeQty);
+        stmt.setLong(2, productId);
+        stmt.setInt(3, changeQty);
+        stmt.setInt(4, changeQty);
+
+        if (stmt.executeUpdate() > 0) {
+            return;
+        }
+
+        PreparedStatement stripesStmt = conn.prepareStatement(
+            "SELECT p.stock_stripes, p.stock_quantity, p.reserved_quantity, " +
+            "(SELECT MAX(quantity) FROM product_stock_stripes WHERE product_id = p.id) AS max_stripe " +
+            "FROM products p WHERE p.id = ?");
+        stripesStmt.setLong(1, productId);
+        ResultSet stripesRs = stripesStmt.executeQuery();
+        int stripes = stripesRs.next() ? stripesRs.getInt("stock_stripes") : 0;
+        if (stripes <= 0) {
+            throw new SQLException("Failed to update product stock for product ID: " + productId +
+                                   " (product missing or not enough available stock)");
+        }
+
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+
+        if (changeQty >= 0) {
+            PreparedStatement addStmt = conn.prepareStatement(
+                "UPDATE product_stock_stripes SET quantity = quantity + ? WHERE product_id = ? AND stripe = ?");
+            addStmt.setInt(1, changeQty);
+            addStmt.setLong(2, productId);
+            addStmt.setInt(3, start);
+            if (addStmt.executeUpdate() > 0) {
+                return;
+            }
+        } else if (stripesRs.getInt("max_stripe") + changeQty >= minStripeAfterTake(stripesRs)) {
+            // Khóa chia sẻ: số đang giữ và phần tồn kho trên dòng sản phẩm không đổi tới khi commit,
+            // các phiếu xuất khác vẫn lấy song song từ các dải khác
+            PreparedStatement lockStmt = conn.prepareStatement(
+                "SELECT stock_quantity, reserved_quantity FROM products WHERE id = ? FOR SHARE");
+            lockStmt.setLong(1, productId);
+            ResultSet lockRs = lockStmt.executeQuery();
+            lockRs.next();
+            int minStripe = minStripeAfterTake(lockRs);
+
+            // Thử lần lượt các dải từ một vị trí ngẫu nhiên; dải không đủ hàng thì không bị khóa
+            PreparedStatement takeStmt = conn.prepareStatement(
+                "UPDATE product_stock_stripes SET quantity = quantity + ? " +
+                "WHERE product_id = ? AND stripe = ? AND quantity + ? >= ?");
+            for (int i = 0; i < stripes; i++) {
+                takeStmt.setInt(1, changeQty);
+                takeStmt.setLong(2, productId);
+                takeStmt.setInt(3, (start + i) % stripes);
+                takeStmt.setInt(4, changeQty);
+                takeStmt.setInt(5, minStripe);
+                if (takeStmt.executeUpdate() > 0) {
+                    return;
+                }
+            }
+        }
+
+        // Nếu đã giữ khóa chia sẻ thì rebalance nâng lên khóa ghi; hai giao dịch cùng nâng sẽ bị
+        // database hủy một, và ledger ghi lại từng phiếu riêng
+        rebalance(conn, productId, changeQty);
+    }
+
+    /**
+     * Set the on-hand quantity of a product and spread it over its stripes, if any
+     * @param conn Connection of the surrounding transaction
+     * @param productId Product ID
+     * @param quantity New on-hand quantity
+     * @param stripes Number of stripes, 0 to keep the whole quantity on the product row
+     * @throws SQLException if a query fails
+     */
+    public void resetStock(Connection conn, long productId, int quantity, int stripes) throws SQLException {
+        // Phần âm (nếu có) luôn nằm ở dòng sản phẩm vì các dải không được âm
+        int striped = stripes > 0 ? Math.max(quantity, 0) : 0;
+
+        PreparedStatement productStmt = conn.prepareStatement(
+            "UPDATE products SET stock_quantity = ?, stock_stripes = ?, updated_at = now() WHERE id = ?");
+        productStmt.setInt(1, quantity - striped);
+        productStmt.setInt(2, stripes);
+        productStmt.setLong(3, productId);
+        productStmt.executeUpdate();
+
+        PreparedStatement deleteStmt = conn.prepareStatement(
+            "DELETE FROM product_stock_stripes WHERE product_id = ? AND stripe >= ?");
+        deleteStmt.setLong(1, productId);
+        deleteStmt.setInt(2, stripes);
+        deleteStmt.executeUpdate();
+
+        if (stripes > 0) {
+            // Ghi đè tại chỗ các dải đã có để giao dịch đang chờ dải đó vẫn cập nhật được
+            PreparedStatement upsertStmt = conn.prepareStatement(
+                "INSERT INTO product_stock_stripes (product_id, stripe, quantity) VALUES (?, ?, ?) " +
+                "ON CONFLICT (product_id, stripe) DO UPDATE SET quantity = EXCLUDED.quantity");
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                upsertStmt.setLong(1, productId);
+                upsertStmt.setInt(2, stripe);
+                upsertStmt.setInt(3, stripeShare(striped, stripes, stripe));
+                upsertStmt.addBatch();
+            }
+            upsertStmt.executeBatch();
+        }
+    }
+
+    /**
+     * Lock the product row and all of its stripes, in stripe order, and read the on-hand quantity.
+     * Concurrent stock changes of the product wait until the surrounding transaction ends.
+     * @param conn Connection of the surrounding transaction
+     * @param productId Product ID
+     * @return On-hand quantity including stripes
+     * @throws SQLException if the product does not exist
+     */
+    public int lockStockQuantity(Connection conn, long productId) throws SQLException {
+        PreparedStatement productStmt = conn.prepareStatement(
+            "SELECT stock_quantity FROM products WHERE id = ? FOR UPDATE");
+        productStmt.setLong(1, productId);
+        ResultSet productRs = productStmt.executeQuery();
+        if (!productRs.next()) {
+            throw new SQLException("Product not found, ID: " + productId);
+        }
+        int total = productRs.getInt("stock_quantity");
+
+        PreparedStatement stripesStmt = conn.prepareStatement(
+            "SELECT quantity FROM product_stock_stripes WHERE product_id = ? ORDER BY stripe FOR UPDATE");
+        stripesStmt.setLong(1, productId);
+        ResultSet stripesRs = stripesStmt.executeQuery();
+        while (stripesRs.next()) {
+            total += stripesRs.getInt("quantity");
+        }
+        return total;
+    }
+
+    /**
+     * Helper method for the slow path: lock the product and all of its stripes, apply the change
+     * to the total and spread the result evenly again
+     */
+    private void rebalance(Connection conn, long productId, int changeQty) throws SQLException {
+        int newTotal = lockStockQuantity(conn, productId) + changeQty;
+
+        // Dòng sản phẩm đã bị khóa, số dải và số đang giữ không đổi nữa
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT reserved_quantity, stock_stripes FROM products WHERE id = ?");
+        stmt.setLong(1, productId);
+        ResultSet rs = stmt.executeQuery();
+        rs.next();
+
+        if (changeQty < 0 && newTotal - rs.getInt("reserved_quantity") < 0) {
+            throw new SQLException("Failed to update product stock for product ID: " + productId +
+                                   " (not enough available stock)");
+        }
+
+        resetStock(conn, productId, newTotal, rs.getInt("stock_stripes"));
+    }
+
+    /**
+     * Helper method for the least quantity a stripe may keep after a take, so that the stripe
+     * and the product row alone still cover the reserved quantity
+     */
+    private static int minStripeAfterTake(ResultSet rs) throws SQLException {
+        return Math.max(rs.getInt("reserved_quantity") - rs.getInt("stock_quantity"), 0);
+    }
+
+    private static int stripeShare(int quantity, int stripes, int stripe) {
+        // Phần dư chia cho các dải đầu tiên
+        return quantity / stripes + (stripe < quantity % stripes ? 1 : 0);
+    }
+}
@@ -0,0 +1,259 @@
+package app.swing.service;
+
+import app.swing.model.Order;
+import app.swing.model.OrderItem;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Lớp service giữ hàng tồn kho cho đơn hàng
+ * <p>
+ * Đơn chưa xuất kho (draft, pending, paid) giữ số lượng của từng sản phẩm trong
+ * stock_reservations và products.reserved_quantity. Việc giữ thêm hàng là một câu UPDATE có
+ * điều kiện "tồn kho - đang giữ >= số cần giữ", nên hai đơn đồng thời không thể giữ quá số
+ * hàng hiện có. Các dòng sản phẩm luôn được cập nhật theo thứ tự ID tăng dần để hai giao dịch
+ * không khóa chéo nhau. Đơn bị hủy hoặc hoàn tiền sẽ trả lại phần giữ; đơn chuyển sang
+ * shipped/completed sẽ trừ tồn kho và ghi phiếu xuất kho loại 'sale'.
+ * <p>
+ * Mọi phương thức đều chạy trên kết nối của giao dịch lưu đơn hàng.
+ */
+public class StockReservationService {
+
+    // Các trạng thái đơn hàng còn giữ hàng trong kho
+    private static final Set<String> HOLDING_STATUSES = Set.of("draft", "pending", "paid");
+
+    // Các trạng thái hàng đã rời kho
+    private static final Set<String> FULFILLED_STATUSES = Set.of("shipped", "completed");
+
+    /**
+     * Update the reservations of an order to match its current status and items
+     * @param order Saved order with its ID, status and items
+     * @param previousStatus Status before this save, null for a new order
+     * @param conn Connection of the order transaction
+     * @return false if some product does not have enough available stock
+     * @throws SQLException if a query fails
+     */
+    public boolean applyOrder(Order order, String previousStatus, Connection conn) throws SQLException {
+        // Hàng của đơn đã xuất kho trước đó, không giữ hay trả lại nữa
+        if (previousStatus != null && FULFILLED_STATUSES.contains(previousStatus)) {
+            return true;
+        }
+
+        boolean holding = HOLDING_STATUSES.contains(order.getStatus());
+        boolean fulfilled = FULFILLED_STATUSES.contains(order.getStatus());
+
+        SortedMap<Long, Integer> wanted = holding || fulfilled
+                ? quantitiesByProduct(order.getOrderItems())
+                : new TreeMap<>();
+
+        if (!syncReservations(order.getId(), wanted, conn)) {
+            return false;
+        }
+
+        if (fulfilled) {
+            consumeReservations(order, wanted, conn);
+        }
+        return true;
+    }
+
+    /**
+     * Release everything an order holds, e.g. before deleting it
+     * @param orderId Order ID
+     * @param conn Connection of the order transaction
+     * @throws SQLException if a query fails
+     */
+    public void releaseOrder(long orderId, Connection conn) throws SQLException {
+        syncReservations(orderId, new TreeMap<>(), conn);
+    }
+
+    /**
+     * Helper method to bring the saved reservations of an order to the wanted quantities,
+     * touching only the products whose quantity changes
+     */
+    private boolean syncReservations(long orderId, SortedMap<Long, Integer> wanted, Connection conn) throws SQLException {
+        Map<Long, Integer> current = getReservations(orderId, conn);
+
+        Set<Long> productIds = new TreeSet<>(current.keySet());
+        productIds.addAll(wanted.keySet());
+
+        SortedMap<Long, Integer> deltas = new TreeMap<>();
+        for (long productId : productIds) {
+            int delta = wanted.getOrDefault(productId, 0) - current.getOrDefault(productId, 0);
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            }
+        }
+
+        if (deltas.isEmpty()) {
+            return true;
+        }
+
+        lockStripedProducts(deltas, conn);
+
+        // Giữ thêm chỉ thành công khi còn đủ hàng khả dụng; trả bớt thì luôn thành công
+        String sql = "UPDATE products SET reserved_quantity = reserved_quantity + ?, updated_at = now() " +
+                     "WHERE id = ? AND (? <= 0 OR " + StockCounterService.stockQuantitySql("products") +
+                     " - reserved_quantity >= ?)";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            stmt.setInt(1, entry.getValue());
+            stmt.setLong(2, entry.getKey());
+            stmt.setInt(3, entry.getValue());
+            stmt.setInt(4, entry.getValue());
+            stmt.addBatch();
+        }
+
+        for (int count : stmt.executeBatch()) {
+            if (count == 0) {
+                return false;
+            }
+        }
+
+        saveReservations(orderId, deltas.keySet(), wanted, conn);
+        return true;
+    }
+
+    /**
+     * Helper method to lock the striped products that get more reserved, in ID order. Stripe takes
+     * hold a share lock on the product row, so this waits until they commit and the following
+     * UPDATE reads the committed stripe quantities.
+     */
+    private void lockStripedProducts(SortedMap<Long, Integer> deltas, Connection conn) throws SQLException {
+        List<Long> increasedIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            if (entry.getValue() > 0) {
+                increasedIds.add(entry.getKey());
+            }
+        }
+        if (increasedIds.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT id FROM products WHERE id = ANY(?) AND stock_stripes > 0 ORDER BY id FOR UPDATE");
+        stmt.setArray(1, conn.createArrayOf("bigint", increasedIds.toArray()));
+        stmt.executeQuery();
+    }
+
+    /**
+     * Helper method to write the reservation rows of the changed products
+     */
+    private void saveReservations(long orderId, Set<Long> changedIds, Map<Long, Integer> wanted,
+                                  Connection conn) throws SQLException {
+        List<Long> removedIds = new ArrayList<>();
+
+        String sql = "INSERT INTO stock_reservations (order_id, product_id, quantity) VALUES (?, ?, ?) " +
+                     "ON CONFLICT (order_id, product_id) DO UPDATE SET quantity = EXCLUDED.quantity";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        boolean hasUpserts = false;
+
+        for (long productId : changedIds) {
+            Integer quantity = wanted.get(productId);
+            if (quantity == null) {
+                removedIds.add(productId);
+                continue;
+            }
+
+            stmt.setLong(1, orderId);
+            stmt.setLong(2, productId);
+            stmt.setInt(3, quantity);
+            stmt.addBatch();
+            hasUpserts = true;
+        }
+
+        if (hasUpserts) {
+            stmt.executeBatch();
+        }
+
+        if (!removedIds.isEmpty()) {
+            PreparedStatement deleteStmt = conn.prepareStatement(
+                "DELETE FROM stock_reservations WHERE order_id = ? AND product_id = ANY(?)");
+            deleteStmt.setLong(1, orderId);
+            deleteStmt.setArray(2, conn.createArrayOf("bigint", removedIds.toArray()));
+            deleteStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Helper method to turn the reservations of a shipped order into stock deductions
+     */
+    private void consumeReservations(Order order, SortedMap<Long, Integer> quantities, Connection conn) throws SQLException {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement stockStmt = conn.prepareStatement(
+            "UPDATE products SET stock_quantity = stock_quantity - ?, " +
+            "reserved_quantity = reserved_quantity - ?, updated_at = now() WHERE id = ?");
+
+        PreparedStatement movementStmt = conn.prepareStatement(
+            "INSERT INTO inventory_movements (product_id, change_qty, kind, reference_type, " +
+            "reference_id, note, user_id) VALUES (?, ?, 'sale', 'order', ?, ?, ?)");
+
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            stockStmt.setInt(1, entry.getValue());
+            stockStmt.setInt(2, entry.getValue());
+            stockStmt.setLong(3, entry.getKey());
+            stockStmt.addBatch();
+
+            movementStmt.setLong(1, entry.getKey());
+            movementStmt.setInt(2, -entry.getValue());
+            movementStmt.setLong(3, order.getId());
+            movementStmt.setString(4, "Xuất kho cho đơn hàng " + order.getOrderNumber());
+            if (order.getUserId() != null) {
+                movementStmt.setLong(5, order.getUserId());
+            } else {
+                movementStmt.setNull(5, java.sql.Types.BIGINT);
+            }
+            movementStmt.addBatch();
+        }
+
+        stockStmt.executeBatch();
+        movementStmt.executeBatch();
+
+        PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM stock_reservations WHERE order_id = ?");
+        deleteStmt.setLong(1, order.getId());
+        deleteStmt.executeUpdate();
+    }
+
+    /**
+     * Helper method to load the saved reservations of an order
+     */
+    private Map<Long, Integer> getReservations(long orderId, Connection conn) throws SQLException {
+        Map<Long, Integer> reservations = new HashMap<>();
+
+        String sql = "SELECT product_id, quantity FROM stock_reservations WHERE order_id = ?";
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setLong(1, orderId);
+
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            reservations.put(rs.getLong("product_id"), rs.getInt("quantity"));
+        }
+
+        return reservations;
+    }
+
+    /**
+     * Helper method to sum item quantities per product; lines without a product are not stocked
+     */
+    private SortedMap<Long, Integer> quantitiesByProduct(List<OrderItem> items) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItem item : items != null ? items : Collections.<OrderItem>emptyList()) {
+            if (item.getProductId() != null && item.getQuantity() > 0) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,49 @@
+package app.swing.service;
+
+import app.swing.contants.DbConst;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chụp tồn kho theo sổ xuất nhập kho định kỳ ở nền, xem {@link StockSnapshotService}
+ */
+public class StockSnapshotJob {
+
+    private static class Holder {
+        private static final StockSnapshotJob INSTANCE = new StockSnapshotJob();
+    }
+
+    public static StockSnapshotJob getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private final StockSnapshotService snapshotService = new StockSnapshotService();
+    private ScheduledExecutorService scheduler;
+
+    private StockSnapshotJob() {}
+
+    /**
+     * Start taking snapshots every {@link DbConst#STOCK_SNAPSHOT_INTERVAL_MS}; calling it again has no effect
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = DbConst.STOCK_SNAPSHOT_INTERVAL_MS;
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshotService.takeSnapshots();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,224 @@
+package app.swing.service;
+
+import app.swing.configuration.DbConnection;
+import app.swing.model.StockDiscrepancy;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lớp service cho bản chụp tồn kho và tính lại tồn kho từ sổ xuất nhập kho
+ * <p>
+ * Mỗi bản chụp (stock_snapshots) ghi tồn kho của một sản phẩm theo sổ tại một thời điểm. Tồn kho
+ * tại thời điểm T bằng bản chụp gần nhất trước T cộng các phiếu xuất nhập sau bản chụp đến T,
+ * nên chỉ phải đọc các phiếu gần đây thay vì toàn bộ lịch sử.
+ * <p>
+ * Bản chụp được tính từ sổ chứ không đọc từ products.stock_quantity, và chỉ chụp đến thời điểm
+ * lùi lại {@link #SETTLE_WINDOW_MS} so với hiện tại: created_at của phiếu là lúc giao dịch bắt
+ * đầu, nên các giao dịch đang chạy có thể commit phiếu với created_at cũ hơn thời điểm chụp. Sửa
+ * hoặc xóa một phiếu cũ sẽ xóa các bản chụp từ thời điểm của phiếu đó trở đi.
+ * <p>
+ * Sổ của một sản phẩm bắt đầu bằng phiếu tồn kho đầu kỳ (reference_type 'opening'), được ghi khi
+ * tạo sản phẩm hoặc điền cho dữ liệu cũ trong init.sql. Sản phẩm chưa có phiếu này có tồn kho
+ * không nằm trong sổ, nên không được tính lại tồn kho từ sổ.
+ */
+public class StockSnapshotService {
+
+    // Chỉ chụp các phiếu cũ hơn khoảng này, đủ để các giao dịch ghi phiếu đã commit
+    private static final long SETTLE_WINDOW_MS = 5 * 60_000L;
+
+    // Mốc thời gian để tính tồn kho theo toàn bộ các phiếu đã commit
+    private static final String ALL_COMMITTED = "'infinity'::timestamptz";
+
+    private StockCounterService stockCounterService;
+
+    public StockSnapshotService() {
+        this.stockCounterService = new StockCounterService();
+    }
+
+    /**
+     * Helper method for the join of the latest snapshot of product p not later than asOf
+     */
+    private static String latestSnapshotJoin(String asOf) {
+        return "LEFT JOIN LATERAL (SELECT ss.taken_at, ss.stock_quantity FROM stock_snapshots ss " +
+               "WHERE ss.product_id = p.id AND ss.taken_at <= " + asOf + " " +
+               "ORDER BY ss.taken_at DESC LIMIT 1) s ON true ";
+    }
+
+    /**
+     * Helper method for the ledger stock of product p: snapshot plus the movements after it up to asOf
+     */
+    private static String ledgerQuantity(String asOf) {
+        return "COALESCE(s.stock_quantity, 0) + COALESCE((SELECT SUM(im.change_qty) FROM inventory_movements im " +
+               "WHERE im.product_id = p.id AND im.created_at <= " + asOf + " " +
+               "AND (s.taken_at IS NULL OR im.created_at > s.taken_at)), 0)";
+    }
+
+    /**
+     * Take a snapshot of every product that has movements since its previous snapshot
+     * @return Number of snapshots written, -1 on error
+     */
+    public int takeSnapshots() {
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "WITH cutoff AS (SELECT now() - (? * interval '1 millisecond') AS at) " +
+                         "INSERT INTO stock_snapshots (product_id, taken_at, stock_quantity) " +
+                         "SELECT p.id, c.at, COALESCE(s.stock_quantity, 0) + m.total " +
+                         "FROM cutoff c CROSS JOIN products p " +
+                         "LEFT JOIN LATERAL (SELECT ss.taken_at, ss.stock_quantity FROM stock_snapshots ss " +
+                         "  WHERE ss.product_id = p.id AND ss.taken_at <= c.at " +
+                         "  ORDER BY ss.taken_at DESC LIMIT 1) s ON true " +
+                         "JOIN LATERAL (SELECT SUM(im.change_qty) AS total FROM inventory_movements im " +
+                         "  WHERE im.product_id = p.id AND im.created_at <= c.at " +
+                         "  AND (s.taken_at IS NULL OR im.created_at > s.taken_at)) m ON m.total IS NOT NULL " +
+                         "ON CONFLICT (product_id, taken_at) DO NOTHING";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, SETTLE_WINDOW_MS);
+            return stmt.executeUpdate();
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Compute the stock of a product at a point in time from the ledger
+     * @param productId Product ID
+     * @param asOf Point in time
+     * @return Stock quantity at that time, null if the product does not exist or on error
+     */
+    public Integer getStockAsOf(long productId, Timestamp asOf) {
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT " + ledgerQuantity("?") + " AS ledger_quantity " +
+                         "FROM products p " + latestSnapshotJoin("?") +
+                         "WHERE p.id = ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setTimestamp(1, asOf);
+            stmt.setTimestamp(2, asOf);
+            stmt.setLong(3, productId);
+
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt("ledger_quantity");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Find products whose stored stock does not match the ledger
+     * @return List of mismatching products, ordered by SKU
+     */
+    public List<StockDiscrepancy> getStockDiscrepancies() {
+        List<StockDiscrepancy> discrepancies = new ArrayList<>();
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT * FROM (" +
+                         "  SELECT p.id, p.sku, p.name, " +
+                         StockCounterService.stockQuantitySql("p") + " AS stock_quantity, " +
+                         ledgerQuantity(ALL_COMMITTED) + " AS ledger_quantity " +
+                         "  FROM products p " + latestSnapshotJoin(ALL_COMMITTED) +
+                         ") t WHERE stock_quantity <> ledger_quantity ORDER BY sku";
+
+            // Cùng một câu lệnh nên tồn kho và sổ được đọc trên cùng một thời điểm
+            PreparedStatement stmt = conn.prepareStatement(sql);
+
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                StockDiscrepancy discrepancy = new StockDiscrepancy();
+                discrepancy.setProductId(rs.getLong("id"));
+                discrepancy.setSku(rs.getString("sku"));
+                discrepancy.setProductName(rs.getString("name"));
+                discrepancy.setStockQuantity(rs.getInt("stock_quantity"));
+                discrepancy.setLedgerQuantity(rs.getInt("ledger_quantity"));
+                discrepancies.add(discrepancy);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return discrepancies;
+    }
+
+    /**
+     * Overwrite the stored stock of a product with the stock computed from the ledger
+     * @param productId Product ID
+     * @return true if successful, false if the product has no opening entry or on error
+     */
+    public boolean rebuildStock(long productId) {
+        Connection conn = null;
+        try {
+            conn = DbConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Khóa sản phẩm trước khi đọc sổ: phiếu nào đang chờ khóa sẽ cộng vào sau khi ghi lại
+            stockCounterService.lockStockQuantity(conn, productId);
+
+            // Không có phiếu đầu kỳ thì sổ thiếu phần tồn kho có từ trước, ghi đè sẽ làm mất phần đó
+            String sql = "SELECT p.stock_stripes, " + ledgerQuantity(ALL_COMMITTED) + " AS ledger_quantity, " +
+                         "EXISTS (SELECT 1 FROM inventory_movements o WHERE o.product_id = p.id " +
+                         "AND o.reference_type = ?) AS has_opening " +
+                         "FROM products p " + latestSnapshotJoin(ALL_COMMITTED) +
+                         "WHERE p.id = ?";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, ProductService.OPENING_REFERENCE_TYPE);
+            stmt.setLong(2, productId);
+
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next() || !rs.getBoolean("has_opening")) {
+                conn.rollback();
+                return false;
+            }
+
+            stockCounterService.resetStock(conn, productId, rs.getInt("ledger_quantity"), rs.getInt("stock_stripes"));
+
+            conn.commit();
+            return true;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            return false;
+        } finally {
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Drop the snapshots that already include a movement about to be changed or deleted
+     * @param conn Connection of the movement transaction
+     * @param movementId Movement ID, read before the movement is deleted
+     * @param productIds Products affected by the change
+     * @throws SQLException if the query fails
+     */
+    public void invalidateSnapshots(Connection conn, long movementId, Collection<Long> productIds) throws SQLException {
+        String sql = "DELETE FROM stock_snapshots WHERE product_id = ANY(?) " +
+                     "AND taken_at >= (SELECT created_at FROM inventory_movements WHERE id = ?)";
+
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setArray(1, conn.createArrayOf("bigint", productIds.toArray()));
+        stmt.setLong(2, movementId);
+        stmt.executeUpdate();
+    }
+}
@@ -1,17 +1,27 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.Supplier;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Lớp service cho thực thể Nhà cung cấp
  */
 public class SupplierService {
 
+    // Bộ đệm nhà cung cấp theo ID, dùng chung cho mọi instance của service
+    private static final EntityCache<Supplier> CACHE = new EntityCache<>("suppliers",
+            DbConst.ENTITY_CACHE_MAX_SIZE, DbConst.ENTITY_CACHE_TTL_MS, Supplier::new);
+
     /**
      * Lấy tất cả nhà cung cấp từ cơ sở dữ liệu
      * @return Danh sách tất cả nhà cung cấp
@@ -43,6 +53,13 @@ public class SupplierService {
      * @return Supplier object if found, null otherwise
      */
     public Supplier getSupplierById(long id) {
+        return CACHE.get(id, this::loadSupplierById);
+    }
+
+    /**
+     * Helper method to read a supplier from the database, bypassing the cache
+     */
+    private Supplier loadSupplierById(long id) {
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT id, name, contact_name, email, phone, address, note, " +
                         "created_at, updated_at FROM suppliers WHERE id = ?";
@@ -62,6 +79,47 @@ public class SupplierService {
         return null;
     }
 
+    /**
+     * Get suppliers for a set of IDs in a single query
+     * @param ids Supplier IDs (duplicates and nulls are ignored)
+     * @return Map from supplier ID to supplier; missing IDs are absent
+     */
+    public Map<Long, Supplier> getSuppliersByIds(Collection<Long> ids) {
+        return CACHE.getAll(ids, this::loadSuppliersByIds);
+    }
+
+    /**
+     * Helper method to read suppliers from the database in a single query, bypassing the cache
+     */
+    private Map<Long, Supplier> loadSuppliersByIds(Collection<Long> ids) {
+        Map<Long, Supplier> suppliers = new HashMap<>();
+        Set<Long> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+
+        if (distinctIds.isEmpty()) {
+            return suppliers;
+        }
+
+        try (Connection conn = DbConnection.getConnection()) {
+            String sql = "SELECT id, name, contact_name, email, phone, address, note, " +
+                        "created_at, updated_at FROM suppliers WHERE id = ANY(?)";
+
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setArray(1, conn.createArrayOf("bigint", distinctIds.toArray()));
+
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                Supplier supplier = mapResultSetToSupplier(rs);
+                suppliers.put(supplier.getId(), supplier);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return suppliers;
+    }
+
     /**
      * Tạo nhà cung cấp mới
      * @param supplier Đối tượng Supplier chứa dữ liệu
@@ -123,6 +181,8 @@ public class SupplierService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(supplier.getId());
         }
     }
 
@@ -155,29 +215,40 @@ public class SupplierService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(id);
         }
     }
 
     /**
      * Search suppliers by name or contact information
      * @param searchTerm Search term to look for
-     * @return List of matching suppliers
+     * @return List of matching suppliers, best matches first
      */
     public List<Supplier> searchSuppliers(String searchTerm) {
+        return searchSuppliers(searchTerm, DbConst.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Search suppliers by name or contact information, using the trigram indexes
+     * @param searchTerm Search term to look for
+     * @param limit Maximum number of results
+     * @return List of matching suppliers, best matches first
+     */
+    public List<Supplier> searchSuppliers(String searchTerm, int limit) {
         List<Supplier> suppliers = new ArrayList<>();
 
         try (Connection conn = DbConnection.getConnection()) {
+            String[] columns = {"name", "contact_name", "email", "phone"};
             String sql = "SELECT id, name, contact_name, email, phone, address, note, " +
                         "created_at, updated_at FROM suppliers " +
-                        "WHERE name ILIKE ? OR contact_name ILIKE ? OR email ILIKE ? OR phone ILIKE ? " +
-                        "ORDER BY name";
+                        "WHERE " + TextSearch.matchSql(columns) + " " +
+                        "ORDER BY " + TextSearch.rankSql(columns) + " DESC, name LIMIT ?";
 
             PreparedStatement stmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            stmt.setString(3, searchPattern);
-            stmt.setString(4, searchPattern);
+            int index = TextSearch.bindRepeated(stmt, 1, TextSearch.pattern(searchTerm), columns.length);
+            index = TextSearch.bindRepeated(stmt, index, searchTerm, columns.length);
+            stmt.setInt(index, limit);
 
             ResultSet rs = stmt.executeQuery();
 
@@ -241,4 +312,12 @@ public class SupplierService {
 
         return supplier;
     }
+
+    /**
+     * Get hit/miss/eviction statistics of the supplier cache
+     * @return Current cache statistics
+     */
+    public EntityCache.Stats getCacheStats() {
+        return CACHE.getStats();
+    }
 }
@@ -0,0 +1,75 @@
+package app.swing.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Các hàm dựng câu tìm kiếm chuỗi con dùng chung cho các service
+ * <p>
+ * Các cột được tìm đều có index GIN pg_trgm (xem database/init.sql), nên điều kiện
+ * "cột ILIKE '%từ khóa%'" dùng được index thay vì quét toàn bảng, miễn là mọi nhánh OR đều
+ * nằm trên các cột có index của cùng một bảng. Kết quả được xếp theo word_similarity giữa từ
+ * khóa và cột khớp nhất, rồi giới hạn số dòng trả về.
+ */
+public final class TextSearch {
+
+    private TextSearch() {}
+
+    /**
+     * Build "(c1 ILIKE ? OR c2 ILIKE ? ...)", one pattern parameter per column
+     * @param columns Columns to search
+     * @return SQL condition
+     */
+    public static String matchSql(String... columns) {
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append(columns[i]).append(" ILIKE ?");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Build the rank expression GREATEST(word_similarity(?, c1), ...), one term parameter per column
+     * @param columns Searched columns
+     * @return SQL expression, higher is a better match
+     */
+    public static String rankSql(String... columns) {
+        StringBuilder sql = new StringBuilder("GREATEST(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("word_similarity(?, ").append(columns[i]).append(")");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Turn a search term into an ILIKE pattern, escaping the LIKE wildcards it contains
+     * @param term Search term as typed
+     * @return Pattern matching the term anywhere in a column
+     */
+    public static String pattern(String term) {
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Bind the same value to consecutive parameters
+     * @param stmt Statement to bind
+     * @param index First parameter index
+     * @param value Value to bind
+     * @param count Number of parameters
+     * @return Index of the next parameter
+     * @throws SQLException if binding fails
+     */
+    public static int bindRepeated(PreparedStatement stmt, int index, String value, int count) throws SQLException {
+        for (int i = 0; i < count; i++) {
+            stmt.setString(index++, value);
+        }
+        return index;
+    }
+}
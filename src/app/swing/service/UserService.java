@@ -1,6 +1,7 @@
 package app.swing.service;
 
 import app.swing.configuration.DbConnection;
+import app.swing.contants.DbConst;
 import app.swing.model.User;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -17,6 +18,10 @@ import java.util.List;
  */
 public class UserService {
 
+    // Bộ đệm người dùng theo ID, dùng chung cho mọi instance của service
+    private static final EntityCache<User> CACHE = new EntityCache<>("users",
+            DbConst.ENTITY_CACHE_MAX_SIZE, DbConst.ENTITY_CACHE_TTL_MS, User::new);
+
     public enum LoginResult {
         SUCCESS,
         INVALID_CREDENTIALS,
@@ -165,10 +170,17 @@ public class UserService {
      * @return User object if found, null otherwise
      */
     public User getUserById(int id) {
+        return CACHE.get(id, this::loadUserById);
+    }
+
+    /**
+     * Helper method to read a user from the database, bypassing the cache
+     */
+    private User loadUserById(long id) {
         try (Connection conn = DbConnection.getConnection()) {
             String sql = "SELECT id, username, password, role, status, full_name, email FROM users WHERE id = ?";
             PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, id);
+            stmt.setInt(1, (int) id);
 
             ResultSet rs = stmt.executeQuery();
 
@@ -267,6 +279,8 @@ public class UserService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(user.getId());
         }
     }
 
@@ -288,6 +302,8 @@ public class UserService {
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            CACHE.invalidate(id);
         }
     }
 
@@ -338,4 +354,12 @@ public class UserService {
 
         return false;
     }
+
+    /**
+     * Get hit/miss/eviction statistics of the user cache
+     * @return Current cache statistics
+     */
+    public EntityCache.Stats getCacheStats() {
+        return CACHE.getStats();
+    }
 }
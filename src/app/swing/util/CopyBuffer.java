@@ -0,0 +1,112 @@
+package app.swing.util;
+
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Gom các dòng dữ liệu theo định dạng csv của lệnh COPY ... FROM STDIN và gửi đi theo từng khối
+ * <p>
+ * Mỗi giá trị được thêm lần lượt theo thứ tự cột của lệnh COPY, kết thúc dòng bằng
+ * {@link #endRow()}. Giá trị null được ghi là trường trống không có ngoặc kép, tức NULL trong
+ * định dạng csv của COPY. Dữ liệu chỉ được gửi khi bộ đệm đầy nên bộ nhớ dùng không phụ thuộc số dòng.
+ */
+public class CopyBuffer {
+
+    // Số ký tự gom lại trước khi gửi đi
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final CopyIn copyIn;
+    private final StringBuilder data = new StringBuilder(BUFFER_CHARS + 1024);
+    private boolean rowStarted;
+
+    /**
+     * @param copyIn Open COPY operation; finished by {@link #finish()} or {@link #cancel()}
+     */
+    public CopyBuffer(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    /**
+     * Append a text value, quoted; null and empty text become NULL
+     */
+    public CopyBuffer text(String value) {
+        separator();
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        data.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                data.append('"');
+            }
+            // PostgreSQL không nhận ký tự NUL trong chuỗi
+            if (c != '\0') {
+                data.append(c);
+            }
+        }
+        data.append('"');
+        return this;
+    }
+
+    /**
+     * Append a number or boolean value; null becomes NULL
+     */
+    public CopyBuffer value(Object value) {
+        separator();
+        if (value instanceof BigDecimal) {
+            data.append(((BigDecimal) value).toPlainString());
+        } else if (value != null) {
+            data.append(value);
+        }
+        return this;
+    }
+
+    /**
+     * End the current row, sending the buffered rows when the buffer is full
+     */
+    public void endRow() throws SQLException {
+        data.append('\n');
+        rowStarted = false;
+        if (data.length() >= BUFFER_CHARS) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the remaining rows and end the COPY
+     * @return Number of rows the server copied
+     */
+    public long finish() throws SQLException {
+        flush();
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Abort the COPY if it is still open; the transaction must then be rolled back
+     */
+    public void cancel() throws SQLException {
+        if (copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    private void separator() {
+        if (rowStarted) {
+            data.append(',');
+        }
+        rowStarted = true;
+    }
+
+    private void flush() throws SQLException {
+        if (data.length() == 0) {
+            return;
+        }
+        byte[] bytes = data.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        data.setLength(0);
+    }
+}
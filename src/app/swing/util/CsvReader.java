@@ -0,0 +1,159 @@
+package app.swing.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc file CSV theo từng bản ghi, không nạp cả file vào bộ nhớ
+ * <p>
+ * Hỗ trợ trường trong dấu ngoặc kép (có thể chứa dấu phẩy, xuống dòng và "" để biểu diễn dấu
+ * ngoặc kép), dòng kết thúc bằng CRLF hoặc LF, và bỏ qua BOM UTF-8 ở đầu file. Một bản ghi
+ * dài quá {@value #MAX_RECORD_CHARS} ký tự (thường do thiếu dấu ngoặc đóng) được coi là lỗi
+ * định dạng thay vì đọc hết phần còn lại của file vào bộ nhớ.
+ */
+public class CsvReader implements Closeable {
+
+    // Số ký tự tối đa của một bản ghi
+    public static final int MAX_RECORD_CHARS = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder(64);
+    private int position;
+    private int limit;
+    private boolean started;
+
+    private long line = 1;
+    private long recordLine;
+
+    /**
+     * @param reader Source of the CSV text; closed by {@link #close()}
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record
+     * @return Field values, or null at end of input; blank lines are skipped
+     * @throws IOException if reading fails or the record is malformed
+     */
+    public String[] readRecord() throws IOException {
+        if (!started) {
+            started = true;
+            if (peek() == '\uFEFF') {
+                position++;
+            }
+        }
+
+        int c;
+        // Bỏ qua các dòng trống giữa các bản ghi
+        while ((c = peek()) == '\r' || c == '\n') {
+            consumeLineBreak();
+        }
+        if (c < 0) {
+            return null;
+        }
+
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        int recordChars = 0;
+        field.setLength(0);
+        boolean quoted = false;
+        boolean afterQuote = false;
+
+        while (true) {
+            c = peek();
+            if (c < 0) {
+                if (quoted) {
+                    throw new IOException("Thiếu dấu ngoặc kép đóng cho bản ghi bắt đầu ở dòng " + recordLine);
+                }
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            }
+
+            if (quoted) {
+                position++;
+                if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                position++;
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '\r' || c == '\n') {
+                consumeLineBreak();
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                position++;
+                quoted = true;
+            } else {
+                position++;
+                // Ký tự sau dấu ngoặc đóng (vd. "abc"x) được giữ nguyên như Excel
+                field.append((char) c);
+            }
+
+            if (++recordChars > MAX_RECORD_CHARS) {
+                throw new IOException("Bản ghi bắt đầu ở dòng " + recordLine + " quá dài");
+            }
+        }
+    }
+
+    /**
+     * Line number, starting at 1, on which the last record returned by {@link #readRecord()} began
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private void consumeLineBreak() throws IOException {
+        if (peek() == '\r') {
+            position++;
+            if (peek() == '\n') {
+                position++;
+            }
+        } else {
+            position++;
+        }
+        line++;
+    }
+
+    /**
+     * Helper method to look at the next character without consuming it, refilling the buffer
+     * @return The character, or -1 at end of input
+     */
+    private int peek() throws IOException {
+        if (position >= limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,128 @@
+package app.swing.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ghi file CSV (UTF-8, có BOM để Excel nhận đúng tiếng Việt) thẳng vào một kênh NIO
+ * <p>
+ * Mỗi dòng được mã hóa vào một bộ đệm byte cố định và chỉ ghi ra kênh khi bộ đệm đầy, nên bộ
+ * nhớ dùng không phụ thuộc số dòng. Chuỗi bắt đầu bằng =, +, - hoặc @ được thêm dấu ' ở đầu để
+ * Excel không hiểu nhầm thành công thức.
+ */
+public class CsvWriter implements RowWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * @param channel Channel to write to; closed by {@link #close()}
+     * @param headers Column headers, written as the first row
+     * @throws IOException if writing fails
+     */
+    public CsvWriter(WritableByteChannel channel, String[] headers) throws IOException {
+        this.channel = channel;
+        buffer.put(UTF8_BOM);
+        writeRow(headers);
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendValue(values[i]);
+        }
+        line.append("\r\n");
+        encode(CharBuffer.wrap(line));
+    }
+
+    private void appendValue(Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof BigDecimal) {
+            line.append(((BigDecimal) value).toPlainString());
+            return;
+        }
+        if (value instanceof Number) {
+            line.append(value);
+            return;
+        }
+
+        String text = value.toString();
+        boolean formula = !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0;
+        boolean quote = formula || text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        if (formula) {
+            line.append('\'');
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * Helper method to encode characters into the buffer, draining it to the channel when full
+     */
+    private void encode(CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            while (encoder.encode(CharBuffer.allocate(0), buffer, true).isOverflow()) {
+                drain();
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -90,4 +90,46 @@ public class EnvLoader {
     public static String getEnv(String key) {
         return getEnv(key, null);
     }
+
+    /**
+     * Lấy giá trị biến môi trường dạng số nguyên
+     *
+     * @param key Khóa biến môi trường
+     * @param defaultValue Giá trị mặc định nếu không tìm thấy hoặc không hợp lệ
+     * @return Giá trị số nguyên của biến môi trường
+     */
+    public static int getIntEnv(String key, int defaultValue) {
+        String value = getEnv(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("⚠️ Invalid number for " + key + ": " + value + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Lấy giá trị biến môi trường dạng số nguyên dài
+     *
+     * @param key Khóa biến môi trường
+     * @param defaultValue Giá trị mặc định nếu không tìm thấy hoặc không hợp lệ
+     * @return Giá trị số nguyên dài của biến môi trường
+     */
+    public static long getLongEnv(String key, long defaultValue) {
+        String value = getEnv(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("⚠️ Invalid number for " + key + ": " + value + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
 }
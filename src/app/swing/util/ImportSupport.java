@@ -0,0 +1,115 @@
+package app.swing.util;
+
+import app.swing.model.ImportResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Các hàm dùng chung cho việc nhập file CSV qua bảng tạm
+ * <p>
+ * Đọc dòng tiêu đề và các trường của từng bản ghi theo tên cột, đọc giá trị đúng/sai, và xử lý
+ * bảng tạm sau khi COPY: phân tích thống kê và xóa các dòng không hợp lệ kèm ghi lỗi theo số dòng.
+ */
+public class ImportSupport {
+
+    private ImportSupport() {}
+
+    /**
+     * Map header names to field positions; names are matched case-insensitively and unknown ones ignored
+     * @param header Header record
+     * @param known Accepted column names, lower case
+     * @param required Columns that must be present
+     * @param result Receives an error on line 1 if a required column is missing
+     * @return Column name to position, or null if a required column is missing
+     */
+    public static Map<String, Integer> mapColumns(String[] header, String[] known, String[] required,
+                                                  ImportResult result) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            String name = header[i].trim().toLowerCase(Locale.ROOT);
+            for (String column : known) {
+                if (column.equals(name) && !columns.containsKey(name)) {
+                    columns.put(name, i);
+                }
+            }
+        }
+
+        StringBuilder missing = new StringBuilder();
+        for (String column : required) {
+            if (!columns.containsKey(column)) {
+                missing.append(missing.length() > 0 ? ", " : "").append(column);
+            }
+        }
+        if (missing.length() > 0) {
+            result.addError(1, null, "Thiếu cột bắt buộc: " + missing);
+            return null;
+        }
+        return columns;
+    }
+
+    /**
+     * Read a trimmed field, empty if the column is absent or the record is short
+     */
+    public static String field(String[] record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.length) {
+            return "";
+        }
+        return record[index].trim();
+    }
+
+    /**
+     * Parse a yes/no cell
+     * @return null for an empty cell
+     * @throws IllegalArgumentException if the text is not a recognised value
+     */
+    public static Boolean parseBoolean(String text) {
+        switch (text.toLowerCase(Locale.ROOT)) {
+            case "":
+                return null;
+            case "true":
+            case "1":
+            case "yes":
+            case "có":
+                return Boolean.TRUE;
+            case "false":
+            case "0":
+            case "no":
+            case "không":
+                return Boolean.FALSE;
+            default:
+                throw new IllegalArgumentException("Trạng thái không hợp lệ: " + text);
+        }
+    }
+
+    /**
+     * Gather planner statistics for a staging table after it was filled
+     */
+    public static void analyze(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Bảng tạm không được autovacuum phân tích, cần thống kê để các phép nối sau đó chọn đúng kế hoạch
+            stmt.execute("ANALYZE " + table);
+        }
+    }
+
+    /**
+     * Delete invalid staging rows and record them as errors, in line order
+     * @param sql DELETE ... RETURNING line, key, message
+     */
+    public static void rejectRows(Connection conn, ImportResult result, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "WITH d AS (" + sql + ") SELECT * FROM d ORDER BY 1")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                result.addError(rs.getLong(1), rs.getString(2), rs.getString(3));
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package app.swing.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Ghi từng dòng dữ liệu ra file theo kiểu luồng, không giữ các dòng đã ghi trong bộ nhớ
+ * <p>
+ * Giá trị của một ô có thể là null, {@link Number} hoặc chuỗi; {@link #close()} hoàn tất file
+ * và đóng kênh ghi bên dưới.
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Write one row
+     * @param values Cell values, in column order
+     * @throws IOException if writing fails
+     */
+    void writeRow(Object[] values) throws IOException;
+}
@@ -0,0 +1,222 @@
+package app.swing.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Ghi file Excel (.xlsx) theo kiểu luồng thẳng vào một kênh NIO, không cần thư viện ngoài
+ * <p>
+ * File xlsx là một file zip gồm các phần XML. Mỗi trang tính được ghi và nén ngay khi thêm dòng;
+ * chuỗi được ghi trực tiếp trong ô (inlineStr) thay vì qua bảng chuỗi dùng chung, nên bộ nhớ dùng
+ * không phụ thuộc số dòng. Excel giới hạn {@value #MAX_ROWS_PER_SHEET} dòng mỗi trang tính, khi
+ * đầy sẽ sang trang tính mới có lặp lại dòng tiêu đề. Danh sách trang tính và các phần còn lại
+ * được ghi khi {@link #close()}.
+ */
+public class XlsxWriter implements RowWriter {
+
+    // Số dòng tối đa của một trang tính Excel, kể cả dòng tiêu đề
+    public static final int MAX_ROWS_PER_SHEET = 1_048_576;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final String sheetName;
+    private final String[] headers;
+    private final StringBuilder cell = new StringBuilder(64);
+
+    private int sheetCount;
+    private int rowInSheet;
+
+    /**
+     * @param channel Channel to write to; closed by {@link #close()}
+     * @param sheetName Base name of the worksheets
+     * @param headers Column headers, written as the first row of every worksheet
+     * @throws IOException if writing fails
+     */
+    public XlsxWriter(WritableByteChannel channel, String sheetName, String[] headers) throws IOException {
+        this.zip = new ZipOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), StandardCharsets.UTF_8);
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.sheetName = sheetName;
+        this.headers = headers;
+        startSheet();
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        if (rowInSheet >= MAX_ROWS_PER_SHEET) {
+            endSheet();
+            startSheet();
+        }
+        appendRow(values);
+    }
+
+    private void startSheet() throws IOException {
+        sheetCount++;
+        rowInSheet = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        out.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+        // Cố định dòng tiêu đề khi cuộn
+        out.write("<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" "
+                + "activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>");
+        out.write("<sheetData>");
+        appendRow(headers);
+    }
+
+    private void endSheet() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void appendRow(Object[] values) throws IOException {
+        rowInSheet++;
+        out.write("<row r=\"");
+        out.write(Integer.toString(rowInSheet));
+        out.write("\">");
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            cell.setLength(0);
+            cell.append("<c r=\"");
+            appendColumnName(i);
+            cell.append(rowInSheet);
+            if (value instanceof Number) {
+                cell.append("\"><v>");
+                cell.append(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+                cell.append("</v></c>");
+            } else {
+                cell.append("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                appendEscaped(value.toString());
+                cell.append("</t></is></c>");
+            }
+            out.append(cell);
+        }
+        out.write("</row>");
+    }
+
+    /**
+     * Helper method for the column letters of a zero-based column index (0 -> A, 26 -> AA)
+     */
+    private void appendColumnName(int index) {
+        int start = cell.length();
+        int n = index + 1;
+        while (n > 0) {
+            int rem = (n - 1) % 26;
+            cell.insert(start, (char) ('A' + rem));
+            n = (n - 1) / 26;
+        }
+    }
+
+    /**
+     * Helper method to escape XML text, dropping characters XML 1.0 does not allow
+     */
+    private void appendEscaped(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    cell.append("&amp;");
+                    break;
+                case '<':
+                    cell.append("&lt;");
+                    break;
+                case '>':
+                    cell.append("&gt;");
+                    break;
+                case '"':
+                    cell.append("&quot;");
+                    break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        if (c != 0xFFFE && c != 0xFFFF) {
+                            cell.append(c);
+                        }
+                    }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            endSheet();
+            writeEntry("[Content_Types].xml", contentTypes());
+            writeEntry("_rels/.rels",
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            writeEntry("xl/workbook.xml", workbook());
+            writeEntry("xl/_rels/workbook.xml.rels", workbookRels());
+            out.flush();
+            zip.finish();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        xml.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        xml.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        xml.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        xml.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+               .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        xml.append("</Types>");
+        return xml.toString();
+    }
+
+    private String workbook() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        xml.append("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" ");
+        xml.append("xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheetCount; i++) {
+            String name = sheetCount == 1 ? sheetName : sheetName + " " + i;
+            cell.setLength(0);
+            appendEscaped(name);
+            xml.append("<sheet name=\"").append(cell).append("\" sheetId=\"").append(i)
+               .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        xml.append("</sheets></workbook>");
+        return xml.toString();
+    }
+
+    private String workbookRels() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        xml.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Relationship Id=\"rId").append(i)
+               .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+               .append(i).append(".xml\"/>");
+        }
+        xml.append("</Relationships>");
+        return xml.toString();
+    }
+}
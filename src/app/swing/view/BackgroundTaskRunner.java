@@ -0,0 +1,199 @@
+package app.swing.view;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.Cursor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Chạy các lời gọi service trên luồng nền và trả kết quả về EDT
+ * <p>
+ * Tác vụ có khóa (vd. "load") chỉ có tối đa một lần chạy và một lần chờ: gửi thêm yêu cầu
+ * cùng khóa khi đang chạy sẽ thay thế yêu cầu chờ trước đó và bỏ qua kết quả của lần chạy hiện
+ * tại. Nhờ vậy bấm "Làm mới" liên tục không tạo ra hàng loạt truy vấn. Lần chạy bị thay thế không
+ * bị ngắt (interrupt): ngắt một virtual thread đang chờ socket sẽ đóng socket đó, làm hỏng kết nối
+ * của pool và buộc phải kết nối lại.
+ * Tác vụ ném ngoại lệ thì gọi onError (nếu có) thay cho onDone, để người gọi khôi phục trạng
+ * thái giao diện. Mọi phương thức của lớp phải được gọi trên EDT.
+ */
+public class BackgroundTaskRunner {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final String BUSY_TEXT = "Đang tải...";
+
+    private final Map<String, KeyState> keys = new HashMap<>();
+    private Component busyComponent;
+    private JLabel statusLabel;
+    private String idleText;
+    private int busyCount;
+
+    /**
+     * Show a wait cursor over this component while tasks are running
+     */
+    public void setBusyComponent(Component busyComponent) {
+        this.busyComponent = busyComponent;
+        updateIndicator();
+    }
+
+    /**
+     * Show a loading message in this label while tasks are running
+     */
+    public void setStatusLabel(JLabel statusLabel) {
+        this.statusLabel = statusLabel;
+        this.idleText = statusLabel.getText();
+        updateIndicator();
+    }
+
+    /**
+     * Run a one-off task such as a save or delete
+     * @param work Runs on a background thread
+     * @param onDone Receives the result on the EDT; not called if the task throws
+     */
+    public <T> void execute(Supplier<T> work, Consumer<T> onDone) {
+        execute(work, onDone, null);
+    }
+
+    /**
+     * Run a one-off task such as a save or delete
+     * @param work Runs on a background thread
+     * @param onDone Receives the result on the EDT
+     * @param onError Receives the exception on the EDT if the task throws, e.g. to re-enable a button; may be null
+     */
+    public <T> void execute(Supplier<T> work, Consumer<T> onDone, Consumer<RuntimeException> onError) {
+        start(new Task<>(null, 0, work, onDone, onError));
+    }
+
+    /**
+     * Run a load that supersedes any earlier load submitted with the same key
+     * @param key Identifies the kind of load, e.g. "load" for the main table
+     * @param work Runs on a background thread
+     * @param onDone Receives the result on the EDT, only if no newer load was submitted since
+     */
+    public <T> void submit(String key, Supplier<T> work, Consumer<T> onDone) {
+        submit(key, work, onDone, null);
+    }
+
+    /**
+     * Run a load that supersedes any earlier load submitted with the same key
+     * @param key Identifies the kind of load, e.g. "load" for the main table
+     * @param work Runs on a background thread
+     * @param onDone Receives the result on the EDT, only if no newer load was submitted since
+     * @param onError Receives the exception on the EDT if the task throws and no newer load was submitted since; may be null
+     */
+    public <T> void submit(String key, Supplier<T> work, Consumer<T> onDone, Consumer<RuntimeException> onError) {
+        KeyState state = keys.computeIfAbsent(key, k -> new KeyState());
+        state.latest++;
+        Task<T> task = new Task<>(key, state.latest, work, onDone, onError);
+
+        if (state.running) {
+            // Gộp các yêu cầu liên tiếp: chỉ giữ yêu cầu mới nhất, kết quả lần chạy hiện tại bị bỏ qua
+            state.pending = task;
+            state.active.cancel();
+        } else {
+            start(task);
+        }
+    }
+
+    private <T> void start(Task<T> task) {
+        if (task.key != null) {
+            KeyState state = keys.get(task.key);
+            state.running = true;
+            state.active = task;
+        }
+        busyCount++;
+        updateIndicator();
+
+        EXECUTOR.execute(() -> {
+            T result = null;
+            RuntimeException error = null;
+            try {
+                if (!task.cancelled) {
+                    result = task.work.get();
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                error = e;
+            }
+
+            T finalResult = result;
+            RuntimeException finalError = error;
+            SwingUtilities.invokeLater(() -> finish(task, finalResult, finalError));
+        });
+    }
+
+    private <T> void finish(Task<T> task, T result, RuntimeException error) {
+        busyCount--;
+
+        boolean current = true;
+        if (task.key != null) {
+            KeyState state = keys.get(task.key);
+            state.running = false;
+            state.active = null;
+            current = task.sequence == state.latest;
+            if (state.pending != null) {
+                Task<?> next = state.pending;
+                state.pending = null;
+                start(next);
+            }
+        }
+        updateIndicator();
+
+        if (!current) {
+            return;
+        }
+        if (error == null) {
+            task.onDone.accept(result);
+        } else if (task.onError != null) {
+            task.onError.accept(error);
+        }
+    }
+
+    private void updateIndicator() {
+        boolean busy = busyCount > 0;
+        if (busyComponent != null) {
+            busyComponent.setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+        }
+        if (statusLabel != null) {
+            statusLabel.setText(busy ? BUSY_TEXT : idleText);
+        }
+    }
+
+    private static class KeyState {
+        private boolean running;
+        private long latest;
+        private Task<?> active;
+        private Task<?> pending;
+    }
+
+    private static class Task<T> {
+        private final String key;
+        private final long sequence;
+        private final Supplier<T> work;
+        private final Consumer<T> onDone;
+        private final Consumer<RuntimeException> onError;
+        private volatile boolean cancelled;
+
+        private Task(String key, long sequence, Supplier<T> work, Consumer<T> onDone, Consumer<RuntimeException> onError) {
+            this.key = key;
+            this.sequence = sequence;
+            this.work = work;
+            this.onDone = onDone;
+            this.onError = onError;
+        }
+
+        /**
+         * Skip the work if it has not started yet; work already running finishes and its
+         * result is dropped. The runner is still notified on the EDT so the key is released
+         */
+        private void cancel() {
+            cancelled = true;
+        }
+    }
+}
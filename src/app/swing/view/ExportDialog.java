@@ -0,0 +1,167 @@
+package app.swing.view;
+
+import app.swing.service.ExportService;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hộp thoại xuất dữ liệu ra file CSV/Excel dùng chung cho các màn hình quản lý
+ * <p>
+ * Cho chọn loại dữ liệu (nếu có nhiều loại) và file đích, sau đó xuất ở nền qua
+ * {@link ExportService} và hiện số dòng đã xuất cùng nút hủy. Mọi phương thức phải được gọi
+ * trên EDT.
+ */
+public class ExportDialog {
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JFrame owner;
+    private final ExportService exportService = new ExportService();
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+
+    private ExportDialog(JFrame owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Ask for the data and target file, then export in the background
+     * @param owner Parent window
+     * @param datasets Data the user can choose from; the choice is skipped when there is only one
+     */
+    public static void show(JFrame owner, ExportService.Dataset... datasets) {
+        new ExportDialog(owner).start(datasets);
+    }
+
+    private void start(ExportService.Dataset[] datasets) {
+        ExportService.Dataset dataset = datasets[0];
+        if (datasets.length > 1) {
+            dataset = (ExportService.Dataset) JOptionPane.showInputDialog(owner,
+                "Chọn dữ liệu cần xuất:",
+                "Xuất file",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                datasets,
+                datasets[0]);
+            if (dataset == null) {
+                return;
+            }
+        }
+
+        FileNameExtensionFilter excelFilter = new FileNameExtensionFilter("Excel (*.xlsx)", "xlsx");
+        FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV (*.csv)", "csv");
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Xuất " + dataset.getTitle().toLowerCase());
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.addChoosableFileFilter(excelFilter);
+        chooser.addChoosableFileFilter(csvFilter);
+        chooser.setFileFilter(excelFilter);
+        chooser.setSelectedFile(new File(dataset.getFileName() + "_" + LocalDate.now().format(FILE_DATE) + ".xlsx"));
+
+        if (chooser.showSaveDialog(owner) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        // Định dạng theo phần mở rộng đã gõ, nếu không có thì theo bộ lọc đang chọn
+        File file = chooser.getSelectedFile();
+        String name = file.getName().toLowerCase();
+        ExportService.Format format;
+        if (name.endsWith(".csv")) {
+            format = ExportService.Format.CSV;
+        } else if (name.endsWith(".xlsx")) {
+            format = ExportService.Format.XLSX;
+        } else {
+            format = chooser.getFileFilter() == csvFilter ? ExportService.Format.CSV : ExportService.Format.XLSX;
+            file = new File(file.getParentFile(), file.getName() + "." + format.getExtension());
+        }
+
+        if (file.exists()) {
+            int confirm = JOptionPane.showConfirmDialog(owner,
+                "File \"" + file.getName() + "\" đã tồn tại. Ghi đè?",
+                "Xác nhận",
+                JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
+
+        runExport(dataset, format, file);
+    }
+
+    private void runExport(ExportService.Dataset dataset, ExportService.Format format, File file) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        JDialog dialog = new JDialog(owner, "Đang xuất " + dataset.getTitle().toLowerCase(), false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(10, 10));
+
+        JPanel contentPanel = new JPanel(new BorderLayout(0, 8));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(15, 20, 5, 20));
+        JLabel progressLabel = new JLabel("Đang đọc dữ liệu...");
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        contentPanel.add(progressLabel, BorderLayout.NORTH);
+        contentPanel.add(progressBar, BorderLayout.CENTER);
+
+        JButton cancelButton = new JButton("Hủy");
+        cancelButton.addActionListener(e -> {
+            cancelled.set(true);
+            cancelButton.setEnabled(false);
+            progressLabel.setText("Đang hủy...");
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(cancelButton);
+
+        dialog.add(contentPanel, BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(380, 150);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+
+        taskRunner.execute(() -> exportService.export(dataset, format, file.toPath(), rows -> {
+            if (!cancelled.get()) {
+                SwingUtilities.invokeLater(() -> progressLabel.setText(String.format("Đã xuất %,d dòng...", rows)));
+            }
+            return !cancelled.get();
+        }), rows -> {
+            dialog.dispose();
+            if (cancelled.get()) {
+                return;
+            }
+            if (rows >= 0) {
+                JOptionPane.showMessageDialog(owner,
+                    String.format("Đã xuất %,d dòng ra file %s", rows, file.getName()),
+                    "Thông báo",
+                    JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                showError();
+            }
+        }, e -> {
+            dialog.dispose();
+            showError();
+        });
+    }
+
+    private void showError() {
+        JOptionPane.showMessageDialog(owner,
+            "Không thể xuất file. Vui lòng thử lại!",
+            "Lỗi",
+            JOptionPane.ERROR_MESSAGE);
+    }
+}
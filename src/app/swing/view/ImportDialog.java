@@ -0,0 +1,184 @@
+package app.swing.view;
+
+import app.swing.model.ImportResult;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+
+/**
+ * Hộp thoại nhập dữ liệu hàng loạt từ file CSV dùng chung cho các màn hình quản lý
+ * <p>
+ * Cho chọn file, chạy việc nhập ở nền với số dòng đã đọc và nút hủy, sau đó hiện kết quả gồm
+ * số dòng thêm/cập nhật, tốc độ nhập và danh sách dòng lỗi. Mọi phương thức phải được gọi
+ * trên EDT.
+ */
+public class ImportDialog {
+
+    /**
+     * Việc nhập một file, chạy trên luồng nền
+     */
+    @FunctionalInterface
+    public interface ImportTask {
+        /**
+         * @param file File chosen by the user
+         * @param listener Receives the number of rows read; returns false when the user cancelled
+         * @return Import result, null on error or cancel
+         */
+        ImportResult run(Path file, LongPredicate listener);
+    }
+
+    private final JFrame owner;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+
+    private ImportDialog(JFrame owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Ask for a CSV file, then import it in the background
+     * @param owner Parent window
+     * @param title What is being imported, e.g. "sản phẩm"
+     * @param task Does the import
+     * @param onImported Called on the EDT after rows were imported, e.g. to reload the table; may be null
+     */
+    public static void show(JFrame owner, String title, ImportTask task, Runnable onImported) {
+        new ImportDialog(owner).start(title, task, onImported);
+    }
+
+    private void start(String title, ImportTask task, Runnable onImported) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Nhập " + title + " từ file CSV");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV (*.csv)", "csv"));
+
+        if (chooser.showOpenDialog(owner) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        runImport(title, task, chooser.getSelectedFile(), onImported);
+    }
+
+    private void runImport(String title, ImportTask task, File file, Runnable onImported) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        JDialog dialog = new JDialog(owner, "Đang nhập " + title, false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(10, 10));
+
+        JPanel contentPanel = new JPanel(new BorderLayout(0, 8));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(15, 20, 5, 20));
+        JLabel progressLabel = new JLabel("Đang đọc file...");
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        contentPanel.add(progressLabel, BorderLayout.NORTH);
+        contentPanel.add(progressBar, BorderLayout.CENTER);
+
+        JButton cancelButton = new JButton("Hủy");
+        cancelButton.addActionListener(e -> {
+            cancelled.set(true);
+            cancelButton.setEnabled(false);
+            progressLabel.setText("Đang hủy...");
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(cancelButton);
+
+        dialog.add(contentPanel, BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(380, 150);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+
+        taskRunner.execute(() -> task.run(file.toPath(), rows -> {
+            if (!cancelled.get()) {
+                SwingUtilities.invokeLater(() -> progressLabel.setText(String.format("Đã đọc %,d dòng...", rows)));
+            }
+            return !cancelled.get();
+        }), result -> {
+            dialog.dispose();
+            if (cancelled.get()) {
+                // Các lô đã commit trước khi hủy vẫn được giữ lại
+                if (onImported != null) {
+                    onImported.run();
+                }
+                return;
+            }
+            if (result == null) {
+                showError();
+                return;
+            }
+            if (onImported != null && result.getInsertedRows() + result.getUpdatedRows() > 0) {
+                onImported.run();
+            }
+            showResult(title, file, result);
+        }, e -> {
+            dialog.dispose();
+            showError();
+        });
+    }
+
+    private void showError() {
+        JOptionPane.showMessageDialog(owner,
+            "Không thể nhập file. Vui lòng thử lại!",
+            "Lỗi",
+            JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void showResult(String title, File file, ImportResult result) {
+        String resumed = result.getResumedFromLine() > 0
+                ? String.format("Tiếp tục sau dòng %,d của lần nhập trước<br>", result.getResumedFromLine())
+                : "";
+        String summary = String.format("<html>File %s: đọc %,d dòng<br>%s"
+                + "Thêm mới %,d, cập nhật %,d, bỏ qua %,d dòng lỗi<br>"
+                + "Thời gian %,.1f giây (%,.0f dòng/giây)</html>",
+                file.getName(), result.getTotalRows(), resumed, result.getInsertedRows(), result.getUpdatedRows(),
+                result.getErrorCount(), result.getElapsedMs() / 1000.0, result.getRowsPerSecond());
+
+        if (result.getErrorCount() == 0) {
+            JOptionPane.showMessageDialog(owner, new JLabel(summary), "Nhập " + title, JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        List<ImportResult.RowError> errors = new ArrayList<>(result.getErrors());
+        errors.sort(Comparator.comparingLong(ImportResult.RowError::getLine));
+        StringBuilder text = new StringBuilder();
+        for (ImportResult.RowError error : errors) {
+            text.append(error).append('\n');
+        }
+        if (result.getErrorCount() > errors.size()) {
+            text.append(String.format("... và %,d dòng lỗi khác%n", result.getErrorCount() - errors.size()));
+        }
+
+        JTextArea errorArea = new JTextArea(text.toString());
+        errorArea.setEditable(false);
+        errorArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        errorArea.setCaretPosition(0);
+        JScrollPane scrollPane = new JScrollPane(errorArea);
+        scrollPane.setPreferredSize(new Dimension(560, 260));
+
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(new JLabel(summary), BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JOptionPane.showMessageDialog(owner, panel, "Nhập " + title, JOptionPane.WARNING_MESSAGE);
+    }
+}
@@ -0,0 +1,352 @@
+package app.swing.view;
+
+import app.swing.model.Page;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Table model ảo: chỉ giữ trong bộ nhớ những trang dữ liệu mà người dùng đang xem
+ * <p>
+ * Số dòng lấy từ {@link DataSource#count()}, còn nội dung từng trang được tải nền khi bảng
+ * vẽ tới dòng đó. Các trang ít dùng nhất bị loại khỏi cache khi vượt quá giới hạn; trang tải
+ * lỗi không được cache, các dòng của nó hiện thông báo lỗi và sau một khoảng chờ tăng dần được
+ * vẽ lại, nên trang được tải lại nếu vẫn đang hiển thị. Mọi trạng thái của model chỉ được truy
+ * cập trên EDT; luồng nền chỉ gọi tới data source.
+ */
+public class LazyTableModel<T> extends AbstractTableModel {
+
+    /**
+     * Nguồn dữ liệu của bảng, thường là các hàm phân trang của service
+     */
+    public interface DataSource<T> {
+        int count();
+
+        Page<T> fetchAfter(String pageToken, int pageSize);
+
+        Page<T> fetchAt(int offset, int pageSize);
+    }
+
+    // Dùng chung cho mọi model; mỗi model chỉ chạy một yêu cầu tại một thời điểm
+    private static final ExecutorService LOADER = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Chữ hiển thị ở cột đầu tiên khi dòng chưa được tải
+    private static final String LOADING_TEXT = "...";
+
+    // Chữ hiển thị ở cột đầu tiên khi trang tải lỗi và đang chờ tải lại
+    private static final String FAILED_TEXT = "Lỗi tải, đang thử lại...";
+
+    // Khoảng chờ trước lần tải lại đầu tiên của trang lỗi, nhân đôi sau mỗi lần lỗi tiếp theo
+    private static final int RETRY_BASE_DELAY_MS = 1_000;
+    private static final int RETRY_MAX_DELAY_MS = 30_000;
+
+    private final String[] columns;
+    private final Function<T, Object[]> rowMapper;
+    private final int pageSize;
+    private final int maxCachedPages;
+    private final Map<Integer, LoadedPage<T>> pages;
+    // Token bắt đầu của từng trang, để trang kế tiếp dùng keyset thay vì OFFSET
+    private final Map<Integer, String> pageTokens = new HashMap<>();
+    private final Set<Integer> pendingPages = new HashSet<>();
+    // Số lần lỗi liên tiếp của các trang tải lỗi; trang đang chờ tải lại nằm trong retryPages
+    private final Map<Integer, Integer> failedAttempts = new HashMap<>();
+    private final Set<Integer> retryPages = new HashSet<>();
+    // Yêu cầu mới nhất nằm ở đầu hàng đợi, ưu tiên vùng người dùng vừa cuộn tới
+    private final LinkedBlockingDeque<PageRequest> requests = new LinkedBlockingDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private DataSource<T> dataSource;
+    private int rowCount;
+    // Tăng mỗi lần đổi nguồn dữ liệu; kết quả của thế hệ cũ bị bỏ qua
+    private int generation;
+
+    public LazyTableModel(String[] columns, Function<T, Object[]> rowMapper, int pageSize, int maxCachedPages) {
+        this.columns = columns;
+        this.rowMapper = rowMapper;
+        this.pageSize = pageSize;
+        this.maxCachedPages = maxCachedPages;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LoadedPage<T>> eldest) {
+                return size() > LazyTableModel.this.maxCachedPages;
+            }
+        };
+    }
+
+    /**
+     * Replace the data source and reload the row count; cached pages are dropped
+     */
+    public void setDataSource(DataSource<T> dataSource) {
+        this.dataSource = dataSource;
+        refresh();
+    }
+
+    /**
+     * Drop all cached pages and reload the row count from the current data source
+     */
+    public void refresh() {
+        generation++;
+        pages.clear();
+        pageTokens.clear();
+        pendingPages.clear();
+        failedAttempts.clear();
+        retryPages.clear();
+        requests.clear();
+        rowCount = 0;
+        fireTableDataChanged();
+
+        if (dataSource == null) {
+            return;
+        }
+
+        DataSource<T> source = dataSource;
+        int requestGeneration = generation;
+        requests.offerFirst(new PageRequest(-1, () -> {
+            int count = source.count();
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == generation) {
+                    rowCount = count;
+                    fireTableDataChanged();
+                }
+            });
+        }));
+        scheduleRequests();
+    }
+
+    /**
+     * Get the entity behind a row
+     * @param row Model row index
+     * @return Entity, or null if its page is not loaded yet
+     */
+    public T getRow(int row) {
+        LoadedPage<T> page = getPage(row);
+        int index = row % pageSize;
+        return page != null && index < page.items.size() ? page.items.get(index) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        LoadedPage<T> page = getPage(row);
+        int index = row % pageSize;
+        if (page == null || index >= page.rows.length) {
+            if (column != 0) {
+                return null;
+            }
+            return retryPages.contains(row / pageSize) ? FAILED_TEXT : LOADING_TEXT;
+        }
+        return page.rows[index][column];
+    }
+
+    private LoadedPage<T> getPage(int row) {
+        LoadedPage<T> page = pages.get(row / pageSize);
+        if (page == null) {
+            requestPage(row / pageSize);
+        }
+        return page;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (dataSource == null || retryPages.contains(pageIndex) || !pendingPages.add(pageIndex)) {
+            return;
+        }
+
+        DataSource<T> source = dataSource;
+        int requestGeneration = generation;
+        String token = pageTokens.get(pageIndex);
+        requests.offerFirst(new PageRequest(pageIndex, () -> {
+            Page<T> page = null;
+            try {
+                if (pageIndex == 0) {
+                    page = source.fetchAfter(null, pageSize);
+                } else if (token != null) {
+                    page = source.fetchAfter(token, pageSize);
+                } else {
+                    page = source.fetchAt(pageIndex * pageSize, pageSize);
+                }
+            } finally {
+                // Luôn báo về EDT để trang lỗi được bỏ khỏi danh sách đang tải và có thể tải lại
+                Page<T> loaded = page;
+                SwingUtilities.invokeLater(() -> pageLoaded(pageIndex, requestGeneration, loaded));
+            }
+        }));
+
+        // Người dùng cuộn nhanh qua nhiều trang: bỏ các yêu cầu cũ nhất chưa chạy
+        while (requests.size() > maxCachedPages) {
+            PageRequest dropped = requests.pollLast();
+            if (dropped == null) {
+                break;
+            }
+            if (dropped.pageIndex < 0) {
+                // Giữ lại yêu cầu đếm số dòng
+                requests.offerLast(dropped);
+                break;
+            }
+            pendingPages.remove(dropped.pageIndex);
+        }
+        scheduleRequests();
+    }
+
+    private void pageLoaded(int pageIndex, int requestGeneration, Page<T> page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+
+        pendingPages.remove(pageIndex);
+        if (page == null || page.isFailed()) {
+            scheduleRetry(pageIndex);
+            return;
+        }
+        failedAttempts.remove(pageIndex);
+        pages.put(pageIndex, new LoadedPage<>(page.getItems(), rowMapper));
+        if (page.hasMore()) {
+            pageTokens.put(pageIndex + 1, page.getNextToken());
+        }
+        firePageUpdated(pageIndex);
+    }
+
+    /**
+     * Show the failed page as failed, then repaint it after a growing delay so it is fetched
+     * again if it is still on screen
+     */
+    private void scheduleRetry(int pageIndex) {
+        int attempts = failedAttempts.merge(pageIndex, 1, Integer::sum);
+        long delay = Math.min((long) RETRY_BASE_DELAY_MS << Math.min(attempts - 1, 16), RETRY_MAX_DELAY_MS);
+        retryPages.add(pageIndex);
+        firePageUpdated(pageIndex);
+
+        int retryGeneration = generation;
+        Timer timer = new Timer((int) delay, e -> {
+            if (retryGeneration == generation && retryPages.remove(pageIndex)) {
+                firePageUpdated(pageIndex);
+            }
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    private void firePageUpdated(int pageIndex) {
+        int firstRow = pageIndex * pageSize;
+        int lastRow = Math.min(firstRow + pageSize, rowCount) - 1;
+        if (firstRow <= lastRow) {
+            fireTableRowsUpdated(firstRow, lastRow);
+        }
+    }
+
+    private void scheduleRequests() {
+        if (draining.compareAndSet(false, true)) {
+            LOADER.execute(this::processRequests);
+        }
+    }
+
+    private void processRequests() {
+        do {
+            PageRequest request;
+            while ((request = requests.pollFirst()) != null) {
+                try {
+                    request.task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            draining.set(false);
+            // Yêu cầu được thêm ngay sau vòng lặp trên mà chưa có ai xử lý
+        } while (!requests.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Data source over a query that returns the whole result at once, e.g. search results.
+     * The query runs on the loader thread when the row count is requested.
+     */
+    public static <T> DataSource<T> fromQuery(Supplier<List<T>> query) {
+        return new DataSource<T>() {
+            private volatile List<T> items = Collections.emptyList();
+
+            @Override
+            public int count() {
+                items = query.get();
+                return items.size();
+            }
+
+            @Override
+            public Page<T> fetchAfter(String pageToken, int pageSize) {
+                int offset = pageToken != null ? Integer.parseInt(Page.decodeToken(pageToken, 1)[0]) : 0;
+                return fetchAt(offset, pageSize);
+            }
+
+            @Override
+            public Page<T> fetchAt(int offset, int pageSize) {
+                List<T> current = items;
+                int end = Math.min(offset + pageSize, current.size());
+                if (offset >= end) {
+                    return Page.empty();
+                }
+                String nextToken = end < current.size() ? Page.encodeToken(String.valueOf(end)) : null;
+                return new Page<>(current.subList(offset, end), nextToken);
+            }
+        };
+    }
+
+    private static class PageRequest {
+        private final int pageIndex;
+        private final Runnable task;
+
+        private PageRequest(int pageIndex, Runnable task) {
+            this.pageIndex = pageIndex;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Một trang đã tải, kèm giá trị các ô đã được chuyển đổi sẵn để vẽ bảng
+     */
+    private static class LoadedPage<T> {
+        private final List<T> items;
+        private final Object[][] rows;
+
+        private LoadedPage(List<T> items, Function<T, Object[]> rowMapper) {
+            this.items = items;
+            this.rows = new Object[items.size()][];
+            for (int i = 0; i < items.size(); i++) {
+                rows[i] = rowMapper.apply(items.get(i));
+            }
+        }
+    }
+}
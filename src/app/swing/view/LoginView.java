@@ -26,6 +26,7 @@ public class LoginView extends JFrame {
     private JButton loginButton;
     private JLabel messageLabel;
     private UserService userService;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
 
     public LoginView() {
         this.userService = new UserService();
@@ -201,9 +202,7 @@ public class LoginView extends JFrame {
         showMessage("Đang xác thực...", Color.BLUE);
 
         // Perform authentication in background thread
-        SwingUtilities.invokeLater(() -> {
-            UserService.AuthResult result = userService.authenticate(username, password);
-
+        taskRunner.execute(() -> userService.authenticate(username, password), result -> {
             switch (result.getResult()) {
                 case SUCCESS:
                     User user = result.getUser();
@@ -235,6 +234,10 @@ public class LoginView extends JFrame {
             // Reset button
             loginButton.setEnabled(true);
             loginButton.setText("Đăng nhập");
+        }, e -> {
+            showMessage("Có lỗi xảy ra: " + e.getMessage(), Color.RED);
+            loginButton.setEnabled(true);
+            loginButton.setText("Đăng nhập");
         });
     }
 
@@ -0,0 +1,111 @@
+package app.swing.view;
+
+import app.swing.model.Page;
+
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tải dữ liệu bảng theo từng trang khi người dùng cuộn gần cuối danh sách
+ */
+public class PagedTableLoader<T> {
+
+    /**
+     * Hàm lấy một trang dữ liệu từ service
+     */
+    public interface PageFetcher<T> {
+        Page<T> fetch(String pageToken);
+    }
+
+    // Bắt đầu tải trang kế tiếp khi còn cách cuối danh sách ít hơn số pixel này
+    private static final int LOAD_THRESHOLD_PX = 200;
+
+    private static final String LOAD_KEY = "page";
+
+    private final JScrollPane scrollPane;
+    private final BackgroundTaskRunner taskRunner;
+    private final PageFetcher<T> defaultFetcher;
+    private PageFetcher<T> fetcher;
+    private final Consumer<List<T>> rowAppender;
+    private String nextToken;
+    private boolean hasMore;
+    private boolean loading;
+
+    public PagedTableLoader(JScrollPane scrollPane, BackgroundTaskRunner taskRunner,
+                            PageFetcher<T> fetcher, Consumer<List<T>> rowAppender) {
+        this.scrollPane = scrollPane;
+        this.taskRunner = taskRunner;
+        this.defaultFetcher = fetcher;
+        this.fetcher = fetcher;
+        this.rowAppender = rowAppender;
+
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && isNearBottom()) {
+                loadNextPage();
+            }
+        });
+    }
+
+    /**
+     * Start over from the first page; the caller clears the table beforehand.
+     * A page still loading for the previous listing is discarded.
+     */
+    public void reset() {
+        reset(defaultFetcher);
+    }
+
+    /**
+     * Start over from the first page of another listing, e.g. server-side search results;
+     * {@link #reset()} goes back to the listing given to the constructor
+     * @param fetcher Fetches the pages of the new listing
+     */
+    public void reset(PageFetcher<T> fetcher) {
+        this.fetcher = fetcher;
+        nextToken = null;
+        hasMore = true;
+        loading = false;
+        loadNextPage();
+    }
+
+    /**
+     * Fetch and append the next page, if any
+     */
+    public void loadNextPage() {
+        if (!hasMore || loading) {
+            return;
+        }
+
+        loading = true;
+        String token = nextToken;
+        PageFetcher<T> currentFetcher = fetcher;
+        taskRunner.submit(LOAD_KEY, () -> currentFetcher.fetch(token), page -> {
+            loading = false;
+            if (page.isFailed()) {
+                // Giữ nguyên token để lần cuộn sau tải lại trang này
+                return;
+            }
+            rowAppender.accept(page.getItems());
+            nextToken = page.getNextToken();
+            hasMore = page.hasMore();
+
+            // Trang đầu chưa lấp đầy khung nhìn thì không có thanh cuộn để kích hoạt, tải tiếp
+            SwingUtilities.invokeLater(() -> {
+                if (hasMore && isNearBottom()) {
+                    loadNextPage();
+                }
+            });
+        }, e -> loading = false);
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    private boolean isNearBottom() {
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        return bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - LOAD_THRESHOLD_PX;
+    }
+}
@@ -0,0 +1,69 @@
+package app.swing.view;
+
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.util.function.Consumer;
+
+/**
+ * Gom các lần gõ phím vào ô tìm kiếm thành một lần tìm
+ * <p>
+ * Mỗi thay đổi nội dung khởi động lại bộ hẹn giờ; chỉ khi người dùng ngừng gõ
+ * {@link #DELAY_MS} thì hàm tìm kiếm mới được gọi, và chỉ khi từ khóa khác lần trước. Nhấn
+ * Enter thì tìm ngay. Mọi lời gọi đều chạy trên EDT.
+ */
+public class SearchDebouncer {
+
+    // Thời gian chờ sau lần gõ cuối cùng trước khi tìm
+    private static final int DELAY_MS = 300;
+
+    private final JTextField field;
+    private final Consumer<String> onSearch;
+    private final Timer timer;
+    private String lastText = "";
+
+    private SearchDebouncer(JTextField field, Consumer<String> onSearch) {
+        this.field = field;
+        this.onSearch = onSearch;
+        this.timer = new Timer(DELAY_MS, e -> fire());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Attach a debounced search to a text field
+     * @param field Search field
+     * @param onSearch Receives the trimmed search text on the EDT
+     * @return The debouncer
+     */
+    public static SearchDebouncer install(JTextField field, Consumer<String> onSearch) {
+        SearchDebouncer debouncer = new SearchDebouncer(field, onSearch);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debouncer.timer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debouncer.timer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debouncer.timer.restart();
+            }
+        });
+        field.addActionListener(e -> debouncer.fire());
+        return debouncer;
+    }
+
+    private void fire() {
+        timer.stop();
+        String text = field.getText().trim();
+        if (!text.equals(lastText)) {
+            lastText = text;
+            onSearch.accept(text);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package app.swing.view;
+
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+/**
+ * Bộ lọc dòng tìm chuỗi con không phân biệt hoa thường trên một số cột của bảng
+ * <p>
+ * Thay cho RowFilter.regexFilter: từ khóa được chuẩn bị một lần khi tạo bộ lọc, không biên
+ * dịch biểu thức chính quy, và chỉ các cột chứa chữ được tìm mới bị kiểm tra.
+ */
+public class TextRowFilter extends RowFilter<TableModel, Integer> {
+
+    private final String needle;
+    private final int[] columns;
+
+    private TextRowFilter(String needle, int[] columns) {
+        this.needle = needle;
+        this.columns = columns;
+    }
+
+    /**
+     * Create a filter for the given text
+     * @param text Search text
+     * @param columns Model column indexes to search
+     * @return The filter, or null to show every row when the text is blank
+     */
+    public static TextRowFilter of(String text, int... columns) {
+        String trimmed = text == null ? "" : text.trim();
+        return trimmed.isEmpty() ? null : new TextRowFilter(trimmed, columns);
+    }
+
+    @Override
+    public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+        for (int column : columns) {
+            Object value = entry.getValue(column);
+            if (value != null && containsIgnoreCase(value.toString(), needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        int last = haystack.length() - needle.length();
+        for (int i = 0; i <= last; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
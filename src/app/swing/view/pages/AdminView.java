@@ -1,9 +1,9 @@
 package app.swing.view.pages;
 
 import app.swing.model.User;
+import app.swing.model.DashboardStats;
 import app.swing.model.Supplier;
 import app.swing.model.Category;
-import app.swing.model.Product;
 import app.swing.model.Customer;
 import app.swing.model.InventoryMovement;
 import app.swing.service.UserService;
@@ -12,8 +12,9 @@ import app.swing.service.CategoryService;
 import app.swing.service.ProductService;
 import app.swing.service.CustomerService;
 import app.swing.service.InventoryMovementService;
-import app.swing.service.OrderService;
+import app.swing.service.DashboardStatsCache;
 import app.swing.util.SessionManager;
+import app.swing.view.BackgroundTaskRunner;
 import app.swing.view.LoginView;
 import app.swing.view.pages.UserManagementView;
 import app.swing.view.pages.SupplierManagementView;
@@ -37,7 +38,11 @@ import javax.swing.table.TableRowSorter;
 import java.awt.geom.*;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -68,6 +73,18 @@ public class AdminView extends JFrame {
     private CustomerService customerService;
     private InventoryMovementService inventoryMovementService;
 
+    // Chu kỳ (ms) cập nhật nhãn độ cũ và kiểm tra bản chụp số liệu mới
+    private static final int STATS_AGE_TICK_MS = 1000;
+
+    private final DashboardStatsCache dashboardStatsCache = DashboardStatsCache.getInstance();
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    // Nhãn giá trị của các thẻ thống kê, theo tiêu đề thẻ
+    private final Map<String, JLabel> statsValueLabels = new HashMap<>();
+    // Nhãn hiển thị độ cũ của số liệu và bản chụp số liệu đang hiển thị
+    private final JLabel statsAgeLabel = new JLabel(" ");
+    private DashboardStats shownStats;
+    private Timer statsAgeTimer;
+
     public AdminView(User user) {
         this.currentUser = user;
         // Khởi tạo các services
@@ -540,6 +557,11 @@ public class AdminView extends JFrame {
 
         contentPanel.add(scrollPane, BorderLayout.CENTER);
 
+        // Statistics are filled in once loaded, then follow the background refreshes
+        taskRunner.setBusyComponent(contentPanel);
+        loadDashboardStats(false, null);
+        startStatsAgeTimer();
+
         return contentPanel;
     }
 
@@ -610,6 +632,10 @@ public class AdminView extends JFrame {
         refreshButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
         refreshButton.addActionListener(e -> refreshDashboard());
 
+        statsAgeLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        statsAgeLabel.setForeground(new Color(120, 120, 120));
+
+        rightPanel.add(statsAgeLabel);
         rightPanel.add(refreshButton);
         dashboardHeader.add(rightPanel, BorderLayout.EAST);
 
@@ -621,16 +647,10 @@ public class AdminView extends JFrame {
         statsPanel.setBackground(new Color(245, 245, 245));
         statsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
 
-        // Get real statistics from database
-        int userCount = getUserCount();
-        int orderCount = getOrderCount();
-        int productCount = getProductCount();
-        int customerCount = getCustomerCount();
-
-        statsPanel.add(createStatsCard("Tổng Người Dùng", String.valueOf(userCount), new Color(70, 130, 180)));
-        statsPanel.add(createStatsCard("Tổng Đơn Hàng", String.valueOf(orderCount), new Color(60, 179, 113)));
-        statsPanel.add(createStatsCard("Tổng Sản Phẩm", String.valueOf(productCount), new Color(255, 165, 0)));
-        statsPanel.add(createStatsCard("Tổng Khách Hàng", String.valueOf(customerCount), new Color(220, 20, 60)));
+        statsPanel.add(createStatsCard("Tổng Người Dùng", "...", new Color(70, 130, 180)));
+        statsPanel.add(createStatsCard("Tổng Đơn Hàng", "...", new Color(60, 179, 113)));
+        statsPanel.add(createStatsCard("Tổng Sản Phẩm", "...", new Color(255, 165, 0)));
+        statsPanel.add(createStatsCard("Tổng Khách Hàng", "...", new Color(220, 20, 60)));
 
         return statsPanel;
     }
@@ -640,14 +660,9 @@ public class AdminView extends JFrame {
         statsPanel.setBackground(new Color(245, 245, 245));
         statsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
 
-        // Get additional statistics
-        int pendingOrders = getPendingOrderCount();
-        int activeSuppliers = getActiveSupplierCount();
-        int lowStockProducts = getLowStockProductCount();
-
-        statsPanel.add(createStatsCard("Đơn Chờ Xử Lý", String.valueOf(pendingOrders), new Color(255, 193, 7)));
-        statsPanel.add(createStatsCard("Nhà Cung Cấp", String.valueOf(activeSuppliers), new Color(108, 117, 125)));
-        statsPanel.add(createStatsCard("Sản Phẩm Sắp Hết", String.valueOf(lowStockProducts), new Color(220, 53, 69)));
+        statsPanel.add(createStatsCard("Đơn Chờ Xử Lý", "...", new Color(255, 193, 7)));
+        statsPanel.add(createStatsCard("Nhà Cung Cấp", "...", new Color(108, 117, 125)));
+        statsPanel.add(createStatsCard("Sản Phẩm Sắp Hết", "...", new Color(220, 53, 69)));
 
         return statsPanel;
     }
@@ -659,81 +674,77 @@ public class AdminView extends JFrame {
     }
 
     private void refreshDashboard() {
-        // Show loading indicator
-        SwingUtilities.invokeLater(() -> {
-            // Remove current dashboard and add new one
-            contentArea.remove(contentArea.getComponent(0)); // Remove old dashboard
-            contentArea.add(createDashboardPanel(), DASHBOARD_VIEW, 0); // Add new dashboard at index 0
-            contentCardLayout.show(contentArea, DASHBOARD_VIEW);
-            contentArea.revalidate();
-            contentArea.repaint();
-
-            // Show success message briefly
-            JOptionPane.showMessageDialog(this,
-                "Dashboard đã được cập nhật!",
-                "Thông báo",
-                JOptionPane.INFORMATION_MESSAGE);
-        });
-    }
+        contentCardLayout.show(contentArea, DASHBOARD_VIEW);
 
-    // Statistics helper methods
-    private int getUserCount() {
-        try {
-            return userService.getAllUsers().size();
-        } catch (Exception e) {
-            return 0;
-        }
+        // Show success message once the new numbers are in
+        loadDashboardStats(true, () -> JOptionPane.showMessageDialog(this,
+            "Dashboard đã được cập nhật!",
+            "Thông báo",
+            JOptionPane.INFORMATION_MESSAGE));
     }
 
-    private int getOrderCount() {
-        try {
-            return new OrderService().getAllOrders().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Load the dashboard statistics from the stats cache in the background and update the cards
+     * @param forceRefresh Re-query the database instead of using the cached snapshot
+     * @param onLoaded Called on the EDT after the cards are updated, may be null
+     */
+    private void loadDashboardStats(boolean forceRefresh, Runnable onLoaded) {
+        taskRunner.submit("stats",
+            () -> forceRefresh ? dashboardStatsCache.refreshNow() : dashboardStatsCache.getSnapshot(),
+            stats -> {
+                showDashboardStats(stats);
+
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            });
     }
 
-    private int getProductCount() {
-        try {
-            return productService.getAllProducts().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Show a stats snapshot on the cards and remember it for the age label
+     */
+    private void showDashboardStats(DashboardStats stats) {
+        setStatsValue("Tổng Người Dùng", stats.getUserCount());
+        setStatsValue("Tổng Đơn Hàng", stats.getOrderCount());
+        setStatsValue("Tổng Sản Phẩm", stats.getProductCount());
+        setStatsValue("Tổng Khách Hàng", stats.getCustomerCount());
+        setStatsValue("Đơn Chờ Xử Lý", stats.getPendingOrderCount());
+        setStatsValue("Nhà Cung Cấp", stats.getSupplierCount());
+        setStatsValue("Sản Phẩm Sắp Hết", stats.getLowStockProductCount());
+        shownStats = stats;
+        updateStatsAge();
     }
 
-    private int getCustomerCount() {
-        try {
-            return customerService.getAllCustomers().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Pick up snapshots refreshed in the background and keep the age label current
+     */
+    private void startStatsAgeTimer() {
+        statsAgeTimer = new Timer(STATS_AGE_TICK_MS, e -> {
+            DashboardStats latest = dashboardStatsCache.peekSnapshot();
+            if (latest != null && latest != shownStats) {
+                showDashboardStats(latest);
+            } else {
+                updateStatsAge();
+            }
+        });
+        statsAgeTimer.start();
     }
 
-    private int getPendingOrderCount() {
-        try {
-            return (int) new OrderService().getAllOrders().stream()
-                .filter(order -> "pending".equals(order.getStatus()))
-                .count();
-        } catch (Exception e) {
-            return 0;
+    private void updateStatsAge() {
+        if (shownStats == null || shownStats.getRefreshedAt() == null) {
+            statsAgeLabel.setText(" ");
+            return;
         }
-    }
 
-    private int getActiveSupplierCount() {
-        try {
-            return supplierService.getAllSuppliers().size();
-        } catch (Exception e) {
-            return 0;
-        }
+        long seconds = Math.max(0, Duration.between(shownStats.getRefreshedAt(), LocalDateTime.now()).getSeconds());
+        String age = seconds < 60 ? seconds + " giây" : (seconds / 60) + " phút";
+        statsAgeLabel.setText("Cập nhật " + age + " trước");
     }
 
-    private int getLowStockProductCount() {
-        try {
-            return (int) productService.getAllProducts().stream()
-                .filter(Product::isLowStock)
-                .count();
-        } catch (Exception e) {
-            return 0;
+    private void setStatsValue(String title, int value) {
+        JLabel valueLabel = statsValueLabels.get(title);
+        if (valueLabel != null) {
+            valueLabel.setText(String.valueOf(value));
         }
     }
 
@@ -771,6 +782,7 @@ public class AdminView extends JFrame {
         valueLabel.setForeground(color);
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         centerPanel.add(valueLabel);
+        statsValueLabels.put(title, valueLabel);
 
         card.add(centerPanel, BorderLayout.CENTER);
 
@@ -843,4 +855,13 @@ public class AdminView extends JFrame {
             new LoginView().setVisible(true);
         }
     }
+
+    @Override
+    public void dispose() {
+        // Timer của Swing giữ tham chiếu tới cửa sổ và vẫn chạy sau khi cửa sổ đóng nếu không dừng
+        if (statsAgeTimer != null) {
+            statsAgeTimer.stop();
+        }
+        super.dispose();
+    }
 }
@@ -2,6 +2,7 @@ package app.swing.view.pages;
 
 import app.swing.model.Category;
 import app.swing.service.CategoryService;
+import app.swing.view.BackgroundTaskRunner;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -17,6 +18,7 @@ import java.awt.event.MouseEvent;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Giao diện quản lý danh mục
@@ -39,6 +41,7 @@ public class CategoryManagementView extends JFrame {
     private JToggleButton treeViewButton;
     private JToggleButton tableViewButton;
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
 
     public CategoryManagementView() {
         this.categoryService = new CategoryService();
@@ -457,6 +460,7 @@ public class CategoryManagementView extends JFrame {
         JScrollPane scrollPane = new JScrollPane(categoryTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -476,20 +480,23 @@ public class CategoryManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
 
     private void loadCategoryData() {
+        // Get all categories in the background; a newer refresh supersedes this one
+        taskRunner.submit("load", categoryService::getAllCategories, this::showCategories);
+    }
+
+    private void showCategories(List<Category> categories) {
         // Clear table and tree
         tableModel.setRowCount(0);
         categoryNodeMap.clear();
         DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
         root.removeAllChildren();
 
-        // Get all categories
-        List<Category> categories = categoryService.getAllCategories();
-
         // First add all categories to map
         for (Category category : categories) {
             DefaultMutableTreeNode categoryNode = new DefaultMutableTreeNode(category);
@@ -526,6 +533,11 @@ public class CategoryManagementView extends JFrame {
     }
 
     private void showAddCategoryDialog() {
+        // Load parent category choices first
+        taskRunner.execute(categoryService::getAllCategories, this::showAddCategoryDialog);
+    }
+
+    private void showAddCategoryDialog(List<Category> allCategories) {
         // Create dialog
         JDialog dialog = new JDialog(this, "Thêm danh mục mới", true);
         dialog.setSize(500, 350);
@@ -561,7 +573,6 @@ public class CategoryManagementView extends JFrame {
         gbc.gridy = 1;
 
         // Create combobox with all categories
-        List<Category> allCategories = categoryService.getAllCategories();
         DefaultComboBoxModel<Object> comboModel = new DefaultComboBoxModel<>();
         comboModel.addElement("-- Không có --");
         for (Category cat : allCategories) {
@@ -622,15 +633,6 @@ public class CategoryManagementView extends JFrame {
                 return;
             }
 
-            // Check if name exists
-            if (categoryService.nameExists(name, null)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên danh mục đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Create category
             Category category = new Category();
             category.setName(name);
@@ -643,21 +645,32 @@ public class CategoryManagementView extends JFrame {
 
             category.setDescription(descriptionArea.getText().trim());
 
-            boolean success = categoryService.createCategory(category);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm danh mục thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadCategoryData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm danh mục. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if name exists
+                if (categoryService.nameExists(name, null)) {
+                    return "Tên danh mục đã tồn tại!";
+                }
+                return categoryService.createCategory(category) ? null : "Không thể thêm danh mục. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm danh mục thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadCategoryData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -673,8 +686,13 @@ public class CategoryManagementView extends JFrame {
     }
 
     private void showEditCategoryDialog(long id) {
-        // Get category by ID
-        Category category = categoryService.getCategoryById(id);
+        // Get category by ID, then the parent category choices and the subtree to leave out of them
+        taskRunner.execute(() -> categoryService.getCategoryById(id), category ->
+            taskRunner.execute(categoryService::getCategoryTree,
+                tree -> showEditCategoryDialog(category, tree.getAll(), tree.getSubtreeIds(id))));
+    }
+
+    private void showEditCategoryDialog(Category category, List<Category> allCategories, Set<Long> subtreeIds) {
         if (category == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin danh mục!",
@@ -719,13 +737,12 @@ public class CategoryManagementView extends JFrame {
         gbc.gridy = 1;
 
         // Create combobox with all categories except this one and its children
-        List<Category> allCategories = categoryService.getAllCategories();
         DefaultComboBoxModel<Object> comboModel = new DefaultComboBoxModel<>();
         comboModel.addElement("-- Không có --");
 
         for (Category cat : allCategories) {
-            // Skip self and children to prevent circular references
-            if (cat.getId() != category.getId()) {
+            // Skip self and all descendants to prevent circular references
+            if (cat.getId() != category.getId() && !subtreeIds.contains(cat.getId())) {
                 comboModel.addElement(cat);
             }
         }
@@ -801,14 +818,7 @@ public class CategoryManagementView extends JFrame {
                 return;
             }
 
-            // Check if name exists (for other categories)
-            if (!name.equals(category.getName()) && categoryService.nameExists(name, category.getId())) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên danh mục đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            boolean nameChanged = !name.equals(category.getName());
 
             // Update category
             category.setName(name);
@@ -823,21 +833,32 @@ public class CategoryManagementView extends JFrame {
 
             category.setDescription(descriptionArea.getText().trim());
 
-            boolean success = categoryService.updateCategory(category);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật thông tin danh mục thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadCategoryData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật thông tin danh mục. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if name exists (for other categories)
+                if (nameChanged && categoryService.nameExists(name, category.getId())) {
+                    return "Tên danh mục đã tồn tại!";
+                }
+                return categoryService.updateCategory(category) ? null : "Không thể cập nhật thông tin danh mục. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật thông tin danh mục thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadCategoryData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -860,20 +881,20 @@ public class CategoryManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = categoryService.deleteCategory(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa danh mục thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadCategoryData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa danh mục. Danh mục này có thể đang được sử dụng hoặc có chứa danh mục con!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> categoryService.deleteCategory(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa danh mục thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadCategoryData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa danh mục. Danh mục này có thể đang được sử dụng hoặc có chứa danh mục con!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
@@ -1,7 +1,9 @@
 package app.swing.view.pages;
 
 import app.swing.model.User;
+import app.swing.model.DashboardStats;
 import app.swing.util.SessionManager;
+import app.swing.view.BackgroundTaskRunner;
 import app.swing.view.LoginView;
 import app.swing.view.pages.ProductManagementView;
 import app.swing.view.pages.InventoryMovementManagementView;
@@ -14,8 +16,7 @@ import app.swing.service.CategoryService;
 import app.swing.service.ProductService;
 import app.swing.service.CustomerService;
 import app.swing.service.InventoryMovementService;
-import app.swing.service.OrderService;
-import app.swing.model.Product;
+import app.swing.service.DashboardStatsCache;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -24,6 +25,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -39,6 +44,18 @@ public class CustomerAdminView extends JFrame {
     private ProductService productService;
     private CustomerService customerService;
     private InventoryMovementService inventoryMovementService;
+
+    // Chu kỳ (ms) cập nhật nhãn độ cũ và kiểm tra bản chụp số liệu mới
+    private static final int STATS_AGE_TICK_MS = 1000;
+
+    private final DashboardStatsCache dashboardStatsCache = DashboardStatsCache.getInstance();
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    // Nhãn giá trị của các thẻ thống kê, theo tiêu đề thẻ
+    private final Map<String, JLabel> statsValueLabels = new HashMap<>();
+    // Nhãn hiển thị độ cũ của số liệu và bản chụp số liệu đang hiển thị
+    private final JLabel statsAgeLabel = new JLabel(" ");
+    private DashboardStats shownStats;
+    private Timer statsAgeTimer;
     private JPanel currentSelectedPanel = null;
     private String currentSelectedTitle = "Dashboards"; // Default selection
     private JPanel contentArea; // Main content area
@@ -495,6 +512,11 @@ public class CustomerAdminView extends JFrame {
 
         contentPanel.add(scrollPane, BorderLayout.CENTER);
 
+        // Statistics are filled in once loaded, then follow the background refreshes
+        taskRunner.setBusyComponent(contentPanel);
+        loadDashboardStats();
+        startStatsAgeTimer();
+
         return contentPanel;
     }
 
@@ -552,6 +574,11 @@ public class CustomerAdminView extends JFrame {
 
         dashboardHeader.add(centerPanel, BorderLayout.CENTER);
 
+        // Snapshot age
+        statsAgeLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        statsAgeLabel.setForeground(new Color(120, 120, 120));
+        dashboardHeader.add(statsAgeLabel, BorderLayout.EAST);
+
         return dashboardHeader;
     }
 
@@ -560,16 +587,11 @@ public class CustomerAdminView extends JFrame {
         statsPanel.setBackground(new Color(245, 245, 245));
         statsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
 
-        // Get real statistics from database (no user count for customer admin)
-        int orderCount = getOrderCount();
-        int productCount = getProductCount();
-        int customerCount = getCustomerCount();
-        int supplierCount = getSupplierCount();
-
-        statsPanel.add(createStatsCard("Tổng Đơn Hàng", String.valueOf(orderCount), new Color(60, 179, 113)));
-        statsPanel.add(createStatsCard("Tổng Sản Phẩm", String.valueOf(productCount), new Color(255, 165, 0)));
-        statsPanel.add(createStatsCard("Tổng Khách Hàng", String.valueOf(customerCount), new Color(220, 20, 60)));
-        statsPanel.add(createStatsCard("Nhà Cung Cấp", String.valueOf(supplierCount), new Color(70, 130, 180)));
+        // No user count for customer admin
+        statsPanel.add(createStatsCard("Tổng Đơn Hàng", "...", new Color(60, 179, 113)));
+        statsPanel.add(createStatsCard("Tổng Sản Phẩm", "...", new Color(255, 165, 0)));
+        statsPanel.add(createStatsCard("Tổng Khách Hàng", "...", new Color(220, 20, 60)));
+        statsPanel.add(createStatsCard("Nhà Cung Cấp", "...", new Color(70, 130, 180)));
 
         return statsPanel;
     }
@@ -579,76 +601,65 @@ public class CustomerAdminView extends JFrame {
         statsPanel.setBackground(new Color(245, 245, 245));
         statsPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
 
-        // Get additional statistics
-        int pendingOrders = getPendingOrderCount();
-        int categoryCount = getCategoryCount();
-        int lowStockProducts = getLowStockProductCount();
-
-        statsPanel.add(createStatsCard("Đơn Chờ Xử Lý", String.valueOf(pendingOrders), new Color(255, 193, 7)));
-        statsPanel.add(createStatsCard("Danh Mục", String.valueOf(categoryCount), new Color(108, 117, 125)));
-        statsPanel.add(createStatsCard("Sản Phẩm Sắp Hết", String.valueOf(lowStockProducts), new Color(220, 53, 69)));
+        statsPanel.add(createStatsCard("Đơn Chờ Xử Lý", "...", new Color(255, 193, 7)));
+        statsPanel.add(createStatsCard("Danh Mục", "...", new Color(108, 117, 125)));
+        statsPanel.add(createStatsCard("Sản Phẩm Sắp Hết", "...", new Color(220, 53, 69)));
 
         return statsPanel;
     }
 
-    // Statistics helper methods
-    private int getOrderCount() {
-        try {
-            return new OrderService().getAllOrders().size();
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
-    private int getProductCount() {
-        try {
-            return productService.getAllProducts().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Load the dashboard statistics from the stats cache in the background and update the cards
+     */
+    private void loadDashboardStats() {
+        taskRunner.submit("stats", dashboardStatsCache::getSnapshot, this::showDashboardStats);
     }
 
-    private int getCustomerCount() {
-        try {
-            return customerService.getAllCustomers().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Show a stats snapshot on the cards and remember it for the age label
+     */
+    private void showDashboardStats(DashboardStats stats) {
+        setStatsValue("Tổng Đơn Hàng", stats.getOrderCount());
+        setStatsValue("Tổng Sản Phẩm", stats.getProductCount());
+        setStatsValue("Tổng Khách Hàng", stats.getCustomerCount());
+        setStatsValue("Nhà Cung Cấp", stats.getSupplierCount());
+        setStatsValue("Đơn Chờ Xử Lý", stats.getPendingOrderCount());
+        setStatsValue("Danh Mục", stats.getCategoryCount());
+        setStatsValue("Sản Phẩm Sắp Hết", stats.getLowStockProductCount());
+        shownStats = stats;
+        updateStatsAge();
     }
 
-    private int getSupplierCount() {
-        try {
-            return supplierService.getAllSuppliers().size();
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Pick up snapshots refreshed in the background and keep the age label current
+     */
+    private void startStatsAgeTimer() {
+        statsAgeTimer = new Timer(STATS_AGE_TICK_MS, e -> {
+            DashboardStats latest = dashboardStatsCache.peekSnapshot();
+            if (latest != null && latest != shownStats) {
+                showDashboardStats(latest);
+            } else {
+                updateStatsAge();
+            }
+        });
+        statsAgeTimer.start();
     }
 
-    private int getPendingOrderCount() {
-        try {
-            return (int) new OrderService().getAllOrders().stream()
-                .filter(order -> "pending".equals(order.getStatus()))
-                .count();
-        } catch (Exception e) {
-            return 0;
+    private void updateStatsAge() {
+        if (shownStats == null || shownStats.getRefreshedAt() == null) {
+            statsAgeLabel.setText(" ");
+            return;
         }
-    }
 
-    private int getCategoryCount() {
-        try {
-            return categoryService.getAllCategories().size();
-        } catch (Exception e) {
-            return 0;
-        }
+        long seconds = Math.max(0, Duration.between(shownStats.getRefreshedAt(), LocalDateTime.now()).getSeconds());
+        String age = seconds < 60 ? seconds + " giây" : (seconds / 60) + " phút";
+        statsAgeLabel.setText("Cập nhật " + age + " trước");
     }
 
-    private int getLowStockProductCount() {
-        try {
-            return (int) productService.getAllProducts().stream()
-                .filter(Product::isLowStock)
-                .count();
-        } catch (Exception e) {
-            return 0;
+    private void setStatsValue(String title, int value) {
+        JLabel valueLabel = statsValueLabels.get(title);
+        if (valueLabel != null) {
+            valueLabel.setText(String.valueOf(value));
         }
     }
 
@@ -682,6 +693,7 @@ public class CustomerAdminView extends JFrame {
         valueLabel.setForeground(color);
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         centerPanel.add(valueLabel);
+        statsValueLabels.put(title, valueLabel);
 
         card.add(centerPanel, BorderLayout.CENTER);
 
@@ -717,4 +729,13 @@ public class CustomerAdminView extends JFrame {
             new LoginView().setVisible(true);
         }
     }
+
+    @Override
+    public void dispose() {
+        // Timer của Swing giữ tham chiếu tới cửa sổ và vẫn chạy sau khi cửa sổ đóng nếu không dừng
+        if (statsAgeTimer != null) {
+            statsAgeTimer.stop();
+        }
+        super.dispose();
+    }
 }
@@ -1,15 +1,20 @@
 package app.swing.view.pages;
 
 import app.swing.model.Customer;
+import app.swing.model.Page;
+import app.swing.service.CustomerImportService;
 import app.swing.service.CustomerService;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.ImportDialog;
+import app.swing.view.PagedTableLoader;
+import app.swing.view.SearchDebouncer;
+import app.swing.view.TextRowFilter;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.time.format.DateTimeFormatter;
@@ -22,11 +27,22 @@ public class CustomerManagementView extends JFrame {
 
     private JTable customerTable;
     private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, backButton;
+    private JButton addButton, editButton, deleteButton, refreshButton, importButton, backButton;
     private JTextField searchField;
     private CustomerService customerService;
+    private final CustomerImportService customerImportService = new CustomerImportService();
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    private PagedTableLoader<Customer> pageLoader;
+    private TableRowSorter<DefaultTableModel> sorter;
+    // Bảng đang hiện kết quả tìm trên server thay vì danh sách phân trang
+    private boolean serverSearchActive;
+
+    // Số dòng tải mỗi lần cuộn
+    private static final int PAGE_SIZE = 200;
+    // Các cột được lọc tại chỗ
+    private static final int[] SEARCH_COLUMNS = {1, 2, 3, 4};
 
     public CustomerManagementView() {
         this.customerService = new CustomerService();
@@ -186,11 +202,13 @@ public class CustomerManagementView extends JFrame {
         editButton = createActionButton("Sửa khách hàng", new Color(60, 179, 113));
         deleteButton = createActionButton("Xóa khách hàng", new Color(220, 20, 60));
         refreshButton = createActionButton("Làm mới", new Color(30, 144, 255));
+        importButton = createActionButton("Nhập CSV", new Color(255, 140, 0));
 
         actionPanel.add(addButton);
         actionPanel.add(editButton);
         actionPanel.add(deleteButton);
         actionPanel.add(refreshButton);
+        actionPanel.add(importButton);
 
         // Right side - search
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -257,6 +275,9 @@ public class CustomerManagementView extends JFrame {
             });
         } else if (text.equals("Làm mới")) {
             button.addActionListener(e -> loadCustomerData());
+        } else if (text.equals("Nhập CSV")) {
+            button.addActionListener(e -> ImportDialog.show(this, "khách hàng",
+                customerImportService::importCustomers, this::loadCustomerData));
         }
 
         return button;
@@ -319,26 +340,21 @@ public class CustomerManagementView extends JFrame {
         });
 
         // Enable sorting
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
+        sorter = new TableRowSorter<>(tableModel);
         customerTable.setRowSorter(sorter);
 
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Search once typing pauses, see applySearch
+        SearchDebouncer.install(searchField, this::applySearch);
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(customerTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
+
+        // Load rows page by page as the user scrolls
+        pageLoader = new PagedTableLoader<>(scrollPane, taskRunner,
+            token -> customerService.getCustomersPage(token, PAGE_SIZE), this::appendCustomerRows);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -358,6 +374,7 @@ public class CustomerManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
@@ -365,10 +382,31 @@ public class CustomerManagementView extends JFrame {
     private void loadCustomerData() {
         // Clear table
         tableModel.setRowCount(0);
+        sorter.setRowFilter(null);
+
+        String text = searchField.getText().trim();
+        serverSearchActive = !text.isEmpty();
+        if (serverSearchActive) {
+            // Kết quả tìm trên server là một trang duy nhất
+            pageLoader.reset(token -> new Page<>(customerService.searchCustomers(text), null));
+        } else {
+            // Load the first page; later pages are fetched on scroll
+            pageLoader.reset();
+        }
+    }
 
-        // Get all customers
-        List<Customer> customers = customerService.getAllCustomers();
+    /**
+     * Lọc tại chỗ khi bảng đã tải hết danh sách; khi còn trang chưa tải thì tìm trên server
+     */
+    private void applySearch(String text) {
+        if (!serverSearchActive && (text.isEmpty() || !pageLoader.hasMore())) {
+            sorter.setRowFilter(TextRowFilter.of(text, SEARCH_COLUMNS));
+        } else {
+            loadCustomerData();
+        }
+    }
 
+    private void appendCustomerRows(List<Customer> customers) {
         // Add to table
         for (Customer customer : customers) {
             Object[] row = {
@@ -522,24 +560,6 @@ public class CustomerManagementView extends JFrame {
                 return;
             }
 
-            // Check if code exists (if provided)
-            if (!code.isEmpty() && customerService.codeExists(code, null)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Mã khách hàng đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            // Check if email exists (if provided)
-            if (!email.isEmpty() && customerService.emailExists(email, null)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Email đã được sử dụng bởi khách hàng khác!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Create customer
             Customer customer = new Customer();
             customer.setCode(code);
@@ -550,21 +570,36 @@ public class CustomerManagementView extends JFrame {
             customer.setNote(notesArea.getText().trim());
             customer.setActive(activeCheckBox.isSelected());
 
-            boolean success = customerService.createCustomer(customer);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm khách hàng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadCustomerData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm khách hàng. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if code exists (if provided)
+                if (!code.isEmpty() && customerService.codeExists(code, null)) {
+                    return "Mã khách hàng đã tồn tại!";
+                }
+                // Check if email exists (if provided)
+                if (!email.isEmpty() && customerService.emailExists(email, null)) {
+                    return "Email đã được sử dụng bởi khách hàng khác!";
+                }
+                return customerService.createCustomer(customer) ? null : "Không thể thêm khách hàng. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm khách hàng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadCustomerData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -581,7 +616,10 @@ public class CustomerManagementView extends JFrame {
 
     private void showEditCustomerDialog(long id) {
         // Get customer by ID
-        Customer customer = customerService.getCustomerById(id);
+        taskRunner.execute(() -> customerService.getCustomerById(id), this::showEditCustomerDialog);
+    }
+
+    private void showEditCustomerDialog(Customer customer) {
         if (customer == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin khách hàng!",
@@ -732,23 +770,8 @@ public class CustomerManagementView extends JFrame {
                 return;
             }
 
-            // Check if code exists (if changed)
-            if (!code.equals(customer.getCode()) && !code.isEmpty() && customerService.codeExists(code, customer.getId())) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Mã khách hàng đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            // Check if email exists (if changed)
-            if (!email.equals(customer.getEmail()) && !email.isEmpty() && customerService.emailExists(email, customer.getId())) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Email đã được sử dụng bởi khách hàng khác!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            boolean checkCode = !code.equals(customer.getCode()) && !code.isEmpty();
+            boolean checkEmail = !email.equals(customer.getEmail()) && !email.isEmpty();
 
             // Update customer
             customer.setCode(code);
@@ -759,21 +782,36 @@ public class CustomerManagementView extends JFrame {
             customer.setNote(notesArea.getText().trim());
             customer.setActive(activeCheckBox.isSelected());
 
-            boolean success = customerService.updateCustomer(customer);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật thông tin khách hàng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadCustomerData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật thông tin khách hàng. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if code exists (if changed)
+                if (checkCode && customerService.codeExists(code, customer.getId())) {
+                    return "Mã khách hàng đã tồn tại!";
+                }
+                // Check if email exists (if changed)
+                if (checkEmail && customerService.emailExists(email, customer.getId())) {
+                    return "Email đã được sử dụng bởi khách hàng khác!";
+                }
+                return customerService.updateCustomer(customer) ? null : "Không thể cập nhật thông tin khách hàng. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật thông tin khách hàng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadCustomerData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -796,20 +834,20 @@ public class CustomerManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = customerService.deleteCustomer(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa khách hàng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadCustomerData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa khách hàng. Khách hàng này có thể đã có đơn hàng trong hệ thống!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> customerService.deleteCustomer(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa khách hàng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadCustomerData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa khách hàng. Khách hàng này có thể đã có đơn hàng trong hệ thống!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
@@ -1,20 +1,27 @@
 package app.swing.view.pages;
 
 import app.swing.model.InventoryMovement;
+import app.swing.model.Page;
 import app.swing.model.Product;
 import app.swing.model.User;
+import app.swing.service.ExportService;
+import app.swing.service.InventoryMovementImportService;
 import app.swing.service.InventoryMovementService;
 import app.swing.service.ProductService;
 import app.swing.service.UserService;
 import app.swing.util.SessionManager;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.ExportDialog;
+import app.swing.view.ImportDialog;
+import app.swing.view.PagedTableLoader;
+import app.swing.view.SearchDebouncer;
+import app.swing.view.TextRowFilter;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.time.format.DateTimeFormatter;
@@ -27,13 +34,24 @@ public class InventoryMovementManagementView extends JFrame {
 
     private JTable movementTable;
     private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, backButton;
+    private JButton addButton, editButton, deleteButton, refreshButton, exportButton, importButton, backButton;
     private JTextField searchField;
     private InventoryMovementService movementService;
+    private final InventoryMovementImportService movementImportService = new InventoryMovementImportService();
     private ProductService productService;
     private UserService userService;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    private PagedTableLoader<InventoryMovement> pageLoader;
+    private TableRowSorter<DefaultTableModel> sorter;
+    // Bảng đang hiện kết quả tìm trên server thay vì danh sách phân trang
+    private boolean serverSearchActive;
+
+    // Số dòng tải mỗi lần cuộn
+    private static final int PAGE_SIZE = 200;
+    // Các cột được lọc tại chỗ
+    private static final int[] SEARCH_COLUMNS = {1, 2, 3, 6};
 
     public InventoryMovementManagementView() {
         this.movementService = new InventoryMovementService();
@@ -200,11 +218,15 @@ public class InventoryMovementManagementView extends JFrame {
         editButton = createActionButton("Sửa giao dịch", new Color(60, 179, 113));
         deleteButton = createActionButton("Xóa giao dịch", new Color(220, 20, 60));
         refreshButton = createActionButton("Làm mới", new Color(30, 144, 255));
+        exportButton = createActionButton("Xuất file", new Color(255, 140, 0));
+        importButton = createActionButton("Nhập CSV", new Color(255, 140, 0));
 
         actionPanel.add(addButton);
         actionPanel.add(editButton);
         actionPanel.add(deleteButton);
         actionPanel.add(refreshButton);
+        actionPanel.add(exportButton);
+        actionPanel.add(importButton);
 
         // Right side - search
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -271,6 +293,10 @@ public class InventoryMovementManagementView extends JFrame {
             });
         } else if (text.equals("Làm mới")) {
             button.addActionListener(e -> loadMovementData());
+        } else if (text.equals("Xuất file")) {
+            button.addActionListener(e -> ExportDialog.show(this, ExportService.Dataset.INVENTORY_MOVEMENTS));
+        } else if (text.equals("Nhập CSV")) {
+            button.addActionListener(e -> showImportDialog());
         }
 
         return button;
@@ -333,26 +359,21 @@ public class InventoryMovementManagementView extends JFrame {
         });
 
         // Enable sorting
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
+        sorter = new TableRowSorter<>(tableModel);
         movementTable.setRowSorter(sorter);
 
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Search once typing pauses, see applySearch
+        SearchDebouncer.install(searchField, this::applySearch);
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(movementTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
+
+        // Load rows page by page as the user scrolls
+        pageLoader = new PagedTableLoader<>(scrollPane, taskRunner,
+            token -> movementService.getMovementsPage(token, PAGE_SIZE), this::appendMovementRows);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -372,6 +393,7 @@ public class InventoryMovementManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
@@ -379,10 +401,31 @@ public class InventoryMovementManagementView extends JFrame {
     private void loadMovementData() {
         // Clear table
         tableModel.setRowCount(0);
+        sorter.setRowFilter(null);
+
+        String text = searchField.getText().trim();
+        serverSearchActive = !text.isEmpty();
+        if (serverSearchActive) {
+            // Kết quả tìm trên server là một trang duy nhất
+            pageLoader.reset(token -> new Page<>(movementService.searchMovementsForList(text), null));
+        } else {
+            // Load the first page; later pages are fetched on scroll
+            pageLoader.reset();
+        }
+    }
 
-        // Get all movements
-        List<InventoryMovement> movements = movementService.getAllMovements();
+    /**
+     * Lọc tại chỗ khi bảng đã tải hết danh sách; khi còn trang chưa tải thì tìm trên server
+     */
+    private void applySearch(String text) {
+        if (!serverSearchActive && (text.isEmpty() || !pageLoader.hasMore())) {
+            sorter.setRowFilter(TextRowFilter.of(text, SEARCH_COLUMNS));
+        } else {
+            loadMovementData();
+        }
+    }
 
+    private void appendMovementRows(List<InventoryMovement> movements) {
         // Add to table
         for (InventoryMovement movement : movements) {
             Object[] row = {
@@ -400,6 +443,11 @@ public class InventoryMovementManagementView extends JFrame {
     }
 
     private void showAddMovementDialog() {
+        // Load product choices first
+        taskRunner.execute(productService::getAllProducts, this::showAddMovementDialog);
+    }
+
+    private void showAddMovementDialog(List<Product> products) {
         // Create dialog
         JDialog dialog = new JDialog(this, "Thêm giao dịch xuất nhập kho", true);
         dialog.setSize(500, 400);
@@ -424,7 +472,6 @@ public class InventoryMovementManagementView extends JFrame {
         gbc.gridy = 0;
         DefaultComboBoxModel<Object> productModel = new DefaultComboBoxModel<>();
         productModel.addElement("-- Chọn sản phẩm --");
-        List<Product> products = productService.getAllProducts();
         for (Product product : products) {
             productModel.addElement(product);
         }
@@ -562,21 +609,26 @@ public class InventoryMovementManagementView extends JFrame {
                 movement.setCreatedBy((long) currentUser.getId());
             }
 
-            boolean success = movementService.createMovement(movement);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm giao dịch thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadMovementData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm giao dịch. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> movementService.createMovement(movement), success -> {
+                saveButton.setEnabled(true);
+                if (success) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm giao dịch thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadMovementData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Không thể thêm giao dịch. Vui lòng thử lại!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -591,9 +643,22 @@ public class InventoryMovementManagementView extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void showImportDialog() {
+        User currentUser = SessionManager.getCurrentUser();
+        Long userId = currentUser != null ? (long) currentUser.getId() : null;
+        ImportDialog.show(this, "phiếu xuất nhập kho",
+            (file, listener) -> movementImportService.importMovements(file, userId, listener),
+            this::loadMovementData);
+    }
+
     private void showEditMovementDialog(long id) {
-        // Get movement by ID
-        InventoryMovement movement = movementService.getMovementById(id);
+        // Get movement by ID, then the product choices
+        taskRunner.execute(() -> movementService.getMovementById(id), movement ->
+            taskRunner.execute(productService::getAllProducts,
+                products -> showEditMovementDialog(movement, products)));
+    }
+
+    private void showEditMovementDialog(InventoryMovement movement, List<Product> products) {
         if (movement == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin giao dịch!",
@@ -626,7 +691,6 @@ public class InventoryMovementManagementView extends JFrame {
         gbc.gridy = 0;
         DefaultComboBoxModel<Object> productModel = new DefaultComboBoxModel<>();
         productModel.addElement("-- Chọn sản phẩm --");
-        List<Product> products = productService.getAllProducts();
         for (Product product : products) {
             productModel.addElement(product);
         }
@@ -775,21 +839,26 @@ public class InventoryMovementManagementView extends JFrame {
 
             movement.setNote(notesArea.getText().trim());
 
-            boolean success = movementService.updateMovement(movement);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật giao dịch thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadMovementData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật giao dịch. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> movementService.updateMovement(movement), success -> {
+                saveButton.setEnabled(true);
+                if (success) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật giao dịch thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadMovementData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Không thể cập nhật giao dịch. Vui lòng thử lại!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -813,20 +882,20 @@ public class InventoryMovementManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = movementService.deleteMovement(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa giao dịch thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadMovementData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa giao dịch. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> movementService.deleteMovement(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa giao dịch thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadMovementData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa giao dịch. Vui lòng thử lại!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
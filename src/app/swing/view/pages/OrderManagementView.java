@@ -2,14 +2,17 @@ package app.swing.view.pages;
 
 import app.swing.model.*;
 import app.swing.service.*;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.ExportDialog;
+import app.swing.view.LazyTableModel;
+import app.swing.view.SearchDebouncer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.math.BigDecimal;
@@ -24,19 +27,30 @@ import java.util.List;
 public class OrderManagementView extends JFrame {
 
     private JTable orderTable;
-    private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, backButton;
+    private LazyTableModel<Order> tableModel;
+    private JButton addButton, editButton, deleteButton, refreshButton, exportButton, backButton;
     private JTextField searchField;
     private OrderService orderService;
     private CustomerService customerService;
-    private ProductService productService;
+    private ProductSearchIndex productSearchIndex;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    private LazyTableModel.DataSource<Order> orderDataSource;
+
+    // Số dòng tải mỗi lần cuộn
+    private static final int PAGE_SIZE = 200;
+    // Số trang tối đa giữ trong bộ nhớ, các trang khuất khỏi màn hình lâu nhất bị loại trước
+    private static final int MAX_CACHED_PAGES = 10;
+    // Cột ẩn trong bảng chi tiết đơn hàng chứa OrderItem gốc của dòng
+    private static final int ITEM_SOURCE_COLUMN = 6;
+    // Số sản phẩm tối đa hiện trong ô chọn sản phẩm
+    private static final int PICKER_RESULT_LIMIT = 100;
 
     public OrderManagementView() {
         this.orderService = new OrderService();
         this.customerService = new CustomerService();
-        this.productService = new ProductService();
+        this.productSearchIndex = ProductSearchIndex.getInstance();
         this.isEmbedded = false;
         initComponents();
         loadOrderData();
@@ -46,7 +60,7 @@ public class OrderManagementView extends JFrame {
     public OrderManagementView(boolean embedded) {
         this.orderService = new OrderService();
         this.customerService = new CustomerService();
-        this.productService = new ProductService();
+        this.productSearchIndex = ProductSearchIndex.getInstance();
         this.isEmbedded = embedded;
         if (!embedded) {
             initComponents();
@@ -195,11 +209,13 @@ public class OrderManagementView extends JFrame {
         editButton = createActionButton("Sửa đơn hàng", new Color(60, 179, 113));
         deleteButton = createActionButton("Xóa đơn hàng", new Color(220, 20, 60));
         refreshButton = createActionButton("Làm mới", new Color(30, 144, 255));
+        exportButton = createActionButton("Xuất file", new Color(255, 140, 0));
 
         actionPanel.add(addButton);
         actionPanel.add(editButton);
         actionPanel.add(deleteButton);
         actionPanel.add(refreshButton);
+        actionPanel.add(exportButton);
 
         // Right side - search
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -237,11 +253,9 @@ public class OrderManagementView extends JFrame {
             button.addActionListener(e -> showAddOrderDialog());
         } else if (text.equals("Sửa đơn hàng")) {
             button.addActionListener(e -> {
-                int selectedRow = orderTable.getSelectedRow();
-                if (selectedRow >= 0) {
-                    int modelRow = orderTable.convertRowIndexToModel(selectedRow);
-                    long orderId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                    showEditOrderDialog(orderId);
+                Order selected = getSelectedOrder();
+                if (selected != null) {
+                    showEditOrderDialog(selected.getId());
                 } else {
                     JOptionPane.showMessageDialog(this,
                         "Vui lòng chọn đơn hàng để sửa!",
@@ -251,12 +265,9 @@ public class OrderManagementView extends JFrame {
             });
         } else if (text.equals("Xóa đơn hàng")) {
             button.addActionListener(e -> {
-                int selectedRow = orderTable.getSelectedRow();
-                if (selectedRow >= 0) {
-                    int modelRow = orderTable.convertRowIndexToModel(selectedRow);
-                    long orderId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                    String orderNumber = tableModel.getValueAt(modelRow, 1).toString();
-                    deleteOrder(orderId, orderNumber);
+                Order selected = getSelectedOrder();
+                if (selected != null) {
+                    deleteOrder(selected.getId(), selected.getOrderNumber());
                 } else {
                     JOptionPane.showMessageDialog(this,
                         "Vui lòng chọn đơn hàng để xóa!",
@@ -266,6 +277,8 @@ public class OrderManagementView extends JFrame {
             });
         } else if (text.equals("Làm mới")) {
             button.addActionListener(e -> loadOrderData());
+        } else if (text.equals("Xuất file")) {
+            button.addActionListener(e -> ExportDialog.show(this, ExportService.Dataset.ORDERS, ExportService.Dataset.ORDER_ITEMS));
         }
 
         return button;
@@ -278,15 +291,22 @@ public class OrderManagementView extends JFrame {
         // Create table model
         String[] columns = {"ID", "Số đơn hàng", "Khách hàng", "Trạng thái", "Ngày đặt",
                            "Ngày giao", "Tổng tiền", "Ghi chú"};
-        tableModel = new DefaultTableModel(columns, 0) {
+        // Rows are fetched page by page as they scroll into view
+        tableModel = new LazyTableModel<>(columns, this::toOrderRow, PAGE_SIZE, MAX_CACHED_PAGES);
+        orderDataSource = new LazyTableModel.DataSource<Order>() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table non-editable
+            public int count() {
+                return orderService.getOrderCount();
+            }
+
+            @Override
+            public Page<Order> fetchAfter(String pageToken, int pageSize) {
+                return orderService.getOrdersPage(pageToken, pageSize);
             }
 
             @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return String.class;
+            public Page<Order> fetchAt(int offset, int pageSize) {
+                return orderService.getOrdersPageAt(offset, pageSize);
             }
         };
 
@@ -318,37 +338,22 @@ public class OrderManagementView extends JFrame {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    int selectedRow = orderTable.getSelectedRow();
-                    if (selectedRow >= 0) {
-                        int modelRow = orderTable.convertRowIndexToModel(selectedRow);
-                        long orderId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                        showEditOrderDialog(orderId);
+                    Order selected = getSelectedOrder();
+                    if (selected != null) {
+                        showEditOrderDialog(selected.getId());
                     }
                 }
             }
         });
 
-        // Enable sorting
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        orderTable.setRowSorter(sorter);
-
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Search on the server once typing pauses; only the visible rows are ever loaded
+        SearchDebouncer.install(searchField, text -> loadOrderData());
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(orderTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -368,34 +373,48 @@ public class OrderManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
 
     private void loadOrderData() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Get all orders
-        List<Order> orders = orderService.getAllOrders();
-
-        // Add to table
-        for (Order order : orders) {
-            Object[] row = {
-                order.getId(),
-                order.getOrderNumber(),
-                order.getCustomer() != null ? order.getCustomer().getName() : "N/A",
-                order.getStatusDisplay(),
-                order.getPlacedAt() != null ? order.getPlacedAt().format(dateFormatter) : "",
-                order.getDeliveryDate() != null ? order.getDeliveryDate().format(dateFormatter) : "",
-                order.getTotal() != null ? order.getTotal().toString() : "0",
-                order.getNotes()
-            };
-            tableModel.addRow(row);
+        String text = searchField.getText().trim();
+        if (text.isEmpty()) {
+            tableModel.setDataSource(orderDataSource);
+        } else {
+            tableModel.setDataSource(LazyTableModel.fromQuery(() -> orderService.searchOrders(text)));
         }
     }
 
+    private Order getSelectedOrder() {
+        int selectedRow = orderTable.getSelectedRow();
+        if (selectedRow < 0) {
+            return null;
+        }
+        // Null while the row's page is still loading
+        return tableModel.getRow(orderTable.convertRowIndexToModel(selectedRow));
+    }
+
+    private Object[] toOrderRow(Order order) {
+        return new Object[] {
+            order.getId(),
+            order.getOrderNumber(),
+            order.getCustomer() != null ? order.getCustomer().getName() : "N/A",
+            order.getStatusDisplay(),
+            order.getPlacedAt() != null ? order.getPlacedAt().format(dateFormatter) : "",
+            order.getDeliveryDate() != null ? order.getDeliveryDate().format(dateFormatter) : "",
+            order.getTotal() != null ? order.getTotal().toString() : "0",
+            order.getNotes()
+        };
+    }
+
     private void showAddOrderDialog() {
+        // Load customer choices first
+        taskRunner.execute(customerService::getAllCustomers, this::showAddOrderDialog);
+    }
+
+    private void showAddOrderDialog(List<Customer> customers) {
         // Create dialog
         JDialog dialog = new JDialog(this, "Thêm đơn hàng mới", true);
         dialog.setSize(800, 600);
@@ -406,7 +425,7 @@ public class OrderManagementView extends JFrame {
         JTabbedPane tabbedPane = new JTabbedPane();
 
         // Order info tab
-        JPanel orderInfoPanel = createOrderInfoPanel(null);
+        JPanel orderInfoPanel = createOrderInfoPanel(null, customers);
         tabbedPane.addTab("Thông tin đơn hàng", orderInfoPanel);
 
         // Order items tab
@@ -425,12 +444,7 @@ public class OrderManagementView extends JFrame {
         JButton cancelButton = new JButton("Hủy");
 
         // Save button action
-        saveButton.addActionListener(e -> {
-            if (saveOrder(dialog, orderInfoPanel, orderItemsPanel, null)) {
-                dialog.dispose();
-                loadOrderData();
-            }
-        });
+        saveButton.addActionListener(e -> saveOrder(dialog, saveButton, orderInfoPanel, orderItemsPanel, null));
 
         // Cancel button action
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -445,8 +459,13 @@ public class OrderManagementView extends JFrame {
     }
 
     private void showEditOrderDialog(long orderId) {
-        // Get order by ID
-        Order order = orderService.getOrderById(orderId);
+        // Get order by ID, then the customer choices
+        taskRunner.execute(() -> orderService.getOrderById(orderId), order ->
+            taskRunner.execute(customerService::getAllCustomers,
+                customers -> showEditOrderDialog(order, customers)));
+    }
+
+    private void showEditOrderDialog(Order order, List<Customer> customers) {
         if (order == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin đơn hàng!",
@@ -465,7 +484,7 @@ public class OrderManagementView extends JFrame {
         JTabbedPane tabbedPane = new JTabbedPane();
 
         // Order info tab
-        JPanel orderInfoPanel = createOrderInfoPanel(order);
+        JPanel orderInfoPanel = createOrderInfoPanel(order, customers);
         tabbedPane.addTab("Thông tin đơn hàng", orderInfoPanel);
 
         // Order items tab
@@ -484,12 +503,7 @@ public class OrderManagementView extends JFrame {
         JButton cancelButton = new JButton("Hủy");
 
         // Save button action
-        saveButton.addActionListener(e -> {
-            if (saveOrder(dialog, orderInfoPanel, orderItemsPanel, order)) {
-                dialog.dispose();
-                loadOrderData();
-            }
-        });
+        saveButton.addActionListener(e -> saveOrder(dialog, saveButton, orderInfoPanel, orderItemsPanel, order));
 
         // Cancel button action
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -503,7 +517,7 @@ public class OrderManagementView extends JFrame {
         dialog.setVisible(true);
     }
 
-    private JPanel createOrderInfoPanel(Order order) {
+    private JPanel createOrderInfoPanel(Order order, List<Customer> customers) {
         JPanel panel = new JPanel(new GridBagLayout());
         panel.setBorder(new EmptyBorder(20, 20, 20, 20));
         GridBagConstraints gbc = new GridBagConstraints();
@@ -535,19 +549,6 @@ public class OrderManagementView extends JFrame {
 
         gbc.gridx = 1;
         gbc.gridy = 1;
-        List<Customer> customers = null;
-        try {
-            customers = customerService.getAllCustomers();
-            System.out.println("Loaded " + customers.size() + " customers");
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this,
-                "Lỗi khi tải danh sách khách hàng: " + e.getMessage(),
-                "Lỗi",
-                JOptionPane.ERROR_MESSAGE);
-            customers = new ArrayList<>();
-        }
-
         DefaultComboBoxModel<Customer> customerModel = new DefaultComboBoxModel<>();
         customerModel.addElement(null); // Allow no customer selection
         for (Customer customer : customers) {
@@ -713,8 +714,8 @@ public class OrderManagementView extends JFrame {
         toolbar.add(addItemButton);
         toolbar.add(removeItemButton);
 
-        // Order items table
-        String[] columns = {"Sản phẩm", "SKU", "Số lượng", "Đơn giá", "Giảm giá", "Thành tiền"};
+        // Order items table; the last column holds the source OrderItem and is not shown
+        String[] columns = {"Sản phẩm", "SKU", "Số lượng", "Đơn giá", "Giảm giá", "Thành tiền", ""};
         DefaultTableModel itemsTableModel = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -726,6 +727,7 @@ public class OrderManagementView extends JFrame {
         itemsTable.setName("itemsTable");
         itemsTable.setRowHeight(30);
         itemsTable.getTableHeader().setBackground(new Color(240, 240, 240));
+        itemsTable.removeColumn(itemsTable.getColumnModel().getColumn(ITEM_SOURCE_COLUMN));
 
         if (orderItems != null) {
             for (OrderItem item : orderItems) {
@@ -735,13 +737,16 @@ public class OrderManagementView extends JFrame {
                     item.getQuantity(),
                     item.getUnitPrice(),
                     item.getDiscount(),
-                    item.getLineTotal()
+                    item.getLineTotal(),
+                    item
                 };
                 itemsTableModel.addRow(row);
             }
         }
 
-        addItemButton.addActionListener(e -> showAddOrderItemDialog(itemsTableModel));
+        // Chỉ mục sản phẩm chỉ nạp các thay đổi từ lần trước rồi mở hộp thoại
+        addItemButton.addActionListener(e -> taskRunner.execute(productSearchIndex::refresh,
+            refreshed -> showAddOrderItemDialog(itemsTableModel)));
 
         removeItemButton.addActionListener(e -> {
             int selectedRow = itemsTable.getSelectedRow();
@@ -774,7 +779,7 @@ public class OrderManagementView extends JFrame {
 
     private void showAddOrderItemDialog(DefaultTableModel itemsTableModel) {
         JDialog dialog = new JDialog(this, "Thêm sản phẩm", true);
-        dialog.setSize(400, 300);
+        dialog.setSize(400, 330);
         dialog.setLocationRelativeTo(this);
         dialog.setLayout(new GridBagLayout());
 
@@ -783,35 +788,38 @@ public class OrderManagementView extends JFrame {
         gbc.insets = new Insets(5, 5, 5, 5);
 
         gbc.gridx = 0; gbc.gridy = 0;
-        dialog.add(new JLabel("Sản phẩm:"), gbc);
+        dialog.add(new JLabel("Tìm (SKU/tên):"), gbc);
 
         gbc.gridx = 1; gbc.gridy = 0;
-        List<Product> products = productService.getAllProducts();
+        JTextField productSearchField = new JTextField();
+        dialog.add(productSearchField, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 1;
+        dialog.add(new JLabel("Sản phẩm:"), gbc);
+
+        gbc.gridx = 1; gbc.gridy = 1;
         DefaultComboBoxModel<Product> productModel = new DefaultComboBoxModel<>();
-        for (Product product : products) {
-            productModel.addElement(product);
-        }
         JComboBox<Product> productComboBox = new JComboBox<>(productModel);
         dialog.add(productComboBox, gbc);
 
-        gbc.gridx = 0; gbc.gridy = 1;
+        gbc.gridx = 0; gbc.gridy = 2;
         dialog.add(new JLabel("Số lượng:"), gbc);
 
-        gbc.gridx = 1; gbc.gridy = 1;
+        gbc.gridx = 1; gbc.gridy = 2;
         JSpinner quantitySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 1000, 1));
         dialog.add(quantitySpinner, gbc);
 
-        gbc.gridx = 0; gbc.gridy = 2;
+        gbc.gridx = 0; gbc.gridy = 3;
         dialog.add(new JLabel("Đơn giá:"), gbc);
 
-        gbc.gridx = 1; gbc.gridy = 2;
+        gbc.gridx = 1; gbc.gridy = 3;
         JTextField unitPriceField = new JTextField();
         dialog.add(unitPriceField, gbc);
 
-        gbc.gridx = 0; gbc.gridy = 3;
+        gbc.gridx = 0; gbc.gridy = 4;
         dialog.add(new JLabel("Giảm giá:"), gbc);
 
-        gbc.gridx = 1; gbc.gridy = 3;
+        gbc.gridx = 1; gbc.gridy = 4;
         JTextField discountField = new JTextField("0");
         dialog.add(discountField, gbc);
 
@@ -822,11 +830,33 @@ public class OrderManagementView extends JFrame {
             }
         });
 
-        if (products.size() > 0 && products.get(0).getPrice() != null) {
-            unitPriceField.setText(products.get(0).getPrice().toString());
-        }
+        // Lọc ô chọn theo từng phím gõ; chỉ mục nằm trong bộ nhớ nên chạy thẳng trên EDT
+        Runnable filterProducts = () -> {
+            productModel.removeAllElements();
+            productModel.addAll(productSearchIndex.search(productSearchField.getText(), PICKER_RESULT_LIMIT));
+            if (productModel.getSize() > 0) {
+                productComboBox.setSelectedIndex(0);
+            }
+        };
+        productSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterProducts.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterProducts.run();
+            }
 
-        gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2;
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterProducts.run();
+            }
+        });
+        filterProducts.run();
+
+        gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2;
         JPanel buttonPanel = new JPanel(new FlowLayout());
 
         JButton addButton = new JButton("Thêm");
@@ -845,7 +875,10 @@ public class OrderManagementView extends JFrame {
                     BigDecimal discount = new BigDecimal(discountField.getText());
                     BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity)).subtract(discount);
 
-                    Object[] row = {selectedProduct.getName(), selectedProduct.getSku(), quantity, unitPrice, discount, lineTotal};
+                    OrderItem item = new OrderItem();
+                    item.setProductId(selectedProduct.getId());
+
+                    Object[] row = {selectedProduct.getName(), selectedProduct.getSku(), quantity, unitPrice, discount, lineTotal, item};
                     itemsTableModel.addRow(row);
                     dialog.dispose();
                 } catch (NumberFormatException ex) {
@@ -900,7 +933,7 @@ public class OrderManagementView extends JFrame {
         return null;
     }
 
-    private boolean saveOrder(JDialog dialog, JPanel orderInfoPanel, JPanel orderItemsPanel, Order existingOrder) {
+    private void saveOrder(JDialog dialog, JButton saveButton, JPanel orderInfoPanel, JPanel orderItemsPanel, Order existingOrder) {
         try {
             @SuppressWarnings("unchecked")
             JComboBox<Customer> customerComboBox = findComponentByName(orderInfoPanel, "customer", JComboBox.class);
@@ -914,15 +947,12 @@ public class OrderManagementView extends JFrame {
 
             if (customerComboBox == null || customerComboBox.getSelectedItem() == null) {
                 JOptionPane.showMessageDialog(dialog, "Vui lòng chọn khách hàng!", "Lỗi", JOptionPane.ERROR_MESSAGE);
-                return false;
+                return;
             }
 
+            // Mã đơn hàng mới do OrderService sinh khi lưu
             Order order = existingOrder != null ? existingOrder : new Order();
 
-            if (existingOrder == null) {
-                order.setOrderNumber("ORD-" + System.currentTimeMillis());
-            }
-
             order.setCustomer((Customer) customerComboBox.getSelectedItem());
             order.setStatus((String) statusComboBox.getSelectedItem());
 
@@ -932,7 +962,7 @@ public class OrderManagementView extends JFrame {
                     order.setDeliveryDate(LocalDateTime.parse(deliveryDateText, dateFormatter));
                 } catch (Exception e) {
                     JOptionPane.showMessageDialog(dialog, "Định dạng ngày giao hàng không hợp lệ!", "Lỗi", JOptionPane.ERROR_MESSAGE);
-                    return false;
+                    return;
                 }
             }
 
@@ -947,6 +977,12 @@ public class OrderManagementView extends JFrame {
 
             for (int i = 0; i < itemsModel.getRowCount(); i++) {
                 OrderItem item = new OrderItem();
+                // Giữ ID của dòng đã lưu để service chỉ cập nhật những dòng thay đổi
+                OrderItem source = (OrderItem) itemsModel.getValueAt(i, ITEM_SOURCE_COLUMN);
+                if (source != null) {
+                    item.setId(source.getId());
+                    item.setProductId(source.getProductId());
+                }
                 item.setProductName((String) itemsModel.getValueAt(i, 0));
                 item.setSku((String) itemsModel.getValueAt(i, 1));
                 item.setQuantity(Integer.parseInt(itemsModel.getValueAt(i, 2).toString()));
@@ -959,29 +995,25 @@ public class OrderManagementView extends JFrame {
             order.setOrderItems(orderItems);
             order.calculateTotal();
 
-            boolean success;
-            if (existingOrder == null) {
-                success = orderService.createOrder(order);
-                if (success) {
-                    JOptionPane.showMessageDialog(dialog, "Thêm đơn hàng thành công!", "Thông báo", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } else {
-                success = orderService.updateOrder(order);
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> existingOrder == null ? orderService.createOrder(order) : orderService.updateOrder(order), success -> {
+                saveButton.setEnabled(true);
                 if (success) {
-                    JOptionPane.showMessageDialog(dialog, "Cập nhật đơn hàng thành công!", "Thông báo", JOptionPane.INFORMATION_MESSAGE);
+                    String message = existingOrder == null ? "Thêm đơn hàng thành công!" : "Cập nhật đơn hàng thành công!";
+                    JOptionPane.showMessageDialog(dialog, message, "Thông báo", JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadOrderData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog, "Không thể lưu đơn hàng. Vui lòng kiểm tra số lượng tồn kho khả dụng và thử lại!", "Lỗi", JOptionPane.ERROR_MESSAGE);
                 }
-            }
-
-            if (!success) {
-                JOptionPane.showMessageDialog(dialog, "Không thể lưu đơn hàng. Vui lòng thử lại!", "Lỗi", JOptionPane.ERROR_MESSAGE);
-            }
-
-            return success;
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
 
         } catch (Exception e) {
             e.printStackTrace();
             JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + e.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
-            return false;
         }
     }
 
@@ -992,14 +1024,14 @@ public class OrderManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = orderService.deleteOrder(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Xóa đơn hàng thành công!", "Thông báo", JOptionPane.INFORMATION_MESSAGE);
-                loadOrderData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Không thể xóa đơn hàng. Vui lòng thử lại!", "Lỗi", JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> orderService.deleteOrder(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "Xóa đơn hàng thành công!", "Thông báo", JOptionPane.INFORMATION_MESSAGE);
+                    loadOrderData();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Không thể xóa đơn hàng. Vui lòng thử lại!", "Lỗi", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
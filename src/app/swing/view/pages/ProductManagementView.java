@@ -1,19 +1,21 @@
 package app.swing.view.pages;
 
 import app.swing.model.Category;
+import app.swing.model.Page;
 import app.swing.model.Product;
 import app.swing.model.Supplier;
 import app.swing.service.CategoryService;
+import app.swing.service.ProductImportService;
 import app.swing.service.ProductService;
 import app.swing.service.SupplierService;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.ImportDialog;
+import app.swing.view.LazyTableModel;
+import app.swing.view.SearchDebouncer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.math.BigDecimal;
@@ -21,6 +23,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.BiConsumer;
 
 /**
  * Giao diện quản lý sản phẩm
@@ -28,15 +31,26 @@ import java.util.Locale;
 public class ProductManagementView extends JFrame {
 
     private JTable productTable;
-    private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, backButton;
+    private LazyTableModel<Product> tableModel;
+    private JButton addButton, editButton, deleteButton, refreshButton, importButton, backButton;
     private JTextField searchField;
     private ProductService productService;
+    private final ProductImportService productImportService = new ProductImportService();
     private CategoryService categoryService;
     private SupplierService supplierService;
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
     private final DecimalFormat decimalFormat = new DecimalFormat("#,##0.00");
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
+    private LazyTableModel.DataSource<Product> productDataSource;
+
+    // Số dòng tải mỗi lần cuộn
+    private static final int PAGE_SIZE = 200;
+    // Số trang tối đa giữ trong bộ nhớ, các trang khuất khỏi màn hình lâu nhất bị loại trước
+    private static final int MAX_CACHED_PAGES = 10;
+
+    // Số dải tồn kho tối đa cho một sản phẩm
+    private static final int MAX_STOCK_STRIPES = 64;
 
     public ProductManagementView() {
         this.productService = new ProductService();
@@ -200,11 +214,13 @@ public class ProductManagementView extends JFrame {
         editButton = createActionButton("Sửa sản phẩm", new Color(60, 179, 113));
         deleteButton = createActionButton("Xóa sản phẩm", new Color(220, 20, 60));
         refreshButton = createActionButton("Làm mới", new Color(30, 144, 255));
+        importButton = createActionButton("Nhập CSV", new Color(255, 140, 0));
 
         actionPanel.add(addButton);
         actionPanel.add(editButton);
         actionPanel.add(deleteButton);
         actionPanel.add(refreshButton);
+        actionPanel.add(importButton);
 
         // Right side - search
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -242,11 +258,9 @@ public class ProductManagementView extends JFrame {
             button.addActionListener(e -> showAddProductDialog());
         } else if (text.equals("Sửa sản phẩm")) {
             button.addActionListener(e -> {
-                int selectedRow = productTable.getSelectedRow();
-                if (selectedRow >= 0) {
-                    int modelRow = productTable.convertRowIndexToModel(selectedRow);
-                    long productId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                    showEditProductDialog(productId);
+                Product selected = getSelectedProduct();
+                if (selected != null) {
+                    showEditProductDialog(selected.getId());
                 } else {
                     JOptionPane.showMessageDialog(this,
                         "Vui lòng chọn sản phẩm để sửa!",
@@ -256,12 +270,9 @@ public class ProductManagementView extends JFrame {
             });
         } else if (text.equals("Xóa sản phẩm")) {
             button.addActionListener(e -> {
-                int selectedRow = productTable.getSelectedRow();
-                if (selectedRow >= 0) {
-                    int modelRow = productTable.convertRowIndexToModel(selectedRow);
-                    long productId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                    String productName = tableModel.getValueAt(modelRow, 2).toString();
-                    deleteProduct(productId, productName);
+                Product selected = getSelectedProduct();
+                if (selected != null) {
+                    deleteProduct(selected.getId(), selected.getName());
                 } else {
                     JOptionPane.showMessageDialog(this,
                         "Vui lòng chọn sản phẩm để xóa!",
@@ -271,6 +282,8 @@ public class ProductManagementView extends JFrame {
             });
         } else if (text.equals("Làm mới")) {
             button.addActionListener(e -> loadProductData());
+        } else if (text.equals("Nhập CSV")) {
+            button.addActionListener(e -> loadProductChoices((categories, suppliers) -> showImportDialog(suppliers)));
         }
 
         return button;
@@ -281,16 +294,23 @@ public class ProductManagementView extends JFrame {
         tablePanel.setBorder(BorderFactory.createEmptyBorder(10, 20, 0, 20));
 
         // Create table model
-        String[] columns = {"ID", "SKU", "Tên sản phẩm", "Danh mục", "Nhà cung cấp", "Giá bán", "Giá nhập", "Tồn kho", "Mức tái đặt", "Trạng thái"};
-        tableModel = new DefaultTableModel(columns, 0) {
+        String[] columns = {"ID", "SKU", "Tên sản phẩm", "Danh mục", "Nhà cung cấp", "Giá bán", "Giá nhập", "Tồn kho", "Khả dụng", "Mức tái đặt", "Trạng thái"};
+        // Rows are fetched page by page as they scroll into view
+        tableModel = new LazyTableModel<>(columns, this::toProductRow, PAGE_SIZE, MAX_CACHED_PAGES);
+        productDataSource = new LazyTableModel.DataSource<Product>() {
+            @Override
+            public int count() {
+                return productService.getProductCount();
+            }
+
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table non-editable
+            public Page<Product> fetchAfter(String pageToken, int pageSize) {
+                return productService.getProductsPage(pageToken, pageSize);
             }
 
             @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return String.class;
+            public Page<Product> fetchAt(int offset, int pageSize) {
+                return productService.getProductsPageAt(offset, pageSize);
             }
         };
 
@@ -317,45 +337,31 @@ public class ProductManagementView extends JFrame {
         productTable.getColumnModel().getColumn(5).setPreferredWidth(100); // Price
         productTable.getColumnModel().getColumn(6).setPreferredWidth(100); // Cost
         productTable.getColumnModel().getColumn(7).setMaxWidth(80); // Stock
-        productTable.getColumnModel().getColumn(8).setMaxWidth(80); // Reorder
-        productTable.getColumnModel().getColumn(9).setMaxWidth(80); // Status
+        productTable.getColumnModel().getColumn(8).setMaxWidth(80); // Available
+        productTable.getColumnModel().getColumn(9).setMaxWidth(80); // Reorder
+        productTable.getColumnModel().getColumn(10).setMaxWidth(80); // Status
 
         // Add row selection listener for double click
         productTable.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    int selectedRow = productTable.getSelectedRow();
-                    if (selectedRow >= 0) {
-                        int modelRow = productTable.convertRowIndexToModel(selectedRow);
-                        long productId = Long.parseLong(tableModel.getValueAt(modelRow, 0).toString());
-                        showEditProductDialog(productId);
+                    Product selected = getSelectedProduct();
+                    if (selected != null) {
+                        showEditProductDialog(selected.getId());
                     }
                 }
             }
         });
 
-        // Enable sorting
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        productTable.setRowSorter(sorter);
-
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Search on the server once typing pauses; only the visible rows are ever loaded
+        SearchDebouncer.install(searchField, text -> loadProductData());
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(productTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -375,41 +381,99 @@ public class ProductManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
 
     private void loadProductData() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Get all products
-        List<Product> products = productService.getAllProducts();
-
-        // Add to table
-        for (Product product : products) {
-            Object[] row = {
-                product.getId(),
-                product.getSku(),
-                product.getName(),
-                product.getCategory() != null ? product.getCategory().getName() : "-",
-                product.getSupplier() != null ? product.getSupplier().getName() : "-",
-                formatCurrency(product.getPrice()),
-                formatCurrency(product.getCost()),
-                String.valueOf(product.getStockQuantity()),
-                String.valueOf(product.getReorderLevel()),
-                product.isActive() ? "Hoạt động" : "Đã khóa"
-            };
-            tableModel.addRow(row);
+        String text = searchField.getText().trim();
+        if (text.isEmpty()) {
+            tableModel.setDataSource(productDataSource);
+        } else {
+            tableModel.setDataSource(LazyTableModel.fromQuery(() -> productService.searchProducts(text)));
         }
     }
 
+    private Product getSelectedProduct() {
+        int selectedRow = productTable.getSelectedRow();
+        if (selectedRow < 0) {
+            return null;
+        }
+        // Null while the row's page is still loading
+        return tableModel.getRow(productTable.convertRowIndexToModel(selectedRow));
+    }
+
+    private Object[] toProductRow(Product product) {
+        return new Object[] {
+            product.getId(),
+            product.getSku(),
+            product.getName(),
+            product.getCategory() != null ? product.getCategory().getName() : "-",
+            product.getSupplier() != null ? product.getSupplier().getName() : "-",
+            formatCurrency(product.getPrice()),
+            formatCurrency(product.getCost()),
+            String.valueOf(product.getStockQuantity()),
+            String.valueOf(product.getAvailableQuantity()),
+            String.valueOf(product.getReorderLevel()),
+            product.isActive() ? "Hoạt động" : "Đã khóa"
+        };
+    }
+
     private String formatCurrency(BigDecimal amount) {
         if (amount == null) return "0";
         return decimalFormat.format(amount) + " VND";
     }
 
     private void showAddProductDialog() {
+        // Load category and supplier choices first
+        loadProductChoices(this::showAddProductDialog);
+    }
+
+    /**
+     * Load category and supplier choices for the product dialogs in the background
+     */
+    private void loadProductChoices(BiConsumer<List<Category>, List<Supplier>> onLoaded) {
+        taskRunner.execute(categoryService::getAllCategories, categories ->
+            taskRunner.execute(supplierService::getAllSuppliers,
+                suppliers -> onLoaded.accept(categories, suppliers)));
+    }
+
+    private void showImportDialog(List<Supplier> suppliers) {
+        // Nhà cung cấp gán cho các dòng không có cột supplier_id, vd. khi nhập danh mục hàng của một nhà cung cấp
+        Object[] supplierChoices = new Object[suppliers.size() + 1];
+        supplierChoices[0] = "-- Theo file --";
+        for (int i = 0; i < suppliers.size(); i++) {
+            supplierChoices[i + 1] = suppliers.get(i);
+        }
+        Object supplierChoice = JOptionPane.showInputDialog(this,
+            "Nhà cung cấp cho các dòng không ghi supplier_id:",
+            "Nhập sản phẩm",
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            supplierChoices,
+            supplierChoices[0]);
+        if (supplierChoice == null) {
+            return;
+        }
+        Long supplierId = supplierChoice instanceof Supplier ? ((Supplier) supplierChoice).getId() : null;
+
+        int mode = JOptionPane.showConfirmDialog(this,
+            "Cập nhật các sản phẩm đã có SKU trong hệ thống?\n"
+                + "Chọn \"No\" để bỏ qua và báo lỗi các dòng đó.",
+            "Nhập sản phẩm",
+            JOptionPane.YES_NO_CANCEL_OPTION);
+        if (mode != JOptionPane.YES_OPTION && mode != JOptionPane.NO_OPTION) {
+            return;
+        }
+        boolean updateExisting = mode == JOptionPane.YES_OPTION;
+
+        ImportDialog.show(this, "sản phẩm",
+            (file, listener) -> productImportService.importProducts(file, supplierId, updateExisting, listener),
+            this::loadProductData);
+    }
+
+    private void showAddProductDialog(List<Category> categories, List<Supplier> suppliers) {
         // Create dialog
         JDialog dialog = new JDialog(this, "Thêm sản phẩm mới", true);
         dialog.setSize(600, 600);
@@ -474,7 +538,6 @@ public class ProductManagementView extends JFrame {
         gbc.gridy = 3;
         DefaultComboBoxModel<Object> categoryModel = new DefaultComboBoxModel<>();
         categoryModel.addElement("-- Chọn danh mục --");
-        List<Category> categories = categoryService.getAllCategories();
         for (Category cat : categories) {
             categoryModel.addElement(cat);
         }
@@ -491,7 +554,6 @@ public class ProductManagementView extends JFrame {
         gbc.gridy = 4;
         DefaultComboBoxModel<Object> supplierModel = new DefaultComboBoxModel<>();
         supplierModel.addElement("-- Chọn nhà cung cấp --");
-        List<Supplier> suppliers = supplierService.getAllSuppliers();
         for (Supplier sup : suppliers) {
             supplierModel.addElement(sup);
         }
@@ -592,15 +654,6 @@ public class ProductManagementView extends JFrame {
                 return;
             }
 
-            // Check if SKU exists
-            if (productService.skuExists(sku, null)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "SKU đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Validate price and cost
             BigDecimal price, cost;
             try {
@@ -641,21 +694,32 @@ public class ProductManagementView extends JFrame {
             product.setReorderLevel((Integer) reorderSpinner.getValue());
             product.setActive(activeCheckBox.isSelected());
 
-            boolean success = productService.createProduct(product);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm sản phẩm thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadProductData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm sản phẩm. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if SKU exists
+                if (productService.skuExists(sku, null)) {
+                    return "SKU đã tồn tại!";
+                }
+                return productService.createProduct(product) ? null : "Không thể thêm sản phẩm. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm sản phẩm thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadProductData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -671,8 +735,12 @@ public class ProductManagementView extends JFrame {
     }
 
     private void showEditProductDialog(long id) {
-        // Get product by ID
-        Product product = productService.getProductById(id);
+        // Get product by ID, then the category and supplier choices
+        taskRunner.execute(() -> productService.getProductById(id), product ->
+            loadProductChoices((categories, suppliers) -> showEditProductDialog(product, categories, suppliers)));
+    }
+
+    private void showEditProductDialog(Product product, List<Category> categories, List<Supplier> suppliers) {
         if (product == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin sản phẩm!",
@@ -683,7 +751,7 @@ public class ProductManagementView extends JFrame {
 
         // Create dialog
         JDialog dialog = new JDialog(this, "Sửa thông tin sản phẩm", true);
-        dialog.setSize(600, 600);
+        dialog.setSize(600, 640);
         dialog.setLocationRelativeTo(this);
         dialog.setLayout(new BorderLayout());
 
@@ -748,7 +816,6 @@ public class ProductManagementView extends JFrame {
         gbc.gridy = 3;
         DefaultComboBoxModel<Object> categoryModel = new DefaultComboBoxModel<>();
         categoryModel.addElement("-- Chọn danh mục --");
-        List<Category> categories = categoryService.getAllCategories();
         for (Category cat : categories) {
             categoryModel.addElement(cat);
         }
@@ -778,7 +845,6 @@ public class ProductManagementView extends JFrame {
         gbc.gridy = 4;
         DefaultComboBoxModel<Object> supplierModel = new DefaultComboBoxModel<>();
         supplierModel.addElement("-- Chọn nhà cung cấp --");
-        List<Supplier> suppliers = supplierService.getAllSuppliers();
         for (Supplier sup : suppliers) {
             supplierModel.addElement(sup);
         }
@@ -856,9 +922,22 @@ public class ProductManagementView extends JFrame {
         activeCheckBox.setSelected(product.isActive());
         formPanel.add(activeCheckBox, gbc);
 
-        // Required fields note
+        // Stock stripes (chia tồn kho cho sản phẩm bán chạy, 0 = không chia)
         gbc.gridx = 0;
         gbc.gridy = 10;
+        JLabel stripesLabel = new JLabel("Số dải tồn kho:");
+        formPanel.add(stripesLabel, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 10;
+        JSpinner stripesSpinner = new JSpinner(new SpinnerNumberModel(
+                Math.min(product.getStockStripes(), MAX_STOCK_STRIPES), 0, MAX_STOCK_STRIPES, 1));
+        stripesSpinner.setToolTipText("Chia tồn kho thành nhiều dải để nhiều phiếu xuất nhập ghi cùng lúc; 0 = không chia");
+        formPanel.add(stripesSpinner, gbc);
+
+        // Required fields note
+        gbc.gridx = 0;
+        gbc.gridy = 11;
         gbc.gridwidth = 2;
         JLabel requiredNote = new JLabel("* Trường bắt buộc");
         requiredNote.setFont(new Font("Arial", Font.ITALIC, 11));
@@ -892,15 +971,6 @@ public class ProductManagementView extends JFrame {
                 return;
             }
 
-            // Check if SKU exists (for other products)
-            if (!sku.equals(product.getSku()) && productService.skuExists(sku, product.getId())) {
-                JOptionPane.showMessageDialog(dialog,
-                    "SKU đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Validate price and cost
             BigDecimal price, cost;
             try {
@@ -917,6 +987,8 @@ public class ProductManagementView extends JFrame {
                 return;
             }
 
+            boolean skuChanged = !sku.equals(product.getSku());
+
             // Update product
             product.setSku(sku);
             product.setName(name);
@@ -943,22 +1015,34 @@ public class ProductManagementView extends JFrame {
             product.setStockQuantity((Integer) stockSpinner.getValue());
             product.setReorderLevel((Integer) reorderSpinner.getValue());
             product.setActive(activeCheckBox.isSelected());
+            product.setStockStripes((Integer) stripesSpinner.getValue());
 
-            boolean success = productService.updateProduct(product);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật thông tin sản phẩm thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadProductData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật thông tin sản phẩm. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if SKU exists (for other products)
+                if (skuChanged && productService.skuExists(sku, product.getId())) {
+                    return "SKU đã tồn tại!";
+                }
+                return productService.updateProduct(product) ? null : "Không thể cập nhật thông tin sản phẩm. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật thông tin sản phẩm thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadProductData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -981,20 +1065,20 @@ public class ProductManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = productService.deleteProduct(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa sản phẩm thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadProductData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa sản phẩm. Sản phẩm này có thể đã được sử dụng trong đơn hàng hoặc có lịch sử xuất nhập kho!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> productService.deleteProduct(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa sản phẩm thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadProductData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa sản phẩm. Sản phẩm này có thể đã được sử dụng trong đơn hàng hoặc có lịch sử xuất nhập kho!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
@@ -2,14 +2,15 @@ package app.swing.view.pages;
 
 import app.swing.model.Supplier;
 import app.swing.service.SupplierService;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.SearchDebouncer;
+import app.swing.view.TextRowFilter;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.time.format.DateTimeFormatter;
@@ -27,6 +28,7 @@ public class SupplierManagementView extends JFrame {
     private SupplierService supplierService;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
 
     public SupplierManagementView() {
         this.supplierService = new SupplierService();
@@ -322,23 +324,15 @@ public class SupplierManagementView extends JFrame {
         TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
         supplierTable.setRowSorter(sorter);
 
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Filter in place once typing pauses; the table already holds every supplier
+        SearchDebouncer.install(searchField,
+            text -> sorter.setRowFilter(TextRowFilter.of(text, 1, 2, 3, 4, 5, 6)));
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(supplierTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -358,17 +352,20 @@ public class SupplierManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
 
     private void loadSupplierData() {
+        // Get all suppliers in the background; a newer refresh supersedes this one
+        taskRunner.submit("load", supplierService::getAllSuppliers, this::showSuppliers);
+    }
+
+    private void showSuppliers(List<Supplier> suppliers) {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Get all suppliers
-        List<Supplier> suppliers = supplierService.getAllSuppliers();
-
         // Add to table
         for (Supplier supplier : suppliers) {
             Object[] row = {
@@ -505,15 +502,6 @@ public class SupplierManagementView extends JFrame {
                 return;
             }
 
-            // Check if name exists
-            if (supplierService.nameExists(name, null)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên nhà cung cấp đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Create supplier
             Supplier supplier = new Supplier();
             supplier.setName(name);
@@ -523,21 +511,32 @@ public class SupplierManagementView extends JFrame {
             supplier.setAddress(addressField.getText().trim());
             supplier.setNote(notesArea.getText().trim());
 
-            boolean success = supplierService.createSupplier(supplier);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm nhà cung cấp thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadSupplierData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm nhà cung cấp. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if name exists
+                if (supplierService.nameExists(name, null)) {
+                    return "Tên nhà cung cấp đã tồn tại!";
+                }
+                return supplierService.createSupplier(supplier) ? null : "Không thể thêm nhà cung cấp. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm nhà cung cấp thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadSupplierData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -554,7 +553,10 @@ public class SupplierManagementView extends JFrame {
 
     private void showEditSupplierDialog(long id) {
         // Get supplier by ID
-        Supplier supplier = supplierService.getSupplierById(id);
+        taskRunner.execute(() -> supplierService.getSupplierById(id), this::showEditSupplierDialog);
+    }
+
+    private void showEditSupplierDialog(Supplier supplier) {
         if (supplier == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin nhà cung cấp!",
@@ -689,14 +691,7 @@ public class SupplierManagementView extends JFrame {
                 return;
             }
 
-            // Check if name exists (for other suppliers)
-            if (!name.equals(supplier.getName()) && supplierService.nameExists(name, supplier.getId())) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên nhà cung cấp đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            boolean nameChanged = !name.equals(supplier.getName());
 
             // Update supplier
             supplier.setName(name);
@@ -706,21 +701,32 @@ public class SupplierManagementView extends JFrame {
             supplier.setAddress(addressField.getText().trim());
             supplier.setNote(notesArea.getText().trim());
 
-            boolean success = supplierService.updateSupplier(supplier);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật thông tin nhà cung cấp thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadSupplierData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật thông tin nhà cung cấp. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if name exists (for other suppliers)
+                if (nameChanged && supplierService.nameExists(name, supplier.getId())) {
+                    return "Tên nhà cung cấp đã tồn tại!";
+                }
+                return supplierService.updateSupplier(supplier) ? null : "Không thể cập nhật thông tin nhà cung cấp. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật thông tin nhà cung cấp thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadSupplierData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         // Cancel button action
@@ -743,20 +749,20 @@ public class SupplierManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = supplierService.deleteSupplier(id);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa nhà cung cấp thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadSupplierData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa nhà cung cấp. Nhà cung cấp này đang được sử dụng trong sản phẩm!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> supplierService.deleteSupplier(id), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa nhà cung cấp thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadSupplierData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa nhà cung cấp. Nhà cung cấp này đang được sử dụng trong sản phẩm!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }
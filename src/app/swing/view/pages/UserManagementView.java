@@ -3,6 +3,9 @@ package app.swing.view.pages;
 import app.swing.model.User;
 import app.swing.service.UserService;
 import app.swing.util.SessionManager;
+import app.swing.view.BackgroundTaskRunner;
+import app.swing.view.SearchDebouncer;
+import app.swing.view.TextRowFilter;
 
 import java.awt.*;
 import java.awt.event.*;
@@ -26,6 +29,7 @@ public class UserManagementView extends JFrame {
     private UserService userService;
     private final String[] ROLES = {"admin", "customer_admin", "staff"};
     private boolean isEmbedded = false;
+    private final BackgroundTaskRunner taskRunner = new BackgroundTaskRunner();
 
     public UserManagementView() {
         this.userService = new UserService();
@@ -313,23 +317,15 @@ public class UserManagementView extends JFrame {
         TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
         userTable.setRowSorter(sorter);
 
-        // Add search filter
-        searchField.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                String text = searchField.getText().trim().toLowerCase();
-                if (text.isEmpty()) {
-                    sorter.setRowFilter(null);
-                } else {
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-                }
-            }
-        });
+        // Filter in place once typing pauses; the table already holds every user
+        SearchDebouncer.install(searchField,
+            text -> sorter.setRowFilter(TextRowFilter.of(text, 1, 2, 3, 4, 5)));
 
         // Add table to scroll pane
         JScrollPane scrollPane = new JScrollPane(userTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
         scrollPane.getViewport().setBackground(Color.WHITE);
+        taskRunner.setBusyComponent(scrollPane);
 
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -349,17 +345,20 @@ public class UserManagementView extends JFrame {
         statusLabel.setForeground(new Color(100, 100, 100));
 
         statusPanel.add(statusLabel);
+        taskRunner.setStatusLabel(statusLabel);
 
         return statusPanel;
     }
 
     private void loadUserData() {
+        // Get all users in the background; a newer refresh supersedes this one
+        taskRunner.submit("load", userService::getAllUsers, this::showUsers);
+    }
+
+    private void showUsers(List<User> users) {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Get all users
-        List<User> users = userService.getAllUsers();
-
         // Add to table
         for (User user : users) {
             Vector<Object> row = new Vector<>();
@@ -470,15 +469,6 @@ public class UserManagementView extends JFrame {
                 return;
             }
 
-            // Check if username exists
-            if (userService.usernameExists(username)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên đăng nhập đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             // Create user
             User newUser = new User();
             newUser.setUsername(username);
@@ -488,21 +478,32 @@ public class UserManagementView extends JFrame {
             newUser.setFullName(fullName);
             newUser.setEmail(email);
 
-            boolean success = userService.createUser(newUser);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Thêm người dùng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadUserData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể thêm người dùng. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if username exists
+                if (userService.usernameExists(username)) {
+                    return "Tên đăng nhập đã tồn tại!";
+                }
+                return userService.createUser(newUser) ? null : "Không thể thêm người dùng. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Thêm người dùng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadUserData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -518,7 +519,10 @@ public class UserManagementView extends JFrame {
 
     private void showEditUserDialog(int userId) {
         // Get user
-        User user = userService.getUserById(userId);
+        taskRunner.execute(() -> userService.getUserById(userId), this::showEditUserDialog);
+    }
+
+    private void showEditUserDialog(User user) {
         if (user == null) {
             JOptionPane.showMessageDialog(this,
                 "Không tìm thấy thông tin người dùng!",
@@ -627,14 +631,7 @@ public class UserManagementView extends JFrame {
                 return;
             }
 
-            // Check if username exists for other users
-            if (!username.equals(user.getUsername()) && userService.usernameExistsForOtherUser(username, userId)) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Tên đăng nhập đã tồn tại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            boolean usernameChanged = !username.equals(user.getUsername());
 
             // Update user
             user.setUsername(username);
@@ -646,21 +643,32 @@ public class UserManagementView extends JFrame {
             user.setFullName(fullName);
             user.setEmail(email);
 
-            boolean success = userService.updateUser(user);
-
-            if (success) {
-                JOptionPane.showMessageDialog(dialog,
-                    "Cập nhật thông tin người dùng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-                loadUserData();
-            } else {
-                JOptionPane.showMessageDialog(dialog,
-                    "Không thể cập nhật thông tin người dùng. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            saveButton.setEnabled(false);
+            taskRunner.execute(() -> {
+                // Check if username exists for other users
+                if (usernameChanged && userService.usernameExistsForOtherUser(username, user.getId())) {
+                    return "Tên đăng nhập đã tồn tại!";
+                }
+                return userService.updateUser(user) ? null : "Không thể cập nhật thông tin người dùng. Vui lòng thử lại!";
+            }, error -> {
+                saveButton.setEnabled(true);
+                if (error == null) {
+                    JOptionPane.showMessageDialog(dialog,
+                        "Cập nhật thông tin người dùng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadUserData();
+                } else {
+                    JOptionPane.showMessageDialog(dialog,
+                        error,
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(dialog, "Có lỗi xảy ra: " + ex.getMessage(), "Lỗi", JOptionPane.ERROR_MESSAGE);
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -692,20 +700,20 @@ public class UserManagementView extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = userService.deleteUser(userId);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                    "Xóa người dùng thành công!",
-                    "Thông báo",
-                    JOptionPane.INFORMATION_MESSAGE);
-                loadUserData();
-            } else {
-                JOptionPane.showMessageDialog(this,
-                    "Không thể xóa người dùng. Vui lòng thử lại!",
-                    "Lỗi",
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            taskRunner.execute(() -> userService.deleteUser(userId), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this,
+                        "Xóa người dùng thành công!",
+                        "Thông báo",
+                        JOptionPane.INFORMATION_MESSAGE);
+                    loadUserData();
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Không thể xóa người dùng. Vui lòng thử lại!",
+                        "Lỗi",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 }